@@ -2,9 +2,11 @@ module nl.ulso.sprox {
     exports nl.ulso.sprox;
     exports nl.ulso.sprox.parsers;
     exports nl.ulso.sprox.resolvers;
+    exports nl.ulso.sprox.processor;
 
     provides nl.ulso.sprox.XmlProcessorBuilderFactory
             with nl.ulso.sprox.impl.StaxBasedXmlProcessorBuilderFactory;
     
     requires java.xml;
+    requires static java.compiler;
 }
\ No newline at end of file
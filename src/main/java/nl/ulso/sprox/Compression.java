@@ -0,0 +1,34 @@
+package nl.ulso.sprox;
+
+/**
+ * The compression of the XML documents an {@link XmlProcessor} reads.
+ * <p>
+ * Compressed documents are decompressed on a separate thread, while the processor goes through the document. The two
+ * hand buffers to each other through a bounded ring, so that decompression and processing overlap. Only documents read
+ * from bytes can be compressed: input streams, byte arrays, buffers and files. Readers are never decompressed.
+ * </p>
+ *
+ * @see XmlProcessorBuilder#setCompression(Compression)
+ */
+public enum Compression {
+    /**
+     * Documents are never compressed.
+     */
+    NONE,
+
+    /**
+     * Documents are detected to be compressed from their first two bytes: the magic number of the gzip format, or
+     * the header of the zlib format. Neither can be the start of a well-formed XML document. This is the default.
+     */
+    DETECT,
+
+    /**
+     * Documents are always compressed in the gzip format, as in {@code .xml.gz} files.
+     */
+    GZIP,
+
+    /**
+     * Documents are always compressed in the zlib format, as in the HTTP {@code deflate} content encoding.
+     */
+    DEFLATE
+}
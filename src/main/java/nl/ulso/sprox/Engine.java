@@ -0,0 +1,35 @@
+package nl.ulso.sprox;
+
+/**
+ * The engines an {@link XmlProcessor} can use to go through an XML document.
+ * <p>
+ * Two engines are built on top of a StAX parser, created by an {@link javax.xml.stream.XMLInputFactory}. They differ
+ * in the StAX API they use: the event iterator API or the cursor API. The third engine is Sprox's own tokenizer. All
+ * engines process documents in exactly the same way.
+ * </p>
+ *
+ * @see XmlProcessorBuilder#setEngine(Engine)
+ */
+public enum Engine {
+    /**
+     * Goes through the document with an {@link javax.xml.stream.XMLEventReader}. This reader creates an immutable
+     * object for every event in the document.
+     */
+    EVENT_READER,
+
+    /**
+     * Goes through the document with an {@link javax.xml.stream.XMLStreamReader}. This reader doesn't create
+     * objects for events; element names, attributes and text are read directly from the parser. This is the default.
+     */
+    STREAM_READER,
+
+    /**
+     * Goes through the document with Sprox's own tokenizer, that reads UTF-8 encoded bytes directly. It creates
+     * strings only for the element names it hasn't seen before, and for the attributes and text that controllers
+     * actually use. It is non-validating and doesn't support DTDs at all; a document type declaration is skipped.
+     * Documents in other encodings are supported, but are encoded to UTF-8 first, as are documents read from a
+     * {@link java.io.Reader}. This engine doesn't use an {@link javax.xml.stream.XMLInputFactory}; one that is set
+     * on the builder is ignored.
+     */
+    TOKENIZER
+}
@@ -21,6 +21,14 @@ import java.lang.annotation.Target;
  * default. If namespaces are used and the namespace is not defined on an annotated parameter, the namespace defaults
  * to the method default. This is transitive.
  * </p>
+ * <p>
+ * On a method, the value may also be a path to the node, with the names of its ancestors separated by slashes. For
+ * example: {@code "entry/title"} triggers on {@code title} nodes that are direct children of {@code entry} nodes, and
+ * {@code "entry//link"} triggers on {@code link} nodes anywhere within {@code entry} nodes. A path that starts with a
+ * slash, like {@code "/feed/title"}, starts at the root node. Each step in a path may have its own namespace. Only the
+ * last step may leave out the name; it then defaults to the name of the method. On a recursive method, the path
+ * selects the nodes the recursion starts at; nested nodes with the same name are matched by name only.
+ * </p>
  *
  * @see Parser
  * @see Namespace
@@ -29,7 +37,7 @@ import java.lang.annotation.Target;
 @Target({ElementType.METHOD, ElementType.PARAMETER})
 public @interface Node {
     /**
-     * @return Name of the node to trigger on or to inject the value of.
+     * @return Name of or path to the node to trigger on, or name of the node to inject the value of.
      */
     String value() default "";
 }
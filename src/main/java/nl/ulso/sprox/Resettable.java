@@ -0,0 +1,15 @@
+package nl.ulso.sprox;
+
+/**
+ * Optional interface for controllers that are pooled. A pooled controller is reset after every execution, before it
+ * is used for the next one.
+ *
+ * @see XmlProcessorBuilder#setControllerPooling(boolean)
+ */
+public interface Resettable {
+
+    /**
+     * Resets this controller to the state it had right after construction.
+     */
+    void reset();
+}
@@ -0,0 +1,68 @@
+package nl.ulso.sprox;
+
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Outcome of processing a single file in a batch: either the result of the file, or the error that occurred while
+ * processing it.
+ *
+ * @see XmlProcessor#executeAll(Iterable)
+ */
+public final class XmlBatchResult<T> {
+    private final Path path;
+    private final T result;
+    private final XmlProcessorException exception;
+
+    private XmlBatchResult(Path path, T result, XmlProcessorException exception) {
+        this.path = requireNonNull(path);
+        this.result = result;
+        this.exception = exception;
+    }
+
+    public static <T> XmlBatchResult<T> success(Path path, T result) {
+        return new XmlBatchResult<>(path, result, null);
+    }
+
+    public static <T> XmlBatchResult<T> failure(Path path, XmlProcessorException exception) {
+        return new XmlBatchResult<>(path, null, requireNonNull(exception));
+    }
+
+    /**
+     * @return The file that was processed.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return {@code true} if the file was processed without errors, {@code false} otherwise.
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * @return The result of processing the file.
+     * @throws XmlProcessorException The error that occurred while processing the file, if any.
+     */
+    public T getResult() throws XmlProcessorException {
+        if (exception != null) {
+            throw exception;
+        }
+        return result;
+    }
+
+    /**
+     * @return The error that occurred while processing the file, or {@code null} if there was none.
+     */
+    public XmlProcessorException getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return path + (exception == null ? ": " + result : ": failed: " + exception.getMessage());
+    }
+}
@@ -0,0 +1,54 @@
+package nl.ulso.sprox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Feeds a single XML document to an {@link XmlProcessor} in parts, as they come in, without blocking.
+ * <p>
+ * Each call to {@link #feed(ByteBuffer)} processes as much of the document as the parts fed so far allow, and then
+ * returns immediately. Controller methods are invoked along the way, from the thread that feeds the part. The state of
+ * the processor in between parts, including the controllers, is kept by the feeder. When the document is complete,
+ * {@link #complete()} returns the result.
+ * </p>
+ * <p>
+ * Feeders always process documents with the {@link Engine#TOKENIZER}, whatever the engine of the processor is: the
+ * StAX engines can't be suspended in the middle of a document. Documents must be encoded in UTF-8, without a byte
+ * order mark, and they are never decompressed.
+ * </p>
+ * <p>
+ * A feeder is not thread-safe. Feed each document through its own feeder, from one thread at a time.
+ * </p>
+ *
+ * @see XmlProcessor#newFeeder()
+ */
+public interface XmlFeeder<T> {
+
+    /**
+     * Feeds the next part of the document: all bytes in the buffer from its position up to its limit, and processes
+     * everything in the document that is complete. The bytes are read in place; only the bytes of a token that is not
+     * complete yet are copied. Afterwards, the position of the buffer is at its limit, and the caller may reuse it.
+     * <p>
+     * If the feeder is {@link #isDone() done}, the bytes are ignored.
+     * </p>
+     *
+     * @param buffer The next part of the document.
+     * @throws XmlProcessorException If an error occurred while processing the XML.
+     * @throws IllegalStateException If the feeder was completed already, or failed before.
+     */
+    void feed(ByteBuffer buffer) throws XmlProcessorException;
+
+    /**
+     * Marks the end of the document, processes what's left of it, and returns the result.
+     *
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If an error occurred while processing the XML.
+     * @throws IllegalStateException If the feeder was completed already, or failed before.
+     */
+    T complete() throws XmlProcessorException;
+
+    /**
+     * @return {@code true} if the processor doesn't need any more input: the end of the document was reached, or the
+     * processor stops at the first result and has it. {@link #complete()} must still be called to get the result.
+     */
+    boolean isDone();
+}
@@ -1,7 +1,19 @@
 package nl.ulso.sprox;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Processes an XML from some source, resulting in an object of type {@code T}.
@@ -12,6 +24,11 @@ import java.io.Reader;
  * <p>
  * To create a processor, use an {@link XmlProcessorBuilder}, obtained through an {@link XmlProcessorBuilderFactory}.
  * </p>
+ * <p>
+ * All methods besides {@link #execute(Reader)} and {@link #execute(InputStream)} have default implementations, for
+ * processors that implement only those two. These defaults process the XML through one of them, or throw an
+ * {@link UnsupportedOperationException} if they can't. The processors that Sprox builds implement all of them.
+ * </p>
  *
  * @see XmlProcessorBuilder
  * @see XmlProcessorBuilderFactory
@@ -37,4 +54,215 @@ public interface XmlProcessor<T> {
      * @throws XmlProcessorException If an error occurred while processing the XML
      */
     T execute(InputStream inputStream) throws XmlProcessorException;
+
+    /**
+     * Process XML lazily, by pulling it from an input stream only as far as needed to produce the next result. The
+     * returned stream holds every object of type {@code T} produced by any controller method, in the order in which
+     * they are produced. Short-circuiting operations, like {@link Stream#limit(long)} or
+     * {@link Stream#findFirst()}, stop reading the document as soon as they're done.
+     * <p>
+     * The input stream is closed when the returned stream is closed; use it in a try-with-resources statement. Errors
+     * that occur while processing the XML are thrown from the stream as an {@link XmlProcessorRuntimeException}.
+     * </p>
+     *
+     * @param inputStream The stream to pull the XML from.
+     * @return A sequential stream of the results of processing the XML.
+     * @throws XmlProcessorException         If the XML could not be opened.
+     * @throws UnsupportedOperationException If the processor doesn't support streaming; the default implementation
+     *                                       always throws it.
+     */
+    default Stream<T> stream(InputStream inputStream) throws XmlProcessorException {
+        throw new UnsupportedOperationException("Streaming results is not supported");
+    }
+
+    /**
+     * Process XML from a range of bytes in an array. The bytes are read in place; they are not copied first.
+     *
+     * @param bytes  The array holding the XML.
+     * @param offset Index of the first byte of the XML in the array.
+     * @param length Number of bytes of XML.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If an error occurred while processing the XML
+     */
+    default T execute(byte[] bytes, int offset, int length) throws XmlProcessorException {
+        return execute(new ByteArrayInputStream(bytes, offset, length));
+    }
+
+    /**
+     * Process XML from a buffer, from its position up to its limit. The bytes are read in place; they are not copied
+     * first. The buffer may be a direct buffer. Its position, limit and mark are not changed.
+     * <p>
+     * The default implementation does copy the bytes, unless the buffer is backed by an array.
+     * </p>
+     *
+     * @param buffer The buffer holding the XML.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If an error occurred while processing the XML
+     */
+    default T execute(ByteBuffer buffer) throws XmlProcessorException {
+        if (buffer.hasArray()) {
+            return execute(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return execute(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Process XML from a sequence of characters, like a {@link String}. Any encoding declared in the XML declaration
+     * is ignored.
+     *
+     * @param characters The characters of the XML.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If an error occurred while processing the XML
+     */
+    default T execute(CharSequence characters) throws XmlProcessorException {
+        return execute(new StringReader(characters.toString()));
+    }
+
+    /**
+     * Process XML from a file. The file is mapped into memory and read straight from the operating system's page
+     * cache.
+     * <p>
+     * The default implementation reads the file through a buffered input stream instead.
+     * </p>
+     *
+     * @param path The path to the file holding the XML.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If the file could not be read, or if an error occurred while processing the XML
+     */
+    default T execute(Path path) throws XmlProcessorException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+            return execute(inputStream);
+        } catch (IOException e) {
+            throw new XmlProcessorException("Could not read file " + path, e);
+        }
+    }
+
+    /**
+     * Process many files in parallel, on the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}. The
+     * results come in the order of the files. Same as {@code executeAll(paths, ForkJoinPool.commonPool(), true)}.
+     *
+     * @param paths The paths to the files holding the XML.
+     * @return A sequential stream of the outcomes of processing the files, one for every file.
+     * @see #executeAll(Iterable, Executor, boolean)
+     */
+    default Stream<XmlBatchResult<T>> executeAll(Iterable<Path> paths) {
+        return executeAll(paths, ForkJoinPool.commonPool(), true);
+    }
+
+    /**
+     * Process many files in parallel, on an executor. Every file is processed as with {@link #execute(Path)}, on a
+     * thread of the executor. An error in one file doesn't stop the batch: it is kept in the outcome for that file.
+     * <p>
+     * Files are read from {@code paths} only as they are needed: only a few files per thread are in progress at any
+     * time. That makes it safe to pass a lazy sequence of many files, like {@code Files.walk(root)::iterator}. Within
+     * the batch, the internal state of every execution is reused for the next file, whether the processor is built to
+     * pool execution state or not.
+     * </p>
+     * <p>
+     * Closing the returned stream stops submitting new files; files that are in progress are processed to the end.
+     * </p>
+     * <p>
+     * The default implementation doesn't use the executor: it processes the files one by one, on the thread that
+     * consumes the stream, as they are needed.
+     * </p>
+     *
+     * @param paths    The paths to the files holding the XML.
+     * @param executor The executor to process the files on.
+     * @param ordered  {@code true} to return the outcomes in the order of the files, {@code false} to return them as
+     *                 soon as they are available.
+     * @return A sequential stream of the outcomes of processing the files, one for every file.
+     */
+    default Stream<XmlBatchResult<T>> executeAll(Iterable<Path> paths, Executor executor, boolean ordered) {
+        return StreamSupport.stream(paths.spliterator(), false).map(path -> {
+            try {
+                return XmlBatchResult.success(path, execute(path));
+            } catch (XmlProcessorException e) {
+                return XmlBatchResult.failure(path, e);
+            }
+        });
+    }
+
+    /**
+     * Process a single file in parallel, on the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * Same as {@code executeParallel(path, recordPath, ForkJoinPool.commonPool())}.
+     *
+     * @param path       The path to the file holding the XML.
+     * @param recordPath The path from the root element to the records, like {@code feed/entry}.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException If the file could not be read, or if an error occurred while processing the XML
+     * @see #executeParallel(Path, String, Executor)
+     */
+    default T executeParallel(Path path, String recordPath) throws XmlProcessorException {
+        return executeParallel(path, recordPath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Process a single large file in parallel, by splitting it into chunks of records: repeated elements on a path
+     * from the root element. The chunks are processed on the executor, each with controllers of their own. The results
+     * of the records are then collected in document order, and the methods of the elements around the records are
+     * invoked once, on the calling thread, as if the file was processed in one go.
+     * <p>
+     * The path holds the names of the elements from the root element down to the records, separated by slashes, like
+     * {@code feed/entry}. Elements are matched on their local names only; namespace prefixes are ignored. All namespace
+     * declarations in scope of the records apply within each chunk.
+     * </p>
+     * <p>
+     * Methods of the elements around the records can have the results of methods on or within the records injected,
+     * but not attributes or node content from within the records. Controller methods on or within the records are
+     * invoked from several threads at once, so controllers must not keep state across records. The file is
+     * processed with the {@link Engine#TOKENIZER}. A compressed file, or a file in another encoding than UTF-8, is not
+     * split; it is processed as with {@link #execute(Path)}. The same goes for every file if the processor is built to
+     * stop at the first result: that reads no further than the first result anyway.
+     * </p>
+     * <p>
+     * The default implementation never splits a file: it processes every file as with {@link #execute(Path)}.
+     * </p>
+     *
+     * @param path       The path to the file holding the XML.
+     * @param recordPath The path from the root element to the records, like {@code feed/entry}.
+     * @param executor   The executor to process the chunks of records on.
+     * @return The result of processing the XML; is {@code null} only if {@code T} is {@link java.lang.Void}.
+     * @throws XmlProcessorException    If the file could not be read, or if an error occurred while processing the XML
+     * @throws IllegalArgumentException If the path to the records doesn't go below the root element.
+     */
+    default T executeParallel(Path path, String recordPath, Executor executor) throws XmlProcessorException {
+        return execute(path);
+    }
+
+    /**
+     * Creates a feeder, to process a single XML document that comes in in parts, without blocking on it.
+     *
+     * @return A new feeder.
+     * @throws UnsupportedOperationException If the processor doesn't support feeding; the default implementation
+     *                                       always throws it.
+     * @see XmlFeeder
+     */
+    default XmlFeeder<T> newFeeder() {
+        throw new UnsupportedOperationException("Feeding documents in parts is not supported");
+    }
+
+    /**
+     * Creates a publisher of the results of processing a single XML document, that is published in parts.
+     * <p>
+     * Every subscriber to the result publisher gets its own run over the document: it subscribes to the document
+     * publisher, and receives every object of type {@code T} produced by any controller method, as soon as it is
+     * produced. Processing is paused as long as the subscriber hasn't requested more results; the document publisher
+     * is asked for the next part only when the processor has run out of bytes. Processing errors are signalled to the
+     * subscriber, and cancel the subscription to the document publisher.
+     * </p>
+     * <p>
+     * As with {@link #newFeeder()}, the document is processed with the {@link Engine#TOKENIZER}, and must be encoded in
+     * UTF-8. Each part is read in place; it must not be changed after it is published.
+     * </p>
+     *
+     * @param document Publisher of the bytes of the document.
+     * @return Publisher of the results.
+     * @throws UnsupportedOperationException If the processor doesn't support publishing; the default implementation
+     *                                       always throws it.
+     */
+    default Flow.Publisher<T> publish(Flow.Publisher<? extends ByteBuffer> document) {
+        throw new UnsupportedOperationException("Publishing results is not supported");
+    }
 }
@@ -1,6 +1,7 @@
 package nl.ulso.sprox;
 
 import javax.xml.stream.XMLInputFactory;
+import java.util.function.Consumer;
 
 /**
  * Defines the builder interface for setting up an {@link XmlProcessor}.
@@ -10,6 +11,11 @@ import javax.xml.stream.XMLInputFactory;
  * <p>
  * To obtain a builder, use an {@link XmlProcessorBuilderFactory}.
  * </p>
+ * <p>
+ * Some methods have default implementations, for builders that don't support what they configure. Those defaults
+ * accept the default setting, if any, and throw an {@link UnsupportedOperationException} otherwise. The builders that
+ * Sprox provides implement all of them.
+ * </p>
  *
  * @see XmlProcessorBuilderFactory
  * @see XmlProcessor
@@ -114,25 +120,200 @@ public interface XmlProcessorBuilder<T> {
      */
     <P> XmlProcessorBuilder<T> addParser(Parser<P> parser, Class<? super P> type);
 
+    /**
+     * Adds a result sink for objects of the type specified in the second argument. For every type there can be at
+     * most one sink. Adding a sink for a type that already has a sink registered replaces the sink.
+     * <p>
+     * Whenever a controller method produces an object of this type, the processor passes it to the sink, right away.
+     * The object is not kept for injection into other controller methods; a method with a parameter of this type,
+     * or a list of it, never gets any. That way the memory a processor needs doesn't grow with the number of objects
+     * of this type in a document, however long the document is. If the type is also the result type of the processor,
+     * the last object produced is still the result.
+     * </p>
+     * <p>
+     * The sink is called from the thread that executes the processor. Processors built by this builder share the
+     * sink, so it must be thread-safe if documents are processed concurrently.
+     * </p>
+     *
+     * @param sink The sink to pass the objects to.
+     * @param type The type of objects to pass to the sink.
+     * @param <R>  The (generic) type of objects to pass to the sink.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support result sinks; the default implementation
+     *                                       always throws it.
+     */
+    default <R> XmlProcessorBuilder<T> addResultSink(Consumer<? super R> sink, Class<R> type) {
+        throw new UnsupportedOperationException("Result sinks are not supported");
+    }
+
     /**
      * Sets the XML input factory that Sprox internally uses to create the StAX parser
-     * (an {@link javax.xml.stream.XMLEventReader}). If not set, Sprox uses a strictly (securely) configured platform
-     * default.
+     * (an {@link javax.xml.stream.XMLStreamReader} or an {@link javax.xml.stream.XMLEventReader}, depending on the
+     * {@link Engine}). If not set, Sprox uses a strictly (securely) configured platform default.
      * <p>
-     * The implementation you provide needn't be complete. Sprox calls only one of the following three methods,
-     * depending on the input you provide. These must be implemented:
+     * The implementation you provide needn't be complete. Sprox calls only one of the following methods, depending on
+     * the engine and the input you provide. These must be implemented:
      * </p>
      * <ul>
-     * <li>{@link javax.xml.stream.XMLInputFactory#createXMLEventReader(java.io.InputStream)},</li>
-     * <li>{@link javax.xml.stream.XMLInputFactory#createXMLEventReader(java.io.Reader)}, or</li>
-     * <li>{@link javax.xml.stream.XMLInputFactory#createXMLEventReader(javax.xml.transform.Source)}</li>
+     * <li>{@link javax.xml.stream.XMLInputFactory#createXMLStreamReader(java.io.InputStream)} or
+     * {@link javax.xml.stream.XMLInputFactory#createXMLStreamReader(java.io.Reader)}, for the
+     * {@link Engine#STREAM_READER}, or</li>
+     * <li>{@link javax.xml.stream.XMLInputFactory#createXMLEventReader(java.io.InputStream)} or
+     * {@link javax.xml.stream.XMLInputFactory#createXMLEventReader(java.io.Reader)}, for the
+     * {@link Engine#EVENT_READER}.</li>
      * </ul>
      *
      * @param factory The factory to use.
      * @return This builder.
+     * @see #setEngine(Engine)
      */
     XmlProcessorBuilder<T> setXmlInputFactory(XMLInputFactory factory);
 
+    /**
+     * Sets the engine the processor uses to go through XML documents. If not set, Sprox uses the
+     * {@link Engine#STREAM_READER}.
+     *
+     * @param engine The engine to use.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support engines; the default implementation
+     *                                       always throws it.
+     */
+    default XmlProcessorBuilder<T> setEngine(Engine engine) {
+        throw new UnsupportedOperationException("Setting the engine is not supported");
+    }
+
+    /**
+     * Sets whether the processor skips subtrees of elements it doesn't know about. By default it doesn't.
+     * <p>
+     * The processor knows about an element if there's a controller method annotated with {@link Node} that is
+     * triggered by it, or a controller method parameter annotated with {@link Node} that is injected with its content.
+     * If skipping is enabled and the processor comes across an element it doesn't know about, it skips the element and
+     * everything in it, straight to its end element, without passing any of it on to the controllers. That makes
+     * ignored parts of a document, like extensions or embedded content, as cheap to process as possible.
+     * </p>
+     * <p>
+     * Note that this changes which elements are processed. An element that the processor does know about, but that is
+     * nested in one it doesn't, is skipped as well. So, make sure the controllers know about all elements on the
+     * path to the elements they are interested in, including the root element. Elements nested in a node whose
+     * content is being collected are never skipped.
+     * </p>
+     *
+     * @param skipUnknownSubtrees {@code true} to skip subtrees of unknown elements, {@code false} otherwise.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support this setting; the default implementation
+     *                                       throws it unless the setting is {@code false}.
+     */
+    default XmlProcessorBuilder<T> setSkipUnknownSubtrees(boolean skipUnknownSubtrees) {
+        if (skipUnknownSubtrees) {
+            throw new UnsupportedOperationException("Skipping unknown subtrees is not supported");
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the processor stops as soon as it has a result. By default it doesn't.
+     * <p>
+     * Normally the processor goes through a complete document, and the last object of type {@code T} produced by any
+     * controller method is the result. If stopping at the first result is enabled, the processor stops as soon as
+     * a controller method produces an object of type {@code T}, and returns that object. The rest of the document
+     * is not read; errors in it go unnoticed. Processors that look for something specific, like a single header field
+     * in a large document, need to read no more of the document than necessary this way.
+     * </p>
+     * <p>
+     * Note that if the result is produced by a method on the root node, as is typical, stopping at the first result
+     * makes no difference. Controller methods that are not invoked before the result is produced are never invoked.
+     * </p>
+     *
+     * @param stopAtFirstResult {@code true} to stop at the first result, {@code false} otherwise.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support this setting; the default implementation
+     *                                       throws it unless the setting is {@code false}.
+     */
+    default XmlProcessorBuilder<T> setStopAtFirstResult(boolean stopAtFirstResult) {
+        if (stopAtFirstResult) {
+            throw new UnsupportedOperationException("Stopping at the first result is not supported");
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the processor pools the controllers it creates from controller classes. By default it doesn't.
+     * <p>
+     * Normally the processor creates a new instance of every controller class for every execution, through
+     * reflection. With pooling enabled, it takes an instance from a pool instead, and puts it back into the pool after
+     * the execution. Only if the pool is empty does it create a new one. This saves the cost of creating controllers
+     * for each document, which matters when processing many small documents.
+     * </p>
+     * <p>
+     * A pooled controller is used for many executions, one after the other. If it has state, it must implement
+     * {@link Resettable}; it's reset before it goes back into the pool. Results of controller methods must not share
+     * state with the controller, because they can outlive the execution. Controller objects and controller factories
+     * are not affected.
+     * </p>
+     *
+     * @param controllerPooling {@code true} to pool controllers, {@code false} otherwise.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support this setting; the default implementation
+     *                                       throws it unless the setting is {@code false}.
+     * @see #addControllerClass(Class)
+     */
+    default XmlProcessorBuilder<T> setControllerPooling(boolean controllerPooling) {
+        if (controllerPooling) {
+            throw new UnsupportedOperationException("Controller pooling is not supported");
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the processor pools the state it needs to go through a document. By default it doesn't.
+     * <p>
+     * To go through a document, the processor sets up a number of data structures to keep track of the attributes,
+     * nodes and method results it collects. For small documents, setting these up costs about as much as going through
+     * the document itself. With pooling enabled, the processor puts these data structures into a pool after each
+     * document, and resets and reuses them for the next. The pool is shared by all threads, including virtual threads;
+     * it has as many entries as the largest number of documents ever processed at the same time.
+     * </p>
+     * <p>
+     * With the {@link Engine#TOKENIZER}, the pool also keeps the names of elements and attributes seen before, so that
+     * these don't need to be decoded again. That's where most of the gain is. With the StAX engines, the parser itself
+     * sets up far more for every document than Sprox does, and pooling makes little difference.
+     * </p>
+     * <p>
+     * Pooled data structures keep the size they grew to, so pooling is meant for processors that handle many small
+     * documents. Only the {@code execute} methods use the pool. This is independent of
+     * {@link #setControllerPooling(boolean)}; each execution still gets its controllers from the controller providers.
+     * </p>
+     *
+     * @param executionStatePooling {@code true} to pool execution state, {@code false} otherwise.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support this setting; the default implementation
+     *                                       throws it unless the setting is {@code false}.
+     */
+    default XmlProcessorBuilder<T> setExecutionStatePooling(boolean executionStatePooling) {
+        if (executionStatePooling) {
+            throw new UnsupportedOperationException("Execution state pooling is not supported");
+        }
+        return this;
+    }
+
+    /**
+     * Sets the compression of the documents the processor reads. If not set, Sprox uses {@link Compression#DETECT}:
+     * documents that start with the header of a supported compression format are decompressed, all others are read
+     * as is.
+     * <p>
+     * Compressed documents are decompressed on a separate thread. On a machine with more than one core, that takes
+     * decompression almost completely off the path of the processor.
+     * </p>
+     *
+     * @param compression The compression of the documents.
+     * @return This builder.
+     * @throws UnsupportedOperationException If the builder doesn't support compression; the default implementation
+     *                                       always throws it.
+     */
+    default XmlProcessorBuilder<T> setCompression(Compression compression) {
+        throw new UnsupportedOperationException("Setting the compression is not supported");
+    }
+
     /**
      * Builds an {@link XmlProcessor}.
      * <p>
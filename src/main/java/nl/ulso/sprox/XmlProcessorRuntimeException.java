@@ -0,0 +1,18 @@
+package nl.ulso.sprox;
+
+/**
+ * Wraps an {@link XmlProcessorException} where a checked exception can't be thrown, like in a
+ * {@link java.util.stream.Stream}.
+ */
+public class XmlProcessorRuntimeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public XmlProcessorRuntimeException(XmlProcessorException cause) {
+        super(cause);
+    }
+
+    @Override
+    public XmlProcessorException getCause() {
+        return (XmlProcessorException) super.getCause();
+    }
+}
@@ -1,34 +1,45 @@
 package nl.ulso.sprox.impl;
 
 import javax.xml.namespace.QName;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import java.util.Optional;
 
 /**
  * Represents a parameter whose value must be pulled from a node attribute.
+ * <p>
+ * Each attribute parameter of a controller method has its own slot, starting at 0. The value of the attribute is kept
+ * in that slot in the {@link AttributeMap}, until the method is invoked.
+ * </p>
+ * <p>
+ * The attributes of a start element are not looked up by each parameter separately. Instead, the
+ * {@link AttributeExtractor} of the controller method extracts them for all of its attribute parameters at once.
+ * </p>
  */
 final class AttributeControllerParameter implements ControllerParameter {
     private final QName name;
-    private final QName localName;
+    private final int slot;
     private final Class type;
     private final boolean optional;
 
-    AttributeControllerParameter(QName name, Class type, boolean optional) {
+    AttributeControllerParameter(QName name, int slot, Class type, boolean optional) {
         this.name = name;
-        this.localName = new QName(name.getLocalPart());
+        this.slot = slot;
         this.type = type;
         this.optional = optional;
     }
 
+    /**
+     * Always {@code true}: the {@link AttributeExtractor} checks the attributes.
+     */
     @Override
-    public boolean isValidStartElement(StartElement node) {
-        return optional || findAttribute(node).isPresent();
+    public boolean isValidStartElement(XmlCursor cursor) {
+        return true;
     }
 
+    /**
+     * Does nothing: the {@link AttributeExtractor} pushes the attributes.
+     */
     @Override
-    public void pushToExecutionContext(StartElement node, ExecutionContext context) {
-        findAttribute(node).ifPresent(attribute -> context.pushAttribute(name, attribute.getValue()));
+    public void pushToExecutionContext(XmlCursor cursor, ExecutionContext context) {
+        // Nothing to do here.
     }
 
     @Override
@@ -38,15 +49,16 @@ final class AttributeControllerParameter implements ControllerParameter {
 
     @Override
     @SuppressWarnings("unchecked")
-    public Optional<Object> resolveMethodParameter(ExecutionContext context) {
-        return context.getAttributeValue(name)
-                .map(value -> context.parseString((String) value, type));
+    public Object resolveMethodParameter(ExecutionContext context) {
+        final String value = context.getAttributeValue(slot);
+        return value != null ? context.parseString(value, type) : null;
     }
 
-    private Optional<Attribute> findAttribute(StartElement node) {
-        if (name.getNamespaceURI() != null && name.getNamespaceURI().equals(node.getName().getNamespaceURI())) {
-            return Optional.ofNullable(node.getAttributeByName(localName));
-        }
-        return Optional.ofNullable(node.getAttributeByName(name));
+    QName getName() {
+        return name;
+    }
+
+    int getSlot() {
+        return slot;
     }
 }
@@ -0,0 +1,109 @@
+package nl.ulso.sprox.impl;
+
+import java.util.List;
+
+/**
+ * Extracts the values of all attribute parameters of a single controller method from a start element, in a single
+ * pass over the attributes of the element.
+ * <p>
+ * For each attribute on the element the extractor looks for the parameter it belongs to, and writes the value into
+ * the slot of that parameter in the {@link ExecutionContext}. Slots of parameters for which the element has no
+ * attribute are set to {@code null}, so that values left behind by another method never leak into this one.
+ * Afterwards the extractor checks that all required attributes are available.
+ * </p>
+ * <p>
+ * An attribute parameter in the same namespace as the element matches the attribute without a namespace. That's what
+ * most documents look like: attributes are usually not qualified, even if their elements are.
+ * </p>
+ *
+ * @see AttributeControllerParameter
+ */
+final class AttributeExtractor {
+    private static final AttributeExtractor EMPTY = new AttributeExtractor(new AttributeControllerParameter[0]);
+
+    private final String[] localNames;
+    private final String[] namespaceURIs;
+    private final int[] slots;
+    private final boolean[] optionals;
+    private final boolean namespaced;
+
+    private AttributeExtractor(AttributeControllerParameter[] parameters) {
+        this.localNames = new String[parameters.length];
+        this.namespaceURIs = new String[parameters.length];
+        this.slots = new int[parameters.length];
+        this.optionals = new boolean[parameters.length];
+        boolean namespaced = false;
+        for (int i = 0; i < parameters.length; i++) {
+            localNames[i] = parameters[i].getName().getLocalPart();
+            namespaceURIs[i] = parameters[i].getName().getNamespaceURI();
+            slots[i] = parameters[i].getSlot();
+            optionals[i] = parameters[i].isOptional();
+            namespaced |= !namespaceURIs[i].isEmpty();
+        }
+        this.namespaced = namespaced;
+    }
+
+    /**
+     * @param parameters The parameters of a controller method.
+     * @return An extractor for all attribute parameters in the list.
+     */
+    static AttributeExtractor create(List<ControllerParameter> parameters) {
+        final AttributeControllerParameter[] attributeParameters = parameters.stream()
+                .filter(parameter -> parameter instanceof AttributeControllerParameter)
+                .map(parameter -> (AttributeControllerParameter) parameter)
+                .toArray(AttributeControllerParameter[]::new);
+        return attributeParameters.length > 0 ? new AttributeExtractor(attributeParameters) : EMPTY;
+    }
+
+    int getAttributeCount() {
+        return slots.length;
+    }
+
+    /**
+     * Extracts the attributes from the start element into the execution context.
+     *
+     * @param cursor  Cursor pointing at the start element to extract the attributes from.
+     * @param context The current execution context.
+     * @return {@code true} if all required attributes are available, {@code false} otherwise.
+     */
+    boolean extract(XmlCursor cursor, ExecutionContext context) {
+        final int parameterCount = slots.length;
+        if (parameterCount == 0) {
+            return true;
+        }
+        for (int slot : slots) {
+            context.pushAttribute(slot, null);
+        }
+        final String elementNamespaceURI = namespaced ? cursor.getNamespaceURI() : null;
+        final int attributeCount = cursor.getAttributeCount();
+        int found = 0;
+        for (int a = 0; a < attributeCount && found < parameterCount; a++) {
+            final String localName = cursor.getAttributeLocalName(a);
+            for (int p = 0; p < parameterCount; p++) {
+                if (localNames[p].equals(localName)
+                        && matchesNamespace(namespaceURIs[p], elementNamespaceURI, cursor, a)) {
+                    context.pushAttribute(slots[p], cursor.getAttributeValue(a));
+                    found++;
+                }
+            }
+        }
+        if (found == parameterCount) {
+            return true;
+        }
+        for (int p = 0; p < parameterCount; p++) {
+            if (!optionals[p] && context.getAttributeValue(slots[p]) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesNamespace(String namespaceURI, String elementNamespaceURI, XmlCursor cursor,
+                                            int index) {
+        final String attributeNamespaceURI = cursor.getAttributeNamespace(index);
+        if (namespaceURI.equals(elementNamespaceURI)) {
+            return attributeNamespaceURI.isEmpty();
+        }
+        return namespaceURI.equals(attributeNamespaceURI);
+    }
+}
@@ -1,42 +1,67 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Arrays;
 
 /**
  * Keeps track of attributes in the XML that need to be injected later for the {@link ExecutionContext}.
  * <p/>
  * At any depth in the XML, there's at most one list of attributes to keep track of. That's because attributes can
  * only be injected in a controller method triggered on the node that contains the attributes.
+ * <p/>
+ * The attributes are therefore kept in a stack of fixed-size rows of slots, one row per depth. Each
+ * {@link AttributeControllerParameter} gets its own slot in the row when the processor is built. Rows are created
+ * the first time a depth is reached, and are reused afterwards. Once the deepest level of a document has been reached,
+ * keeping track of attributes doesn't allocate any memory.
  *
  * @see ExecutionContext
  */
 final class AttributeMap {
+    private static final int INITIAL_DEPTH = 16;
+
+    private final int slotCount;
     /*
-     * Key: depth the attributes are found at
-     * Value: pairs of attribute names and attribute values
+     * Index: depth the attributes are found at
+     * Value: attribute values, by slot
      */
-    private final Map<Integer, Map<QName, String>> attributes;
+    private String[][] attributes;
 
-    AttributeMap() {
-        attributes = new HashMap<>();
+    AttributeMap(int slotCount) {
+        this.slotCount = slotCount;
+        this.attributes = new String[INITIAL_DEPTH][];
     }
 
-    void put(int depth, QName name, String value) {
-        if (!attributes.containsKey(depth)) {
-            attributes.put(depth, new HashMap<>());
+    void put(int depth, int slot, String value) {
+        if (depth >= attributes.length) {
+            attributes = Arrays.copyOf(attributes, Math.max(depth + 1, attributes.length * 2));
         }
-        attributes.get(depth).put(name, value);
+        String[] values = attributes[depth];
+        if (values == null) {
+            values = new String[slotCount];
+            attributes[depth] = values;
+        }
+        values[slot] = value;
+    }
+
+    String get(int depth, int slot) {
+        final String[] values = depth < attributes.length ? attributes[depth] : null;
+        return values != null ? values[slot] : null;
     }
 
-    Optional<String> get(int depth, QName name) {
-        final Map<QName, String> map = attributes.get(depth);
-        return map != null ? Optional.ofNullable(map.get(name)) : Optional.empty();
+    /**
+     * Clears all attributes, at all depths, keeping the rows for reuse.
+     */
+    void reset() {
+        for (String[] values : attributes) {
+            if (values != null) {
+                Arrays.fill(values, null);
+            }
+        }
     }
 
     void clear(int depth) {
-        attributes.remove(depth);
+        final String[] values = depth < attributes.length ? attributes[depth] : null;
+        if (values != null) {
+            Arrays.fill(values, null);
+        }
     }
 }
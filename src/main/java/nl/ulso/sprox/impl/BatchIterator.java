@@ -0,0 +1,143 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlBatchResult;
+import nl.ulso.sprox.XmlProcessorException;
+import nl.ulso.sprox.XmlProcessorRuntimeException;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Iterates over the outcomes of processing a batch of files in parallel on an executor.
+ * <p>
+ * The iterator keeps a window of files in progress, twice as large as the number of threads of the executor, or as the
+ * number of processors if it can't tell. It submits the next file only when an outcome is taken from it, so that no
+ * more files are read from the sequence of paths than needed. In order, outcomes are taken in the order in which the
+ * files were submitted, waiting for each in turn. Out of order, they are taken as soon as they complete.
+ * </p>
+ * <p>
+ * All files in the batch are processed with executions from the same pool, so that each file reuses the state of an
+ * execution that finished before. The pool isn't tied to threads, so this works on any executor, including one with
+ * virtual threads.
+ * </p>
+ */
+final class BatchIterator<T> implements Iterator<XmlBatchResult<T>> {
+    private final StaxBasedXmlProcessor<T> processor;
+    private final Iterator<Path> paths;
+    private final Executor executor;
+    private final Queue<Execution<T>> pool;
+    private final int window;
+    private final Queue<CompletableFuture<XmlBatchResult<T>>> submitted;
+    private final BlockingQueue<XmlBatchResult<T>> completed;
+    private int inProgress;
+    private volatile boolean closed;
+
+    /**
+     * @param ordered {@code true} to take the outcomes in the order of the files, {@code false} to take them in the
+     *                order in which they complete.
+     * @param pool    The pool of executions to process the files with.
+     */
+    BatchIterator(StaxBasedXmlProcessor<T> processor, Iterator<Path> paths, Executor executor, boolean ordered,
+                  Queue<Execution<T>> pool) {
+        this.processor = processor;
+        this.paths = paths;
+        this.executor = executor;
+        this.pool = pool;
+        this.window = 2 * (executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors());
+        this.submitted = ordered ? new ArrayDeque<>() : null;
+        this.completed = ordered ? null : new LinkedBlockingQueue<>();
+        this.inProgress = 0;
+        this.closed = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        submit();
+        return inProgress > 0;
+    }
+
+    @Override
+    public XmlBatchResult<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        inProgress--;
+        if (submitted != null) {
+            return submitted.poll().join();
+        }
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XmlProcessorRuntimeException(
+                    new XmlProcessorException("Interrupted while waiting for the next file", e));
+        }
+    }
+
+    private void submit() {
+        while (!closed && inProgress < window && paths.hasNext()) {
+            final Path path = paths.next();
+            final CompletableFuture<XmlBatchResult<T>> future = submit(path);
+            if (submitted != null) {
+                submitted.add(future);
+            } else {
+                future.thenAccept(completed::add);
+            }
+            inProgress++;
+        }
+    }
+
+    /**
+     * @return The outcome of processing the file, to come; if the executor rejects the file, that's its outcome.
+     */
+    private CompletableFuture<XmlBatchResult<T>> submit(Path path) {
+        try {
+            return CompletableFuture.supplyAsync(() -> execute(path), executor)
+                    .handle((result, failure) -> failure == null ? result : failure(path, failure));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(failure(path, e));
+        }
+    }
+
+    private XmlBatchResult<T> execute(Path path) {
+        try {
+            return XmlBatchResult.success(path, processor.execute(path, pool));
+        } catch (XmlProcessorException e) {
+            return XmlBatchResult.failure(path, e);
+        } catch (RuntimeException e) {
+            return failure(path, e);
+        }
+    }
+
+    /**
+     * Turns any failure into an outcome, including errors that escape {@link #execute(Path)}, so that every file that
+     * is submitted has an outcome: the iterator waits for exactly that many.
+     */
+    private XmlBatchResult<T> failure(Path path, Throwable failure) {
+        final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        return XmlBatchResult.failure(path, new XmlProcessorException("Could not process file " + path, cause));
+    }
+
+    /**
+     * Stops submitting files. Files in progress are processed to the end, but their outcomes are dropped.
+     */
+    void close() {
+        closed = true;
+        inProgress = 0;
+        if (submitted != null) {
+            submitted.clear();
+        }
+    }
+}
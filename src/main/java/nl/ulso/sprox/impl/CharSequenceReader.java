@@ -0,0 +1,42 @@
+package nl.ulso.sprox.impl;
+
+import java.io.Reader;
+
+/**
+ * Reader that reads the characters in a {@link CharSequence}. Unlike a {@link java.io.StringReader}, it doesn't need
+ * the characters in a string first.
+ */
+final class CharSequenceReader extends Reader {
+    private final CharSequence characters;
+    private int position;
+
+    CharSequenceReader(CharSequence characters) {
+        this.characters = characters;
+        this.position = 0;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= characters.length()) {
+            return -1;
+        }
+        final int end = Math.min(characters.length(), position + length);
+        if (characters instanceof String) {
+            ((String) characters).getChars(position, end, buffer, offset);
+        } else {
+            for (int i = position; i < end; i++) {
+                buffer[offset + i - position] = characters.charAt(i);
+            }
+        }
+        final int count = end - position;
+        position = end;
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+}
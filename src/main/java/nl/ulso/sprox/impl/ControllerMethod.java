@@ -1,93 +1,156 @@
 package nl.ulso.sprox.impl;
 
 import nl.ulso.sprox.XmlProcessorException;
+import nl.ulso.sprox.processor.ControllerMethodInvoker;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
-import static java.util.Collections.unmodifiableList;
 import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
 
 /**
  * Represents a controller method in a controller class.
+ * <p>
+ * The parameters are kept in a fixed array, each parameter resolving the value for its own slot in the argument list.
+ * The method itself is called through a {@link ControllerMethodInvoker}: either a {@link MethodInvoker}, or the code
+ * in a generated {@link nl.ulso.sprox.processor.ControllerDispatcher}.
+ * </p>
+ * <p>
+ * The controller to invoke the method on is taken from the {@link ExecutionContext}, from the slot its controller class
+ * got when it was added to the builder.
+ * </p>
+ * <p>
+ * Exceptions are handled exactly like {@link java.lang.reflect.Method#invoke(Object, Object...)} would: an unchecked
+ * exception thrown by the controller method is rethrown as is. Anything else is wrapped in an
+ * {@link XmlProcessorException}.
+ * </p>
  */
 final class ControllerMethod {
-    private final Class<?> controllerClass;
-    private final Method method;
-    private final QName ownerName;
-    private final int parameterCount;
-    private final List<ControllerParameter> controllerParameters;
-
-    ControllerMethod(Class<?> controllerClass, Method method, QName ownerName,
-                     List<ControllerParameter> controllerParameters) {
-        this.controllerClass = controllerClass;
-        this.method = method;
-        this.ownerName = ownerName;
-        this.parameterCount = controllerParameters.size();
-        this.controllerParameters = unmodifiableList(controllerParameters);
+    private final int controllerSlot;
+    private final Class<?> returnType;
+    private final ElementPath ownerPath;
+    private final int ownerSymbol;
+    private final ControllerParameter[] controllerParameters;
+    private final AttributeExtractor attributeExtractor;
+    private final ControllerMethodInvoker invoker;
+    private final String signature;
+
+    ControllerMethod(int controllerSlot, ElementPath ownerPath, int ownerSymbol,
+                     List<ControllerParameter> controllerParameters, Class<?> returnType,
+                     ControllerMethodInvoker invoker, String signature) {
+        this.controllerSlot = controllerSlot;
+        this.returnType = returnType;
+        this.ownerPath = ownerPath;
+        this.ownerSymbol = ownerSymbol;
+        this.controllerParameters = controllerParameters.toArray(new ControllerParameter[0]);
+        this.attributeExtractor = AttributeExtractor.create(controllerParameters);
+        this.invoker = invoker;
+        this.signature = signature;
     }
 
+    boolean isMatchingStartElement(XmlCursor cursor, ExecutionContext context) {
+        return cursor.getSymbol() == ownerSymbol && isValidStartElement(cursor, context);
+    }
 
-    boolean isMatchingStartElement(StartElement node) {
-        return ownerName.equals(node.getName())
-                && controllerParameters.stream().allMatch(parameter -> parameter.isValidStartElement(node));
+    /**
+     * Checks whether the start element the cursor points at is valid for this method, without looking at its name.
+     * Use this only if the name is known to match already.
+     * <p>
+     * To check the element, its attributes are extracted into the execution context, in one go. If the element is
+     * valid, {@link #processStartElement(XmlCursor, ExecutionContext)} doesn't need to look at them again.
+     * </p>
+     */
+    boolean isValidStartElement(XmlCursor cursor, ExecutionContext context) {
+        if (!attributeExtractor.extract(cursor, context)) {
+            return false;
+        }
+        for (ControllerParameter parameter : controllerParameters) {
+            if (!parameter.isValidStartElement(cursor)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    boolean isMatchingEndElement(EndElement node) {
-        return ownerName.equals(node.getName());
+    boolean isMatchingEndElement(XmlCursor cursor) {
+        return cursor.getSymbol() == ownerSymbol;
     }
 
-    void processStartElement(StartElement node, ExecutionContext context) {
-        controllerParameters.forEach(p -> p.pushToExecutionContext(node, context));
+    void processStartElement(XmlCursor cursor, ExecutionContext context) {
+        for (ControllerParameter parameter : controllerParameters) {
+            parameter.pushToExecutionContext(cursor, context);
+        }
     }
 
     void processEndElement(ExecutionContext context) {
-        final Object[] parameters = constructMethodParameters(context);
-        context.removeAttributesAndNodes(ownerName);
-        if (parameters.length == parameterCount) {
-            invokeMethod(context, parameters)
-                    .ifPresent(result -> context.pushMethodResult(ownerName, method.getReturnType(), result));
+        final Object[] arguments = new Object[controllerParameters.length];
+        final boolean complete = resolveArguments(context, arguments);
+        context.removeAttributesAndNodes(ownerSymbol);
+        if (complete) {
+            final Object result = invoke(context.getController(controllerSlot), arguments);
+            if (result != null) {
+                context.pushMethodResult(ownerSymbol, returnType, result);
+            }
         }
     }
 
-    private Object[] constructMethodParameters(ExecutionContext context) {
-        return controllerParameters.stream()
-                .map(controllerParameter -> {
-                    final Optional parameter = controllerParameter.resolveMethodParameter(context);
-                    if (controllerParameter.isOptional()) {
-                        //noinspection unchecked
-                        return parameter;
-                    } else if (parameter.isPresent()) {
-                        return parameter.get();
-                    } else {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .toArray();
+    private Object invoke(Object controller, Object[] arguments) {
+        try {
+            return invoker.invoke(controller, arguments);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw unchecked(new XmlProcessorException("Invocation of controller method '" + signature
+                    + "' resulted in an exception.", t));
+        }
     }
 
-    private Optional<Object> invokeMethod(ExecutionContext context, Object[] methodParameters) {
-        try {
-            return Optional.ofNullable(method.invoke(context.getController(controllerClass), methodParameters));
-        } catch (IllegalAccessException e) {
-            throw new IllegalStateException("Access to controller method '" + method + "' was denied.", e);
-        } catch (InvocationTargetException e) {
-            if (e.getCause() instanceof RuntimeException) {
-                throw (RuntimeException) e.getCause();
+    /**
+     * Resolves the values of all parameters into the argument list. All parameters are resolved, even if one of them
+     * is missing, to make sure each parameter takes its data out of the execution context.
+     *
+     * @return {@code true} if all required arguments are available, {@code false} otherwise.
+     */
+    private boolean resolveArguments(ExecutionContext context, Object[] arguments) {
+        boolean complete = true;
+        for (int i = 0; i < controllerParameters.length; i++) {
+            final ControllerParameter parameter = controllerParameters[i];
+            final Object value = parameter.resolveMethodParameter(context);
+            if (parameter.isOptional()) {
+                arguments[i] = Optional.ofNullable(value);
+            } else if (value != null) {
+                arguments[i] = value;
+            } else {
+                complete = false;
             }
-            throw unchecked(new XmlProcessorException("Invocation of controller method '" + method
-                    + "' resulted in an exception.", e.getCause()));
         }
+        return complete;
+    }
+
+    ElementPath getOwnerPath() {
+        return ownerPath;
+    }
+
+    int getOwnerSymbol() {
+        return ownerSymbol;
     }
 
-    QName getOwnerName() {
-        return ownerName;
+    /**
+     * @return The number of attribute slots this method needs; one for each {@link AttributeControllerParameter}.
+     */
+    int getAttributeSlotCount() {
+        return attributeExtractor.getAttributeCount();
+    }
+
+    /**
+     * @return Whether this method has method results of the class given injected.
+     */
+    boolean isInjecting(Class<?> objectClass) {
+        for (ControllerParameter parameter : controllerParameters) {
+            if (parameter.isInjecting(objectClass)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -1,7 +1,5 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.stream.events.StartElement;
-import java.util.Optional;
 
 /**
  * Represents a parameter in a method that needs to be injected.
@@ -11,30 +9,39 @@ interface ControllerParameter {
     /**
      * Validates this parameter for the start element.
      *
-     * @param node The start element to validate.
+     * @param cursor Cursor pointing at the start element to validate.
      * @return {@code true} if this parameter can be processed correctly, {@code false} otherwise.
      */
-    boolean isValidStartElement(StartElement node);
+    boolean isValidStartElement(XmlCursor cursor);
 
     /**
      * Pushes all relevant data for the parameter from the start element to the execution context; only called
-     * if {@link #isValidStartElement(javax.xml.stream.events.StartElement)} returned {@code true}.
+     * if {@link #isValidStartElement(XmlCursor)} returned {@code true}.
      *
-     * @param node    Node to push the parameter for.
+     * @param cursor  Cursor pointing at the start element to push the parameter for.
      * @param context The current execution context.
      */
-    void pushToExecutionContext(StartElement node, ExecutionContext context);
+    void pushToExecutionContext(XmlCursor cursor, ExecutionContext context);
 
     /**
      * Resolves the value of the parameter from the execution context.
      *
      * @param context The current execution context.
-     * @return The value of the parameter.
+     * @return The value of the parameter, or {@code null} if there is none. Optional parameters are resolved to the
+     * value inside the {@link java.util.Optional}.
      */
-    Optional<Object> resolveMethodParameter(ExecutionContext context);
+    Object resolveMethodParameter(ExecutionContext context);
 
     /**
      * @return Whether this parameter is an {@link java.util.Optional} parameter.
      */
     boolean isOptional();
+
+    /**
+     * @param objectClass Class of method results.
+     * @return Whether this parameter is resolved from method results of the class given.
+     */
+    default boolean isInjecting(Class<?> objectClass) {
+        return false;
+    }
 }
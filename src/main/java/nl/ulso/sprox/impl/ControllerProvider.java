@@ -1,10 +1,20 @@
 package nl.ulso.sprox.impl;
 
 /**
- * Provides controller objects. The {@link StaxBasedXmlProcessor} keeps a list of providers. Right before processing
- * an XML, it accesses each provider once to acquire a controller for that run. Those controllers are then stored in
- * the {@link ExecutionContext}, storing them for that run only.
+ * Provides controller objects. The {@link StaxBasedXmlProcessor} keeps an array of providers, one for each controller
+ * slot. At the start of a processing run, the {@link ExecutionContext} accesses each provider once to acquire a
+ * controller for that run, and stores it in the same slot. At the end of the run, it releases the controllers to their
+ * providers again.
  */
 interface ControllerProvider {
     Object getController();
+
+    /**
+     * Releases a controller acquired from this provider, after the run it was acquired for. By default this does
+     * nothing.
+     *
+     * @param controller The controller to release.
+     */
+    default void releaseController(Object controller) {
+    }
 }
@@ -0,0 +1,193 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Compression;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Input stream that decompresses a compressed stream on a separate thread.
+ * <p>
+ * The decompressor thread and the reader of this stream pass a fixed set of buffers around in a ring, through two
+ * bounded queues: the decompressor takes a free buffer, fills it and hands it over; the reader takes a filled buffer,
+ * reads it and hands it back. The decompressor therefore runs ahead of the reader by at most {@link #BUFFER_COUNT}
+ * buffers, and no buffers are allocated after construction.
+ * </p>
+ * <p>
+ * Closing this stream stops the decompressor thread and waits for it to close its inflater, but doesn't close the
+ * compressed stream. A failure to decompress, of any kind, is thrown to the reader as soon as it has read all bytes
+ * decompressed before the failure. Whatever happens, the decompressor ends the ring with {@link Chunk#END}, so that
+ * the reader never waits for bytes that don't come.
+ * </p>
+ */
+final class DecompressingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 65536;
+    private static final int BUFFER_COUNT = 4;
+    private static final int GZIP_MAGIC = 0x1F8B;
+
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread decompressor;
+    private Chunk current;
+    private Throwable failure;
+
+    DecompressingInputStream(InputStream compressed, Compression compression) throws IOException {
+        final InputStream input = new UncloseableInputStream(compressed);
+        final InputStream inflater = compression == Compression.GZIP
+                ? new GZIPInputStream(input, BUFFER_SIZE)
+                : new InflaterInputStream(input);
+        this.free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        this.filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(new Chunk(new byte[BUFFER_SIZE]));
+        }
+        this.current = null;
+        this.failure = null;
+        this.decompressor = new Thread(() -> decompress(inflater), "sprox-decompressor");
+        this.decompressor.setDaemon(true);
+        this.decompressor.start();
+    }
+
+    /**
+     * Detects the compression of a document from its first two bytes.
+     *
+     * @param compression The compression configured for the processor.
+     * @param first       The first byte of the document, or -1 if the document is empty.
+     * @param second      The second byte of the document, or -1 if the document has less than two bytes.
+     * @return The compression of the document: {@link Compression#NONE}, {@link Compression#GZIP} or
+     * {@link Compression#DEFLATE}.
+     */
+    static Compression detect(Compression compression, int first, int second) {
+        if (compression != Compression.DETECT) {
+            return compression;
+        }
+        if (first == -1 || second == -1) {
+            return Compression.NONE;
+        }
+        final int header = first << 8 | second;
+        if (header == GZIP_MAGIC) {
+            return Compression.GZIP;
+        }
+        // zlib: compression method 8 (deflate), a window of at most 32K, and a header that is a multiple of 31.
+        if ((first & 0x0F) == 8 && first >> 4 <= 7 && header % 31 == 0) {
+            return Compression.DEFLATE;
+        }
+        return Compression.NONE;
+    }
+
+    private void decompress(InputStream inflater) {
+        try (InputStream input = inflater) {
+            int count;
+            do {
+                final Chunk chunk = free.take();
+                count = input.readNBytes(chunk.bytes, 0, chunk.bytes.length);
+                chunk.length = count;
+                chunk.position = 0;
+                filled.put(chunk);
+            } while (count == BUFFER_SIZE);
+        } catch (InterruptedException e) {
+            // The stream was closed; nobody is reading anymore.
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            filled.add(Chunk.END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final Chunk chunk = nextChunk();
+        return chunk != Chunk.END ? chunk.bytes[chunk.position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        final Chunk chunk = nextChunk();
+        if (chunk == Chunk.END) {
+            return -1;
+        }
+        final int count = Math.min(length, chunk.length - chunk.position);
+        System.arraycopy(chunk.bytes, chunk.position, bytes, offset, count);
+        chunk.position += count;
+        return count;
+    }
+
+    /**
+     * @return The current chunk if it has bytes left, otherwise the next chunk with bytes, or {@link Chunk#END}.
+     */
+    private Chunk nextChunk() throws IOException {
+        while (current == null || current != Chunk.END && current.position == current.length) {
+            if (current != null) {
+                free.add(current);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+        }
+        if (current == Chunk.END && failure != null) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new IOException("Could not decompress the document", failure);
+        }
+        return current;
+    }
+
+    /**
+     * Stops the decompressor thread, and waits for it to end. If the decompressor is blocked reading the compressed
+     * stream, that's after that read returns.
+     */
+    @Override
+    public void close() {
+        decompressor.interrupt();
+        try {
+            decompressor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A buffer in the ring, with the number of bytes in it, and the number of bytes read from it.
+     */
+    private static final class Chunk {
+        private static final Chunk END = new Chunk(new byte[0]);
+
+        private final byte[] bytes;
+        private int length;
+        private int position;
+
+        private Chunk(byte[] bytes) {
+            this.bytes = bytes;
+            this.length = 0;
+            this.position = 0;
+        }
+    }
+
+    /**
+     * Keeps the compressed stream open when the decompressor closes its inflater.
+     */
+    private static final class UncloseableInputStream extends FilterInputStream {
+        private UncloseableInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.processor.ControllerMethodDefinition;
+import nl.ulso.sprox.processor.ControllerMethodInvoker;
+import nl.ulso.sprox.processor.ControllerMethodRegistry;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the controller methods of a single controller class from a generated
+ * {@link nl.ulso.sprox.processor.ControllerDispatcher}, and turns them into {@link ControllerMethod}s.
+ */
+final class DispatcherControllerMethodRegistry implements ControllerMethodRegistry {
+    private final int controllerSlot;
+    private final SymbolTable symbolTable;
+    private final List<Definition> definitions;
+
+    DispatcherControllerMethodRegistry(int controllerSlot, SymbolTable symbolTable) {
+        this.controllerSlot = controllerSlot;
+        this.symbolTable = symbolTable;
+        this.definitions = new ArrayList<>();
+    }
+
+    @Override
+    public ControllerMethodDefinition addControllerMethod(String namespaceUri, String localName, boolean recursive,
+                                                          Class<?> returnType, String signature,
+                                                          ControllerMethodInvoker invoker) {
+        final Definition definition = new Definition(new QName(namespaceUri, localName), recursive, returnType,
+                signature, invoker);
+        definitions.add(definition);
+        return definition;
+    }
+
+    /**
+     * Creates a {@link StartNodeEventHandler} for each registered controller method, in order.
+     *
+     * @param eventHandlers List of event handlers to add the new event handlers to.
+     */
+    void addStartNodeEventHandlers(List<StartNodeEventHandler> eventHandlers) {
+        for (Definition definition : definitions) {
+            eventHandlers.add(new StartNodeEventHandler(eventHandlers.size(), definition.createControllerMethod(),
+                    definition.recursive));
+        }
+    }
+
+    private final class Definition implements ControllerMethodDefinition {
+        private final QName ownerName;
+        private final int ownerSymbol;
+        private final boolean recursive;
+        private final Class<?> returnType;
+        private final String signature;
+        private final ControllerMethodInvoker invoker;
+        private final List<ControllerParameter> controllerParameters;
+        private int attributeSlots;
+
+        Definition(QName ownerName, boolean recursive, Class<?> returnType, String signature,
+                   ControllerMethodInvoker invoker) {
+            this.ownerName = ownerName;
+            this.ownerSymbol = symbolTable.add(ownerName);
+            this.recursive = recursive;
+            this.returnType = returnType;
+            this.signature = signature;
+            this.invoker = invoker;
+            this.controllerParameters = new ArrayList<>();
+            this.attributeSlots = 0;
+        }
+
+        @Override
+        public ControllerMethodDefinition addAttribute(String namespaceUri, String localName, Class<?> type,
+                                                       boolean optional) {
+            controllerParameters.add(
+                    new AttributeControllerParameter(new QName(namespaceUri, localName), attributeSlots++, type,
+                            optional));
+            return this;
+        }
+
+        @Override
+        public ControllerMethodDefinition addNode(String namespaceUri, String localName, Class<?> type,
+                                                  boolean optional) {
+            controllerParameters.add(
+                    new NodeControllerParameter(ownerSymbol, symbolTable.add(new QName(namespaceUri, localName)), type,
+                            optional));
+            return this;
+        }
+
+        @Override
+        public ControllerMethodDefinition addList(Class<?> elementClass, String sourceNamespaceUri,
+                                                  String sourceLocalName, boolean optional) {
+            controllerParameters.add(new ListControllerParameter(elementClass,
+                    createSourceName(sourceNamespaceUri, sourceLocalName), optional));
+            return this;
+        }
+
+        @Override
+        public ControllerMethodDefinition addObject(Class<?> objectClass, String sourceNamespaceUri,
+                                                    String sourceLocalName, boolean optional) {
+            controllerParameters.add(new ObjectControllerParameter(objectClass,
+                    createSourceName(sourceNamespaceUri, sourceLocalName), optional));
+            return this;
+        }
+
+        private int createSourceName(String namespaceUri, String localName) {
+            return localName != null ? symbolTable.add(new QName(namespaceUri, localName)) : MethodResultMap.ANY_SOURCE;
+        }
+
+        ControllerMethod createControllerMethod() {
+            return new ControllerMethod(controllerSlot, ElementPath.of(ownerName), ownerSymbol, controllerParameters,
+                    returnType, invoker, signature);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.namespace.QName;
+import java.util.List;
+
+/**
+ * Path to the element a controller method is triggered on, compiled from the value of a {@link nl.ulso.sprox.Node}
+ * annotation.
+ * <p>
+ * A path is a list of steps, each with the name of an element. The last step is the name of the element itself; the
+ * steps before it are the names of its ancestors. Each step is either a child step - the element must be a child of
+ * the element of the previous step - or a descendant step - the element may be nested anywhere below the element of
+ * the previous step. For the first step, the previous element is the document itself: a path that starts with a
+ * child step is anchored at the root element.
+ * </p>
+ * <p>
+ * A path that consists of a single descendant step is equivalent to a plain element name: it matches the element
+ * anywhere in the document.
+ * </p>
+ *
+ * @see PathAutomaton
+ */
+final class ElementPath {
+    private final QName[] names;
+    private final boolean[] descendants;
+
+    ElementPath(List<QName> names, List<Boolean> descendants) {
+        if (names.isEmpty() || names.size() != descendants.size()) {
+            throw new IllegalArgumentException("A path must have at least one step, and a name for each step.");
+        }
+        this.names = names.toArray(new QName[0]);
+        this.descendants = new boolean[descendants.size()];
+        for (int i = 0; i < this.descendants.length; i++) {
+            this.descendants[i] = descendants.get(i);
+        }
+    }
+
+    /**
+     * @param name Name of the element.
+     * @return A path that matches the element anywhere in the document.
+     */
+    static ElementPath of(QName name) {
+        return new ElementPath(List.of(name), List.of(true));
+    }
+
+    /**
+     * @return The name of the element this path leads to.
+     */
+    QName getName() {
+        return names[names.length - 1];
+    }
+
+    int getLength() {
+        return names.length;
+    }
+
+    QName getName(int step) {
+        return names[step];
+    }
+
+    boolean isDescendant(int step) {
+        return descendants[step];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            builder.append(descendants[i] ? "//" : "/").append(names[i]);
+        }
+        return builder.toString();
+    }
+}
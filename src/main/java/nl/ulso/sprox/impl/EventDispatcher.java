@@ -0,0 +1,132 @@
+package nl.ulso.sprox.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Finds the event handler for each event in the XML stream, for a single execution of a
+ * {@link StaxBasedXmlProcessor}.
+ * <p>
+ * There are two kinds of event handlers to dispatch events to:
+ * </p>
+ * <ul>
+ * <li>Start node event handlers, one for every controller method. These are compiled into a {@link PathAutomaton} on
+ * the paths of the elements they trigger on. The automaton is built once per processor and shared by all executions;
+ * the dispatcher keeps track of the state of the automaton at each depth in the document. While the node event
+ * handler of a controller method is active, its start node event handler is disabled.</li>
+ * <li>Active event handlers, processing the content of a node. These are kept on a stack, the most recently activated
+ * handler on top. The stack grows and shrinks with the nesting of the nodes that are being processed.</li>
+ * </ul>
+ * <p>
+ * For each event the stack is searched first, top to bottom. Only if none of the active event handlers matches and
+ * the event is a start element, the event handlers accepted by the current state of the automaton are considered.
+ * The cost of dispatching an event therefore depends on the nesting of the active event handlers, not on the number of
+ * controller methods registered, nor on the paths they trigger on.
+ * </p>
+ */
+final class EventDispatcher {
+    private static final int INITIAL_DEPTH = 16;
+
+    private final PathAutomaton pathAutomaton;
+    private final Deque<EventHandler> activeEventHandlers;
+    private final boolean[] disabledStartNodeEventHandlers;
+    /*
+     * Index: depth in the document
+     * Value: state of the path automaton after the start element at that depth
+     */
+    private int[] pathStates;
+    private int depth;
+
+    EventDispatcher(PathAutomaton pathAutomaton, int startNodeEventHandlerCount) {
+        this.pathAutomaton = pathAutomaton;
+        this.activeEventHandlers = new ArrayDeque<>();
+        this.disabledStartNodeEventHandlers = new boolean[startNodeEventHandlerCount];
+        this.pathStates = new int[INITIAL_DEPTH];
+        this.pathStates[0] = PathAutomaton.INITIAL_STATE;
+        this.depth = 0;
+    }
+
+    /**
+     * Resets this dispatcher to its initial state, for reuse in another execution.
+     */
+    void reset() {
+        activeEventHandlers.clear();
+        Arrays.fill(disabledStartNodeEventHandlers, false);
+        depth = 0;
+    }
+
+    /**
+     * Advances the path automaton on a start element. Must be called for every start element that is dispatched,
+     * before it is dispatched.
+     *
+     * @param symbol Symbol of the start element.
+     */
+    void enterElement(int symbol) {
+        if (depth + 1 == pathStates.length) {
+            pathStates = Arrays.copyOf(pathStates, pathStates.length * 2);
+        }
+        pathStates[depth + 1] = pathAutomaton.nextState(pathStates[depth], symbol);
+        depth++;
+    }
+
+    /**
+     * Moves the path automaton back to the state it was in before the matching start element. Must be called for
+     * every end element that is dispatched, after it is dispatched.
+     */
+    void leaveElement() {
+        depth--;
+    }
+
+    /**
+     * Finds the first event handler that matches the event and removes it from this dispatcher.
+     *
+     * @param cursor  Cursor pointing at the event to find the handler for.
+     * @param context The current execution context.
+     * @return The matching event handler, or {@code null} if there is none.
+     */
+    EventHandler popFirstMatchingEventHandler(XmlCursor cursor, ExecutionContext context) {
+        final Iterator<EventHandler> iterator = activeEventHandlers.iterator();
+        while (iterator.hasNext()) {
+            final EventHandler handler = iterator.next();
+            if (handler.matches(cursor, context)) {
+                iterator.remove();
+                return handler;
+            }
+        }
+        if (cursor.getEventType() == START_ELEMENT) {
+            for (StartNodeEventHandler handler : pathAutomaton.getAcceptedHandlers(pathStates[depth])) {
+                final int index = handler.getIndex();
+                if (!disabledStartNodeEventHandlers[index] && handler.matches(cursor, context)) {
+                    disabledStartNodeEventHandlers[index] = true;
+                    return handler;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the content of a node is being collected, {@code false} otherwise.
+     */
+    boolean isCollectingNodeContent() {
+        return activeEventHandlers.peek() instanceof NodeContentEventHandler;
+    }
+
+    /**
+     * Pushes the event handler that follows up on a processed event. A start node event handler is enabled again in
+     * the index; any other event handler is pushed on top of the stack of active event handlers.
+     *
+     * @param handler The followup event handler.
+     */
+    void push(EventHandler handler) {
+        if (handler instanceof StartNodeEventHandler) {
+            disabledStartNodeEventHandlers[((StartNodeEventHandler) handler).getIndex()] = false;
+        } else {
+            activeEventHandlers.push(handler);
+        }
+    }
+}
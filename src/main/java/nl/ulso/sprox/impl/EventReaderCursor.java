@@ -0,0 +1,145 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor on top of the StAX event iterator API, an {@link XMLEventReader}. It keeps track of the current event and
+ * reads from that.
+ *
+ * @see nl.ulso.sprox.Engine#EVENT_READER
+ */
+final class EventReaderCursor implements XmlCursor {
+    private static final int UNRESOLVED = -2;
+
+    private final XMLEventReader reader;
+    private final SymbolTable symbolTable;
+    private final List<Attribute> attributes;
+    private XMLEvent event;
+    private XMLEvent attributesEvent;
+    private int symbol;
+
+    EventReaderCursor(XMLEventReader reader, SymbolTable symbolTable) {
+        this.reader = reader;
+        this.symbolTable = symbolTable;
+        this.attributes = new ArrayList<>();
+        this.event = null;
+        this.attributesEvent = null;
+        this.symbol = UNRESOLVED;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return reader.hasNext();
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        event = reader.nextEvent();
+        symbol = UNRESOLVED;
+        return event.getEventType();
+    }
+
+    @Override
+    public int getEventType() {
+        return event.getEventType();
+    }
+
+    @Override
+    public String getLocalName() {
+        return getName().getLocalPart();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return getName().getNamespaceURI();
+    }
+
+    @Override
+    public QName getName() {
+        return event.isStartElement() ? event.asStartElement().getName() : event.asEndElement().getName();
+    }
+
+    @Override
+    public int getSymbol() {
+        if (symbol == UNRESOLVED) {
+            symbol = symbolTable.lookup(getName());
+        }
+        return symbol;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributes().size();
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributes().get(index).getName().getLocalPart();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributes().get(index).getName().getNamespaceURI();
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return attributes().get(index).getValue();
+    }
+
+    /**
+     * The event API gives access to attributes through an iterator only. For indexed access, the attributes of the
+     * current start element are copied into a list, once.
+     */
+    private List<Attribute> attributes() {
+        if (attributesEvent != event) {
+            attributes.clear();
+            event.asStartElement().getAttributes().forEachRemaining(attributes::add);
+            attributesEvent = event;
+        }
+        return attributes;
+    }
+
+    @Override
+    public String getText() {
+        return event.asCharacters().getData();
+    }
+
+    @Override
+    public Location getLocation() {
+        return event.getLocation();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+
+    static final class Factory implements XmlCursorFactory {
+        private final XMLInputFactory inputFactory;
+
+        Factory(XMLInputFactory inputFactory) {
+            this.inputFactory = inputFactory;
+        }
+
+        @Override
+        public XmlCursor createCursor(Reader reader, SymbolTable symbolTable) throws XMLStreamException {
+            return new EventReaderCursor(inputFactory.createXMLEventReader(reader), symbolTable);
+        }
+
+        @Override
+        public XmlCursor createCursor(InputStream inputStream, SymbolTable symbolTable) throws XMLStreamException {
+            return new EventReaderCursor(inputFactory.createXMLEventReader(inputStream), symbolTable);
+        }
+    }
+}
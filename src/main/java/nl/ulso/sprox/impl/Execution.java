@@ -0,0 +1,163 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessorException;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.Optional;
+import java.util.Queue;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
+
+/**
+ * A single run of a processor over a document. An execution holds all state of the run: the cursor, the
+ * {@link EventDispatcher} and the {@link ExecutionContext}. That allows an execution to be suspended when its cursor
+ * runs out of input, and to be resumed when more input is available.
+ * <p>
+ * An execution can also publish its results as they are produced, instead of keeping the last one only. These are
+ * collected in a queue. As long as there are results in the queue, the execution is paused, so that it never runs
+ * ahead of whoever takes the results from it.
+ * </p>
+ * <p>
+ * An execution that is not done must be closed, or abandoned after an error, to release its controllers.
+ * </p>
+ */
+final class Execution<T> {
+    private final Class<T> resultClass;
+    private XmlCursor cursor;
+    private final EventDispatcher dispatcher;
+    private final ExecutionContext<T> context;
+    private final boolean skipUnknownSubtrees;
+    private final boolean stopAtFirstResult;
+    private final Queue<T> publishedResults;
+    private int skipDepth;
+
+    /**
+     * @param publishedResults Queue to publish results to, or {@code null} to keep the last result only.
+     */
+    Execution(Class<T> resultClass, XmlCursor cursor, EventDispatcher dispatcher, ExecutionContext<T> context,
+              boolean skipUnknownSubtrees, boolean stopAtFirstResult, Queue<T> publishedResults) {
+        this.resultClass = resultClass;
+        this.cursor = cursor;
+        this.dispatcher = dispatcher;
+        this.context = context;
+        this.skipUnknownSubtrees = skipUnknownSubtrees;
+        this.stopAtFirstResult = stopAtFirstResult;
+        this.publishedResults = publishedResults;
+        this.skipDepth = 0;
+    }
+
+    /**
+     * Resets this execution for another run over a document, with a new cursor. The dispatcher and the context are
+     * reset and reused, and the new cursor takes over from the old one. Only executions that were done, and that don't
+     * publish their results, can be reset.
+     *
+     * @param cursor The cursor to read the next document with.
+     */
+    void reset(XmlCursor cursor) {
+        cursor.reuse(this.cursor);
+        this.cursor = cursor;
+        this.skipDepth = 0;
+        dispatcher.reset();
+        context.reset();
+    }
+
+    /**
+     * Processes events until the end of the document, until the result is available if the processor stops at the
+     * first result, until the cursor runs out of input, or until a result is published.
+     *
+     * @return {@code true} if the execution is done, {@code false} if it needs more input, or published a result.
+     * @throws XMLStreamException If the document could not be read.
+     */
+    boolean run() throws XMLStreamException {
+        while (cursor.hasNext() && !(stopAtFirstResult && context.hasResult())) {
+            if (publishedResults != null && !publishedResults.isEmpty()) {
+                return false;
+            }
+            final int eventType = cursor.next();
+            if (eventType == XmlCursor.INCOMPLETE) {
+                return false;
+            }
+            if (skipDepth > 0) {
+                skip(eventType);
+                continue;
+            }
+            if (eventType == START_ELEMENT) {
+                if (isSkippable()) {
+                    skipDepth = 1;
+                    continue;
+                }
+                context.increaseDepth();
+                dispatcher.enterElement(cursor.getSymbol());
+            }
+            final EventHandler handler = dispatcher.popFirstMatchingEventHandler(cursor, context);
+            if (handler != null) {
+                dispatcher.push(handler.process(cursor, context));
+            }
+            if (eventType == END_ELEMENT) {
+                context.decreaseDepth();
+                dispatcher.leaveElement();
+            }
+        }
+        close();
+        return true;
+    }
+
+    /**
+     * Closes the cursor of this execution and releases its controllers, whether it's done or not. The execution is
+     * closed automatically when it's done; closing it again has no effect.
+     *
+     * @throws XMLStreamException If the cursor could not be closed.
+     */
+    void close() throws XMLStreamException {
+        context.releaseControllers();
+        cursor.close();
+    }
+
+    /**
+     * Releases the controllers of an execution that failed. The cursor is left as it is.
+     */
+    void abandon() {
+        context.releaseControllers();
+    }
+
+    /**
+     * Moves the method results collected by this execution into another one; see
+     * {@link ExecutionContext#moveMethodResultsTo(ExecutionContext)}.
+     *
+     * @param target The execution to move the method results to.
+     */
+    void moveMethodResultsTo(Execution<?> target) {
+        context.moveMethodResultsTo(target.context);
+    }
+
+    private boolean isSkippable() {
+        return skipUnknownSubtrees
+                && !dispatcher.isCollectingNodeContent()
+                && cursor.getSymbol() == SymbolTable.UNKNOWN;
+    }
+
+    private void skip(int eventType) {
+        if (eventType == START_ELEMENT) {
+            skipDepth++;
+        } else if (eventType == END_ELEMENT) {
+            skipDepth--;
+        }
+    }
+
+    /**
+     * @return The last result produced; {@code null} only if {@code T} is {@link Void}.
+     * @throws UncheckedXmlProcessorException If no result was produced.
+     */
+    T getResult() {
+        final Optional<T> result = context.getResult();
+        if (result.isPresent()) {
+            return result.get();
+        }
+        if (!Void.class.equals(resultClass)) {
+            throw unchecked(new XmlProcessorException("No result collected of type " + resultClass.getName()));
+        }
+        return null;
+    }
+}
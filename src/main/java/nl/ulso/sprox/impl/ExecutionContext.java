@@ -3,10 +3,11 @@ package nl.ulso.sprox.impl;
 import nl.ulso.sprox.ParseException;
 import nl.ulso.sprox.Parser;
 
-import javax.xml.namespace.QName;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
 
@@ -48,12 +49,20 @@ import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
  * <li><strong>Method results</strong>: Method results are created by invoking controller methods. When created, they
  * are stored. The hierarchy of the processed XML doesn't need to match the hierarchy of the controllers: an object may
  * be injected several levels up, with other controller methods on intermediate levels that ignore it. The
- * {@link MethodResultMap} is responsible for keeping track of method results.
+ * {@link MethodResultMap} is responsible for keeping track of method results. Method results of a type that has a
+ * result sink are passed to that sink instead, and are not stored at all.
  * </li>
  * <li><strong>Result</strong>: The processing result is just an object created from a controller method. The last
  * object created by any method with the correct result type is considered to be the processing result. Typically
- * the result is produced by a method annotated with the root node. This method is always called last.</li>
+ * the result is produced by a method annotated with the root node. This method is always called last. If the context
+ * has a result consumer, every object created with the correct result type is passed to it as well. Those objects are
+ * then only stored as method results if some controller method has them injected; otherwise, they are not kept.</li>
  * </ul>
+ * <p/>
+ * Event handlers are shared by all executions of a processor, and therefore have no state of their own. The state they
+ * do need, like the recursion level of a {@link RecursiveNodeEventHandler}, is kept in this context as well. So are the
+ * controllers of the run, one in each controller slot. They are acquired from their providers when the context is
+ * created, and released again by {@link #releaseControllers()}.
  *
  * @see AttributeMap
  * @see NodeContentMap
@@ -62,29 +71,75 @@ import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
 final class ExecutionContext<T> {
     // Immutable data; the same across all processing runs
     private final Class<T> resultClass;
-    private final Map<Class, Object> controllers;
+    private final ControllerProvider[] controllerProviders;
     private final Map<Class<?>, Parser<?>> parsers;
+    private final Map<Class<?>, Consumer<Object>> resultSinks;
+    private final Consumer<? super T> resultConsumer;
+    private final boolean resultInjected;
 
     // Mutable data, collected during a single processing run
+    private final Object[] controllers;
     private final AttributeMap attributeMap;
     private final MethodResultMap methodResultMap;
     private final NodeContentMap nodeContentMap;
+    private final int[] recursionLevels;
     private int depth;
     private T result;
 
-    ExecutionContext(Class<T> resultClass, Map<Class, Object> controllers, Map<Class<?>, Parser<?>> parsers) {
+    ExecutionContext(Class<T> resultClass, ControllerProvider[] controllerProviders, Map<Class<?>, Parser<?>> parsers,
+                     Map<Class<?>, Consumer<Object>> resultSinks, int eventHandlerCount, int attributeSlotCount,
+                     int symbolCount, Consumer<? super T> resultConsumer, boolean resultInjected) {
         this.resultClass = resultClass;
-        this.controllers = controllers;
+        this.controllerProviders = controllerProviders;
         this.parsers = parsers;
-        this.attributeMap = new AttributeMap();
-        this.nodeContentMap = new NodeContentMap();
+        this.resultSinks = resultSinks;
+        this.resultConsumer = resultConsumer;
+        this.resultInjected = resultInjected;
+        this.controllers = new Object[controllerProviders.length];
+        acquireControllers();
+        this.attributeMap = new AttributeMap(attributeSlotCount);
+        this.nodeContentMap = new NodeContentMap(symbolCount);
         this.methodResultMap = new MethodResultMap();
+        this.recursionLevels = new int[eventHandlerCount];
         this.depth = 0;
         this.result = null;
     }
 
-    Object getController(Class controllerClass) {
-        return controllers.get(controllerClass);
+    /**
+     * Resets this context to its initial state, with new controllers, for reuse in another processing run. All data
+     * structures are kept, so that the run doesn't need to allocate them again.
+     */
+    void reset() {
+        acquireControllers();
+        attributeMap.reset();
+        nodeContentMap.reset();
+        methodResultMap.reset();
+        Arrays.fill(recursionLevels, 0);
+        depth = 0;
+        result = null;
+    }
+
+    private void acquireControllers() {
+        for (int i = 0; i < controllers.length; i++) {
+            controllers[i] = controllerProviders[i].getController();
+        }
+    }
+
+    Object getController(int controllerSlot) {
+        return controllers[controllerSlot];
+    }
+
+    /**
+     * Releases all controllers to their providers. After this, the context can't be used anymore, until it's reset.
+     * Releasing more than once has no effect.
+     */
+    void releaseControllers() {
+        for (int i = 0; i < controllers.length; i++) {
+            if (controllers[i] != null) {
+                controllerProviders[i].releaseController(controllers[i]);
+                controllers[i] = null;
+            }
+        }
     }
 
     <R> R parseString(String value, Class<R> resultClass) {
@@ -100,44 +155,67 @@ final class ExecutionContext<T> {
         }
     }
 
-    void pushAttribute(QName attributeName, String attributeValue) {
-        attributeMap.put(depth, attributeName, attributeValue);
+    void pushAttribute(int attributeSlot, String attributeValue) {
+        attributeMap.put(depth, attributeSlot, attributeValue);
     }
 
-    Optional<String> getAttributeValue(QName attributeName) {
-        return attributeMap.get(depth, attributeName);
+    String getAttributeValue(int attributeSlot) {
+        return attributeMap.get(depth, attributeSlot);
     }
 
-    void flagNode(QName ownerName, QName nodeName) {
+    void flagNode(int ownerName, int nodeName) {
         nodeContentMap.flag(depth, ownerName, nodeName);
     }
 
-    boolean isNodeFlagged(QName nodeName) {
+    boolean isNodeFlagged(int nodeName) {
         return nodeContentMap.isFlagged(nodeName);
     }
 
-    void pushNodeContent(QName ownerName, QName nodeName, String nodeContent) {
+    void pushNodeContent(int ownerName, int nodeName, String nodeContent) {
         nodeContentMap.put(depth, ownerName, nodeName, nodeContent);
     }
 
-    Optional<String> getNodeContent(QName ownerName, QName nodeName) {
+    String getNodeContent(int ownerName, int nodeName) {
         return nodeContentMap.get(depth, ownerName, nodeName);
     }
 
-    void removeAttributesAndNodes(QName ownerName) {
+    void removeAttributesAndNodes(int ownerName) {
         attributeMap.clear(depth);
         nodeContentMap.clear(depth, ownerName);
     }
 
+    void pushMethodResult(int ownerName, Class objectClass, Object methodResult) {
+        pushMethodResult(depth, ownerName, objectClass, methodResult);
+    }
+
     @SuppressWarnings("unchecked")
-    void pushMethodResult(QName ownerName, Class objectClass, Object methodResult) {
-        methodResultMap.put(depth, ownerName, objectClass, methodResult);
-        if (resultClass.equals(objectClass)) {
+    private void pushMethodResult(int depth, int ownerName, Class objectClass, Object methodResult) {
+        final Consumer<Object> resultSink = resultSinks.get(objectClass);
+        final boolean isResult = resultClass.equals(objectClass);
+        if (resultSink != null) {
+            resultSink.accept(methodResult);
+        } else if (!isResult || resultConsumer == null || resultInjected) {
+            methodResultMap.put(depth, ownerName, objectClass, methodResult);
+        }
+        if (isResult) {
             result = (T) methodResult;
+            if (resultConsumer != null) {
+                resultConsumer.accept(result);
+            }
         }
     }
 
-    Optional<List<?>> popMethodResults(QName sourceName, Class objectClass) {
+    /**
+     * Moves all method results collected so far into another context, at the same depths, as if they were produced
+     * there. Results of a type with a result sink in the other context are passed to that sink.
+     *
+     * @param target The context to move the method results to.
+     */
+    void moveMethodResultsTo(ExecutionContext<?> target) {
+        methodResultMap.drain(target::pushMethodResult);
+    }
+
+    List<?> popMethodResults(int sourceName, Class objectClass) {
         return methodResultMap.pop(depth, sourceName, objectClass);
     }
 
@@ -149,6 +227,22 @@ final class ExecutionContext<T> {
         depth--;
     }
 
+    void increaseRecursionLevel(int eventHandlerIndex) {
+        recursionLevels[eventHandlerIndex]++;
+    }
+
+    void decreaseRecursionLevel(int eventHandlerIndex) {
+        recursionLevels[eventHandlerIndex]--;
+    }
+
+    int getRecursionLevel(int eventHandlerIndex) {
+        return recursionLevels[eventHandlerIndex];
+    }
+
+    boolean hasResult() {
+        return result != null;
+    }
+
     Optional<T> getResult() {
         return Optional.ofNullable(result);
     }
@@ -0,0 +1,64 @@
+package nl.ulso.sprox.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A file that is mapped into memory for reading. Parts of the file are handed out as buffers of at most 2GB each;
+ * files of any size can be read that way, one window at a time.
+ * <p>
+ * This implementation maps each window separately, with {@link FileChannel#map(FileChannel.MapMode, long, long)}.
+ * Java 22 and later use the implementation in the multi-release part of the JAR instead, which maps the complete file
+ * as a single memory segment, and hands out slices of it.
+ * </p>
+ */
+final class FileMapping implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+
+    private FileMapping(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    static FileMapping open(Path path) throws IOException {
+        return new FileMapping(FileChannel.open(path, READ));
+    }
+
+    /**
+     * @return The size of the file, in bytes.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @param offset Offset in the file of the first byte in the window.
+     * @param length Size of the window.
+     * @return Buffer holding the window, from index 0.
+     * @throws IOException If the window could not be mapped.
+     */
+    ByteBuffer map(long offset, int length) throws IOException {
+        return channel.map(READ_ONLY, offset, length);
+    }
+
+    /**
+     * @return A stream that reads the file from the start, for when the file can't be processed from memory.
+     */
+    InputStream newInputStream() {
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
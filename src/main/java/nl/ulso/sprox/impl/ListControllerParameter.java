@@ -1,41 +1,42 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.events.StartElement;
-import java.util.Optional;
-
 /**
- * Represents a parameter whose value is a list of collected method results.
+ * Represents a parameter whose value is a list of collected method results. The results are collected from the
+ * source with the symbol given, or from any source if it is {@link MethodResultMap#ANY_SOURCE}.
  */
 final class ListControllerParameter implements ControllerParameter {
     private final Class elementClass;
-    private final QName sourceName;
+    private final int sourceSymbol;
     private final boolean optional;
 
-    ListControllerParameter(Class elementClass, QName sourceName, boolean optional) {
+    ListControllerParameter(Class elementClass, int sourceSymbol, boolean optional) {
         this.elementClass = elementClass;
-        this.sourceName = sourceName;
+        this.sourceSymbol = sourceSymbol;
         this.optional = optional;
     }
 
     @Override
-    public boolean isValidStartElement(StartElement node) {
+    public boolean isValidStartElement(XmlCursor cursor) {
         return true;
     }
 
     @Override
-    public void pushToExecutionContext(StartElement node, ExecutionContext context) {
+    public void pushToExecutionContext(XmlCursor cursor, ExecutionContext context) {
         // Nothing to do here.
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public Optional<Object> resolveMethodParameter(ExecutionContext context) {
-        return context.popMethodResults(sourceName, elementClass);
+    public Object resolveMethodParameter(ExecutionContext context) {
+        return context.popMethodResults(sourceSymbol, elementClass);
     }
 
     @Override
     public boolean isOptional() {
         return optional;
     }
+
+    @Override
+    public boolean isInjecting(Class<?> objectClass) {
+        return elementClass.equals(objectClass);
+    }
 }
@@ -0,0 +1,101 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.processor.ControllerMethodInvoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a controller method through a {@link MethodHandle}.
+ * <p>
+ * The method handle is looked up once, when the invoker is created. It is adapted to take the controller and one
+ * {@code Object} per method parameter, and to return an {@code Object}. Static methods ignore the controller. Primitive arguments and return values are
+ * unboxed and boxed by the handle itself. Methods with up to four parameters are invoked with a fixed-arity call;
+ * methods with more parameters have their arguments spread from the array by the handle. There's no reflection
+ * involved in an invocation.
+ * </p>
+ * <p>
+ * Controllers can live in a module of their own, that opens its packages to Sprox. Sprox's module then doesn't read
+ * that module, which method handles require. The invoker therefore adds the read edge first, and looks up the method
+ * with a private lookup in the controller class. If no handle can be created, the invoker falls back to reflection.
+ * If the method is not accessible through reflection either, each invocation results in an
+ * {@link IllegalStateException}.
+ * </p>
+ */
+final class MethodInvoker implements ControllerMethodInvoker {
+    private final Method method;
+    private final MethodHandle handle;
+    private final MethodHandle spreader;
+
+    MethodInvoker(Method method) {
+        this.method = method;
+        final int parameterCount = method.getParameterCount();
+        final MethodHandle handle = adapt(method, lookup(method));
+        this.handle = handle != null ? handle.asType(MethodType.genericMethodType(parameterCount + 1)) : null;
+        this.spreader = handle != null ? this.handle.asSpreader(Object[].class, parameterCount) : null;
+    }
+
+    /**
+     * Lets a handle on a static method take the controller as well, and ignore it.
+     */
+    private static MethodHandle adapt(Method method, MethodHandle handle) {
+        if (handle != null && Modifier.isStatic(method.getModifiers())) {
+            return MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle;
+    }
+
+    /**
+     * @return A handle on the method, or {@code null} if it can't be created.
+     */
+    private static MethodHandle lookup(Method method) {
+        final Class<?> controllerClass = method.getDeclaringClass();
+        MethodInvoker.class.getModule().addReads(controllerClass.getModule());
+        try {
+            return MethodHandles.privateLookupIn(controllerClass, MethodHandles.lookup()).unreflect(method);
+        } catch (IllegalAccessException | SecurityException e) {
+            // The package isn't open to Sprox; try again as a public method
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Object invoke(Object controller, Object[] arguments) throws Throwable {
+        if (handle == null) {
+            return reflect(controller, arguments);
+        }
+        switch (arguments.length) {
+            case 0:
+                return (Object) handle.invokeExact(controller);
+            case 1:
+                return (Object) handle.invokeExact(controller, arguments[0]);
+            case 2:
+                return (Object) handle.invokeExact(controller, arguments[0], arguments[1]);
+            case 3:
+                return (Object) handle.invokeExact(controller, arguments[0], arguments[1], arguments[2]);
+            case 4:
+                return (Object) handle.invokeExact(controller, arguments[0], arguments[1], arguments[2],
+                        arguments[3]);
+            default:
+                return (Object) spreader.invokeExact(controller, arguments);
+        }
+    }
+
+    private Object reflect(Object controller, Object[] arguments) throws Throwable {
+        try {
+            return method.invoke(controller, arguments);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Access to controller method '" + method + "' was denied.", e);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
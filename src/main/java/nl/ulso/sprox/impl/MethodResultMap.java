@@ -1,6 +1,5 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
 import java.util.*;
 
 /**
@@ -8,63 +7,285 @@ import java.util.*;
  * <p/>
  * Method results are collected whenever they are produced and can be injected anywhere.
  * <p/>
- * For each result type this class keeps of list of objects of that type produced. With each object it also stores
- * for which node it was produced and at what depth in the XML this was. Later, when the method results are popped from
- * the map, only those method results found at a lower depth than the current depth and belonging to the correct source
- * node (if any) are collected.
+ * For each result type this class keeps the objects of that type produced, in segments: one for each depth in the XML
+ * they were produced at, and within that one for each node they were produced for. Later, when the method results
+ * are popped from the map, only those method results found at a lower depth than the current depth and belonging to
+ * the correct source node (if any) are collected. That means going through the segments below the current depth and
+ * taking the contents of the ones that match; the results that stay behind are never touched. Popping {@code k}
+ * results costs {@code O(k)}, however many other results there are.
+ * <p/>
+ * Results are always popped in the order in which they were produced. Each result gets a sequence number to make
+ * that possible when results from several segments are popped at once.
+ * <p/>
+ * Sources are symbols from the {@link SymbolTable} of the processor. A segment holds few sources - typically just one -
+ * so it keeps them in a small array that is scanned linearly.
  *
  * @see ExecutionContext
  */
 final class MethodResultMap {
+    /**
+     * Source to pop method results for if they may come from any node.
+     */
+    static final int ANY_SOURCE = SymbolTable.UNKNOWN;
+
     /*
      * Key: result type
-     * Value: list of method results of this type
+     * Value: the method results of this type, by depth and source
      */
-    private final Map<Class, List<MethodResult>> methodResults;
+    private final Map<Class, ResultStack> methodResults;
+    private long sequence;
 
     MethodResultMap() {
         methodResults = new HashMap<>();
+        sequence = 0;
+    }
+
+    void put(int depth, int owner, Class objectClass, Object value) {
+        methodResults.computeIfAbsent(objectClass, type -> new ResultStack()).put(depth, owner, sequence++, value);
+    }
+
+    /**
+     * Removes all method results, keeping the segments for reuse.
+     */
+    void reset() {
+        for (ResultStack results : methodResults.values()) {
+            results.clear();
+        }
+        sequence = 0;
+    }
+
+    /**
+     * Removes all method results, passing each to a consumer: per type in the order in which they were produced.
+     */
+    void drain(MethodResultConsumer consumer) {
+        for (Map.Entry<Class, ResultStack> entry : methodResults.entrySet()) {
+            if (entry.getValue().size > 0) {
+                entry.getValue().drain(entry.getKey(), consumer);
+            }
+        }
+        sequence = 0;
+    }
+
+    List<?> pop(int depth, int sourceName, Class objectClass) {
+        final ResultStack results = methodResults.get(objectClass);
+        if (results == null || results.size == 0) {
+            return null;
+        }
+        return results.pop(depth, sourceName);
     }
 
-    void put(int depth, QName owner, Class objectClass, Object value) {
-        if (!methodResults.containsKey(objectClass)) {
-            methodResults.put(objectClass, new ArrayList<>());
+    /**
+     * The method results of a single type, in segments by depth.
+     */
+    private static final class ResultStack {
+        private static final int INITIAL_DEPTH = 16;
+
+        private Segment[] segments;
+        private int maxDepth;
+        private int size;
+
+        private ResultStack() {
+            segments = new Segment[INITIAL_DEPTH];
+            maxDepth = 0;
+            size = 0;
+        }
+
+        private void put(int depth, int sourceName, long sequence, Object value) {
+            if (depth >= segments.length) {
+                segments = Arrays.copyOf(segments, Math.max(depth + 1, segments.length * 2));
+            }
+            Segment segment = segments[depth];
+            if (segment == null) {
+                segment = new Segment();
+                segments[depth] = segment;
+            }
+            segment.put(sourceName, sequence, value);
+            maxDepth = Math.max(maxDepth, depth);
+            size++;
+        }
+
+        private List<Object> pop(int depth, int sourceName) {
+            final List<ResultList> matches = new ArrayList<>();
+            for (int i = depth + 1; i <= maxDepth; i++) {
+                final Segment segment = segments[i];
+                if (segment != null && segment.size > 0) {
+                    segment.collect(sourceName, matches);
+                }
+            }
+            final List<Object> list = matches.size() == 1 ? matches.get(0).toList() : merge(matches);
+            for (ResultList match : matches) {
+                size -= match.size;
+                match.clear();
+            }
+            while (maxDepth > 0 && (segments[maxDepth] == null || segments[maxDepth].size == 0)) {
+                maxDepth--;
+            }
+            return list;
+        }
+
+        private void drain(Class objectClass, MethodResultConsumer consumer) {
+            final List<ResultList> resultLists = new ArrayList<>();
+            final List<int[]> locations = new ArrayList<>();
+            for (int i = 0; i <= maxDepth; i++) {
+                final Segment segment = segments[i];
+                if (segment != null && segment.size > 0) {
+                    for (int j = 0; j < segment.sourceCount; j++) {
+                        if (segment.resultLists[j].size > 0) {
+                            resultLists.add(segment.resultLists[j]);
+                            locations.add(new int[]{i, segment.sourceNames[j]});
+                        }
+                    }
+                }
+            }
+            final int[] positions = new int[resultLists.size()];
+            for (int n = 0; n < size; n++) {
+                final int next = nextInSequence(resultLists, positions);
+                final int[] location = locations.get(next);
+                consumer.accept(location[0], location[1], objectClass,
+                        resultLists.get(next).values[positions[next]++]);
+            }
+            clear();
+        }
+
+        private void clear() {
+            for (int i = 0; i <= maxDepth; i++) {
+                final Segment segment = segments[i];
+                if (segment != null) {
+                    for (int j = 0; j < segment.sourceCount; j++) {
+                        segment.resultLists[j].clear();
+                    }
+                }
+            }
+            maxDepth = 0;
+            size = 0;
+        }
+
+        /**
+         * Merges the contents of several result lists into one, in the order in which the results were produced.
+         */
+        private static List<Object> merge(List<ResultList> resultLists) {
+            int total = 0;
+            for (ResultList resultList : resultLists) {
+                total += resultList.size;
+            }
+            final List<Object> list = new ArrayList<>(total);
+            final int[] positions = new int[resultLists.size()];
+            for (int n = 0; n < total; n++) {
+                final int next = nextInSequence(resultLists, positions);
+                list.add(resultLists.get(next).values[positions[next]++]);
+            }
+            return list;
+        }
+
+        /**
+         * @return The index of the result list holding the result that was produced first, at the given positions.
+         */
+        private static int nextInSequence(List<ResultList> resultLists, int[] positions) {
+            int next = -1;
+            for (int i = 0; i < resultLists.size(); i++) {
+                final ResultList resultList = resultLists.get(i);
+                if (positions[i] < resultList.size && (next == -1 || resultList.sequences[positions[i]]
+                        < resultLists.get(next).sequences[positions[next]])) {
+                    next = i;
+                }
+            }
+            return next;
         }
-        methodResults.get(objectClass).add(new MethodResult(depth, owner, value));
     }
 
-    Optional<List<?>> pop(int depth, QName sourceName, Class objectClass) {
-        final List<MethodResult> results = methodResults.get(objectClass);
-        if (results == null) {
-            return Optional.empty();
+    /**
+     * The method results of a single type produced at a single depth, by source.
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 2;
+
+        private int[] sourceNames;
+        private ResultList[] resultLists;
+        private int sourceCount;
+        private int size;
+
+        private Segment() {
+            sourceNames = new int[INITIAL_CAPACITY];
+            resultLists = new ResultList[INITIAL_CAPACITY];
+            sourceCount = 0;
+            size = 0;
+        }
+
+        private void put(int sourceName, long sequence, Object value) {
+            resultList(sourceName).add(sequence, value);
         }
-        final List<Object> list = new ArrayList<>(results.size());
-        final Iterator<MethodResult> iterator = results.iterator();
-        while (iterator.hasNext()) {
-            final MethodResult methodResult = iterator.next();
-            if (methodResult.depth <= depth) {
-                continue;
+
+        private ResultList resultList(int sourceName) {
+            for (int i = 0; i < sourceCount; i++) {
+                if (sourceNames[i] == sourceName) {
+                    return resultLists[i];
+                }
             }
-            if (sourceName == null || sourceName.equals(methodResult.sourceName)) {
-                list.add(methodResult.value);
-                iterator.remove();
+            if (sourceCount == sourceNames.length) {
+                sourceNames = Arrays.copyOf(sourceNames, sourceCount * 2);
+                resultLists = Arrays.copyOf(resultLists, sourceCount * 2);
             }
+            final ResultList resultList = new ResultList(this);
+            sourceNames[sourceCount] = sourceName;
+            resultLists[sourceCount] = resultList;
+            sourceCount++;
+            return resultList;
         }
-        if (results.isEmpty()) {
-            methodResults.remove(objectClass);
+
+        private void collect(int sourceName, List<ResultList> matches) {
+            for (int i = 0; i < sourceCount; i++) {
+                if ((sourceName == ANY_SOURCE || sourceNames[i] == sourceName) && resultLists[i].size > 0) {
+                    matches.add(resultLists[i]);
+                }
+            }
         }
-        return Optional.of(list);
     }
 
-    private static final class MethodResult {
-        private final int depth;
-        private final QName sourceName;
-        private final Object value;
+    /**
+     * The method results of a single type produced for a single source at a single depth, in order.
+     */
+    private static final class ResultList {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final Segment segment;
+        private long[] sequences;
+        private Object[] values;
+        private int size;
+
+        private ResultList(Segment segment) {
+            this.segment = segment;
+            this.sequences = new long[INITIAL_CAPACITY];
+            this.values = new Object[INITIAL_CAPACITY];
+            this.size = 0;
+        }
+
+        private void add(long sequence, Object value) {
+            if (size == values.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            sequences[size] = sequence;
+            values[size] = value;
+            size++;
+            segment.size++;
+        }
+
+        private List<Object> toList() {
+            return new ArrayList<>(Arrays.asList(values).subList(0, size));
+        }
 
-        private MethodResult(int depth, QName sourceName, Object value) {
-            this.depth = depth;
-            this.sourceName = sourceName;
-            this.value = value;
+        private void clear() {
+            Arrays.fill(values, 0, size, null);
+            segment.size -= size;
+            size = 0;
         }
     }
+
+    /**
+     * Receives the method results drained from the map.
+     */
+    @FunctionalInterface
+    interface MethodResultConsumer {
+        void accept(int depth, int ownerName, Class objectClass, Object value);
+    }
 }
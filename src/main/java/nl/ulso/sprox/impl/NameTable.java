@@ -0,0 +1,152 @@
+package nl.ulso.sprox.impl;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Turns the UTF-8 encoded names of elements and attributes in a document into {@link Name}s, for the
+ * {@link TokenizerCursor}.
+ * <p>
+ * Each distinct name is decoded once. After that, finding the name for a sequence of bytes takes a hash lookup and a
+ * comparison of the bytes; no strings are created. The strings in a name are interned, so that they compare by
+ * reference with the names in the {@link SymbolTable}, and with each other.
+ * </p>
+ * <p>
+ * Names also cache the symbol they were last looked up for, together with the namespace URI of that lookup. Elements
+ * with the same name nearly always have the same namespace, so each distinct name is typically looked up in the
+ * symbol table once.
+ * </p>
+ */
+final class NameTable {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int UNRESOLVED = -2;
+
+    private Name[] names;
+    private int size;
+
+    NameTable() {
+        this.names = new Name[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * @param hash The hash of the bytes, computed with {@link #hash(int, byte)}, starting from 0.
+     */
+    Name lookup(ByteBuffer buffer, int start, int end, int hash) {
+        final int mask = names.length - 1;
+        int index = hash & mask;
+        Name name = names[index];
+        while (name != null) {
+            if (name.hash == hash && name.equals(buffer, start, end)) {
+                return name;
+            }
+            index = (index + 1) & mask;
+            name = names[index];
+        }
+        name = new Name(buffer, start, end, hash);
+        names[index] = name;
+        if (++size * 2 > names.length) {
+            rehash();
+        }
+        return name;
+    }
+
+    /**
+     * @return The number of distinct names in this table.
+     */
+    int size() {
+        return size;
+    }
+
+    static int hash(int hash, byte b) {
+        return 31 * hash + b;
+    }
+
+    private void rehash() {
+        final Name[] oldNames = names;
+        names = new Name[oldNames.length * 2];
+        final int mask = names.length - 1;
+        for (Name name : oldNames) {
+            if (name != null) {
+                int index = name.hash & mask;
+                while (names[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                names[index] = name;
+            }
+        }
+    }
+
+    /**
+     * A name as it appears in a document, with its prefix, if any, split off.
+     */
+    static final class Name {
+        private final byte[] bytes;
+        private final int hash;
+        private final String qualifiedName;
+        private final String prefix;
+        private final String localName;
+        private String symbolNamespaceURI;
+        private int symbol;
+
+        private Name(ByteBuffer buffer, int start, int end, int hash) {
+            this.bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            this.hash = hash;
+            this.qualifiedName = new String(bytes, UTF_8).intern();
+            final int colon = qualifiedName.indexOf(':');
+            this.prefix = colon != -1 ? qualifiedName.substring(0, colon).intern() : null;
+            this.localName = colon != -1 ? qualifiedName.substring(colon + 1).intern() : qualifiedName;
+            this.symbolNamespaceURI = null;
+            this.symbol = UNRESOLVED;
+        }
+
+        private boolean equals(ByteBuffer buffer, int start, int end) {
+            if (end - start != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (buffer.get(start + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The name as it appears in the document, including the prefix.
+         */
+        String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        /**
+         * @return The prefix of the name, or {@code null} if it has none.
+         */
+        String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return The name without the prefix.
+         */
+        String getLocalName() {
+            return localName;
+        }
+
+        /**
+         * @param namespaceURI The namespace URI of the element with this name.
+         * @param localName    The local name to look up: with or without the prefix.
+         */
+        int getSymbol(SymbolTable symbolTable, String namespaceURI, String localName) {
+            if (symbol == UNRESOLVED || symbolNamespaceURI != namespaceURI) {
+                symbol = symbolTable.lookup(namespaceURI, localName);
+                symbolNamespaceURI = namespaceURI;
+            }
+            return symbol;
+        }
+    }
+}
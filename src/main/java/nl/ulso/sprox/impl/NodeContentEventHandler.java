@@ -1,27 +1,24 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.events.XMLEvent;
-
 import static javax.xml.stream.XMLStreamConstants.*;
 
 /**
  * Event handler that collects all content in a node.
  */
 final class NodeContentEventHandler implements EventHandler {
-    private final QName ownerName;
-    private final QName nodeName;
+    private final int ownerSymbol;
+    private final int nodeSymbol;
     private final EventHandler parentEventHandler;
 
-    NodeContentEventHandler(EventHandler parentEventHandler, QName ownerName, QName nodeName) {
-        this.ownerName = ownerName;
-        this.nodeName = nodeName;
+    NodeContentEventHandler(EventHandler parentEventHandler, int ownerSymbol, int nodeSymbol) {
+        this.ownerSymbol = ownerSymbol;
+        this.nodeSymbol = nodeSymbol;
         this.parentEventHandler = parentEventHandler;
     }
 
     @Override
-    public boolean matches(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public boolean matches(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
                 return true;
             case CHARACTERS:
@@ -29,29 +26,29 @@ final class NodeContentEventHandler implements EventHandler {
             case END_ELEMENT:
                 return true;
             default:
-                throw new IllegalStateException("Illegal event for @Node injection: " + event.getLocation());
+                throw new IllegalStateException("Illegal event for @Node injection: " + cursor.getLocation());
         }
     }
 
     @Override
-    public EventHandler process(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public EventHandler process(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                if (parentEventHandler.matches(event, context)) {
-                    return parentEventHandler.process(event, context);
+                if (parentEventHandler.matches(cursor, context)) {
+                    return parentEventHandler.process(cursor, context);
                 }
                 return parentEventHandler;
             case CHARACTERS:
-                context.pushNodeContent(ownerName, nodeName, event.asCharacters().getData());
+                context.pushNodeContent(ownerSymbol, nodeSymbol, cursor.getText());
                 return this;
             case END_ELEMENT:
-                if (parentEventHandler.matches(event, context)) {
-                    return parentEventHandler.process(event, context);
+                if (parentEventHandler.matches(cursor, context)) {
+                    return parentEventHandler.process(cursor, context);
                 } else {
                     return parentEventHandler;
                 }
             default:
-                throw new IllegalStateException("Unsupported event type: " + event.getEventType());
+                throw new IllegalStateException("Unsupported event type: " + cursor.getEventType());
         }
     }
 }
@@ -1,112 +1,196 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Arrays;
 
 /**
  * Keeps track of nodes in the XML that need to be injected later, for the {@link ExecutionContext}.
  * <p/>
  * Of all the types collected - also see {@link AttributeMap} and {@link MethodResultMap} - this is the most complex.
  * Nodes may be collected at multiple levels and injected several levels up.
+ * <p/>
+ * Nodes are collected per owner: the node that triggered the collection. Owners are kept in a stack indexed by depth;
+ * there's at most one owner at each depth. Owners with the same name are linked, innermost first, so that the owner
+ * a node belongs to is found without walking up the stack. Next to that this class counts, for each node name, how
+ * many owners have it flagged. That makes checking whether a node is flagged a single lookup, however many owners
+ * are active. Owners and counters are reused, so that collecting nodes doesn't allocate any memory once the deepest
+ * level of a document has been reached.
+ * <p/>
+ * Node names are symbols from the {@link SymbolTable} of the processor. The innermost owners and the counters are
+ * therefore kept in arrays indexed by symbol.
  *
  * @see ExecutionContext
  */
 final class NodeContentMap {
+    private static final int INITIAL_DEPTH = 16;
+
+    /*
+     * Index: depth of the node that triggered the collection of specific node contents
+     * Value: the node contents collected for that node
+     */
+    private OwnerNode[] owners;
     /*
-     * Key: node that triggered the collection of specific node contents
-     * Value: pairs of node names and their content.
+     * Index: symbol of the owner node
+     * Value: the innermost active owner node with that name, or null if there is none
      */
-    private final Map<OwnerNode, Map<QName, NodeContent>> nodes;
+    private final OwnerNode[] innermostOwners;
+    /*
+     * Index: symbol of a node to collect the content of
+     * Value: number of active owner nodes that have the node flagged
+     */
+    private final int[] flagCounts;
 
-    NodeContentMap() {
-        nodes = new HashMap<>();
+    NodeContentMap(int symbolCount) {
+        owners = new OwnerNode[INITIAL_DEPTH];
+        innermostOwners = new OwnerNode[symbolCount];
+        flagCounts = new int[symbolCount];
     }
 
-    void flag(int depth, QName ownerName, QName nodeName) {
-        final OwnerNode ownerNode = new OwnerNode(depth, ownerName);
-        if (!nodes.containsKey(ownerNode)) {
-            nodes.put(ownerNode, new HashMap<>());
+    void flag(int depth, int ownerName, int nodeName) {
+        final OwnerNode ownerNode = activateOwnerNode(depth, ownerName);
+        if (ownerNode.indexOf(nodeName) == -1) {
+            addNode(ownerNode, nodeName);
         }
-        nodes.get(ownerNode).put(nodeName, null);
     }
 
-    boolean isFlagged(QName nodeName) {
-        for (Map<QName, NodeContent> nodeContentMap : nodes.values()) {
-            if (nodeContentMap.containsKey(nodeName)) {
-                return true;
-            }
+    private OwnerNode activateOwnerNode(int depth, int ownerName) {
+        if (depth >= owners.length) {
+            owners = Arrays.copyOf(owners, Math.max(depth + 1, owners.length * 2));
+        }
+        OwnerNode ownerNode = owners[depth];
+        if (ownerNode == null) {
+            ownerNode = new OwnerNode(depth);
+            owners[depth] = ownerNode;
+        }
+        if (!ownerNode.isActive()) {
+            ownerNode.activate(ownerName, innermostOwners[ownerName]);
+            innermostOwners[ownerName] = ownerNode;
         }
-        return false;
+        return ownerNode;
     }
 
-    void put(int depth, QName ownerName, QName nodeName, String nodeValue) {
-        final Map<QName, NodeContent> nodeContentMap = findNodeContentMap(depth, ownerName);
-        final NodeContent nodeContent = nodeContentMap.get(nodeName);
-        if (nodeContent == null || nodeContent.depth > depth) {
-            nodeContentMap.put(nodeName, new NodeContent(depth, nodeValue));
+    private void addNode(OwnerNode ownerNode, int nodeName) {
+        ownerNode.add(nodeName);
+        flagCounts[nodeName]++;
+    }
+
+    boolean isFlagged(int nodeName) {
+        return nodeName != SymbolTable.UNKNOWN && flagCounts[nodeName] > 0;
+    }
+
+    void put(int depth, int ownerName, int nodeName, String nodeValue) {
+        final OwnerNode ownerNode = findOwnerNode(depth, ownerName);
+        int index = ownerNode.indexOf(nodeName);
+        if (index == -1) {
+            addNode(ownerNode, nodeName);
+            index = ownerNode.size - 1;
+        }
+        if (ownerNode.contents[index] == null || ownerNode.contentDepths[index] > depth) {
+            ownerNode.contents[index] = nodeValue;
+            ownerNode.contentDepths[index] = depth;
         }
     }
 
-    private Map<QName, NodeContent> findNodeContentMap(int depth, QName ownerName) {
-        for (int i = depth; i > 0; i--) {
-            final OwnerNode ownerNode = new OwnerNode(i, ownerName);
-            if (nodes.containsKey(ownerNode)) {
-                return nodes.get(ownerNode);
-            }
+    private OwnerNode findOwnerNode(int depth, int ownerName) {
+        OwnerNode ownerNode = innermostOwners[ownerName];
+        while (ownerNode != null && ownerNode.depth > depth) {
+            ownerNode = ownerNode.previous;
+        }
+        if (ownerNode == null) {
+            throw new IllegalStateException("Could not find a map of nodes collected for the node with symbol "
+                    + ownerName + ". That's a bug!. The owner node should have been flagged earlier.");
         }
-        throw new IllegalStateException("Could not find a map of nodes collected for " + ownerName
-                + ". That's a bug!. The owner node should have been flagged earlier.");
+        return ownerNode;
     }
 
-    Optional<String> get(int depth, QName ownerName, QName nodeName) {
-        final OwnerNode ownerNode = new OwnerNode(depth, ownerName);
-        final NodeContent nodeContent = nodes.get(ownerNode).get(nodeName);
-        return nodeContent != null ? Optional.of(nodeContent.content) : Optional.empty();
+    String get(int depth, int ownerName, int nodeName) {
+        final OwnerNode ownerNode = depth < owners.length ? owners[depth] : null;
+        if (ownerNode == null || ownerNode.name != ownerName) {
+            return null;
+        }
+        final int index = ownerNode.indexOf(nodeName);
+        return index != -1 ? ownerNode.contents[index] : null;
     }
 
-    void clear(int depth, QName ownerName) {
-        final OwnerNode ownerNode = new OwnerNode(depth, ownerName);
-        nodes.remove(ownerNode);
+    void clear(int depth, int ownerName) {
+        final OwnerNode ownerNode = depth < owners.length ? owners[depth] : null;
+        if (ownerNode == null || ownerNode.name != ownerName) {
+            return;
+        }
+        for (int i = 0; i < ownerNode.size; i++) {
+            flagCounts[ownerNode.nodeNames[i]]--;
+        }
+        innermostOwners[ownerName] = ownerNode.previous;
+        ownerNode.deactivate();
     }
 
+    /**
+     * Deactivates all owners and resets all counters, keeping the owners for reuse.
+     */
+    void reset() {
+        for (OwnerNode ownerNode : owners) {
+            if (ownerNode != null && ownerNode.isActive()) {
+                ownerNode.deactivate();
+            }
+        }
+        Arrays.fill(innermostOwners, null);
+        Arrays.fill(flagCounts, 0);
+    }
+
+    /**
+     * The node contents collected for a single owner node. Node names and their content are kept in parallel arrays;
+     * an owner node typically collects only a few nodes.
+     */
     private static final class OwnerNode {
+        private static final int INITIAL_CAPACITY = 4;
+
         private final int depth;
-        private final QName name;
+        private int name;
+        private OwnerNode previous;
+        private int[] nodeNames;
+        private String[] contents;
+        private int[] contentDepths;
+        private int size;
 
-        private OwnerNode(int depth, QName name) {
+        private OwnerNode(int depth) {
             this.depth = depth;
-            this.name = name;
+            this.name = SymbolTable.UNKNOWN;
+            this.nodeNames = new int[INITIAL_CAPACITY];
+            this.contents = new String[INITIAL_CAPACITY];
+            this.contentDepths = new int[INITIAL_CAPACITY];
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-            OwnerNode ownerNode = (OwnerNode) o;
-            return depth == ownerNode.depth && name.equals(ownerNode.name);
+        private boolean isActive() {
+            return name != SymbolTable.UNKNOWN;
         }
 
-        @Override
-        public int hashCode() {
-            int result = depth;
-            result = 31 * result + name.hashCode();
-            return result;
+        private void activate(int name, OwnerNode previous) {
+            this.name = name;
+            this.previous = previous;
         }
-    }
 
-    private static final class NodeContent {
-        private final int depth;
-        private final String content;
+        private void deactivate() {
+            Arrays.fill(contents, 0, size, null);
+            name = SymbolTable.UNKNOWN;
+            previous = null;
+            size = 0;
+        }
 
-        private NodeContent(int depth, String content) {
-            this.depth = depth;
-            this.content = content;
+        private int indexOf(int nodeName) {
+            for (int i = 0; i < size; i++) {
+                if (nodeNames[i] == nodeName) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void add(int nodeName) {
+            if (size == nodeNames.length) {
+                nodeNames = Arrays.copyOf(nodeNames, size * 2);
+                contents = Arrays.copyOf(contents, size * 2);
+                contentDepths = Arrays.copyOf(contentDepths, size * 2);
+            }
+            nodeNames[size++] = nodeName;
         }
     }
 }
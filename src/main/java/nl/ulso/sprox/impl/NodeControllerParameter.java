@@ -1,40 +1,36 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.events.StartElement;
-import java.util.Optional;
-
 /**
  * Represents a parameter whose value corresponds with the contents of a node.
  */
 final class NodeControllerParameter implements ControllerParameter {
-    private final QName ownerName;
-    private final QName nodeName;
+    private final int ownerSymbol;
+    private final int nodeSymbol;
     private final Class type;
     private final boolean optional;
 
-    NodeControllerParameter(QName ownerName, QName nodeName, Class type, boolean optional) {
-        this.ownerName = ownerName;
-        this.nodeName = nodeName;
+    NodeControllerParameter(int ownerSymbol, int nodeSymbol, Class type, boolean optional) {
+        this.ownerSymbol = ownerSymbol;
+        this.nodeSymbol = nodeSymbol;
         this.type = type;
         this.optional = optional;
     }
 
     @Override
-    public boolean isValidStartElement(StartElement node) {
+    public boolean isValidStartElement(XmlCursor cursor) {
         return true;
     }
 
     @Override
-    public void pushToExecutionContext(StartElement node, ExecutionContext context) {
-        context.flagNode(ownerName, nodeName);
+    public void pushToExecutionContext(XmlCursor cursor, ExecutionContext context) {
+        context.flagNode(ownerSymbol, nodeSymbol);
     }
 
     @Override
     @SuppressWarnings("unchecked")
-    public Optional<Object> resolveMethodParameter(ExecutionContext context) {
-        return context.getNodeContent(ownerName, nodeName)
-                .flatMap(value -> Optional.ofNullable(context.parseString((String) value, type)));
+    public Object resolveMethodParameter(ExecutionContext context) {
+        final String value = context.getNodeContent(ownerSymbol, nodeSymbol);
+        return value != null ? context.parseString(value, type) : null;
     }
 
     @Override
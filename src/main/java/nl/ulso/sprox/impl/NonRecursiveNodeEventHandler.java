@@ -1,7 +1,5 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.stream.events.XMLEvent;
-
 import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
@@ -18,28 +16,27 @@ final class NonRecursiveNodeEventHandler implements EventHandler {
     }
 
     @Override
-    public boolean matches(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public boolean matches(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                return context.isNodeFlagged(event.asStartElement().getName());
+                return context.isNodeFlagged(cursor.getSymbol());
             case END_ELEMENT:
-                return controllerMethod.isMatchingEndElement(event.asEndElement());
+                return controllerMethod.isMatchingEndElement(cursor);
             default:
                 return false;
         }
     }
 
     @Override
-    public EventHandler process(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public EventHandler process(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                return new NodeContentEventHandler(
-                        this, controllerMethod.getOwnerName(), event.asStartElement().getName());
+                return new NodeContentEventHandler(this, controllerMethod.getOwnerSymbol(), cursor.getSymbol());
             case END_ELEMENT:
                 controllerMethod.processEndElement(context);
                 return parentEventHandler;
             default:
-                throw new IllegalStateException("Unsupported event type: " + event.getEventType());
+                throw new IllegalStateException("Unsupported event type: " + cursor.getEventType());
         }
     }
 }
@@ -1,44 +1,45 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.events.StartElement;
 import java.util.List;
-import java.util.Optional;
 
 /**
- * Represents a parameter whose value is a collected method result.
+ * Represents a parameter whose value is a collected method result. The result is collected from the source with the
+ * symbol given, or from any source if it is {@link MethodResultMap#ANY_SOURCE}.
  */
 class ObjectControllerParameter implements ControllerParameter {
     private final Class objectClass;
-    private final QName sourceName;
+    private final int sourceSymbol;
     private final boolean optional;
 
-    ObjectControllerParameter(Class objectClass, QName sourceName, boolean optional) {
+    ObjectControllerParameter(Class objectClass, int sourceSymbol, boolean optional) {
         this.objectClass = objectClass;
-        this.sourceName = sourceName;
+        this.sourceSymbol = sourceSymbol;
         this.optional = optional;
     }
 
     @Override
-    public boolean isValidStartElement(StartElement node) {
+    public boolean isValidStartElement(XmlCursor cursor) {
         return true;
     }
 
     @Override
-    public void pushToExecutionContext(StartElement node, ExecutionContext context) {
+    public void pushToExecutionContext(XmlCursor cursor, ExecutionContext context) {
         // Nothing to do here.
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public Optional<Object> resolveMethodParameter(ExecutionContext context) {
-        return context.popMethodResults(sourceName, objectClass)
-                .filter(list -> !((List<?>) list).isEmpty())
-                .map(list -> ((List<?>) list).get(0));
+    public Object resolveMethodParameter(ExecutionContext context) {
+        final List<?> results = context.popMethodResults(sourceSymbol, objectClass);
+        return results != null && !results.isEmpty() ? results.get(0) : null;
     }
 
     @Override
     public boolean isOptional() {
         return optional;
     }
+
+    @Override
+    public boolean isInjecting(Class<?> objectClass) {
+        return this.objectClass.equals(objectClass);
+    }
 }
@@ -0,0 +1,148 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessorException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
+
+/**
+ * Processes a single mapped file in parallel, by splitting it into chunks of records with a {@link RecordScanner}.
+ * <p>
+ * Each chunk is processed on the executor, in an execution of its own, with the start tags of the ancestors of the
+ * records in front. That execution is never completed: when it runs out of input after the last record, it holds the
+ * method results of the records, and the methods of the ancestors are never invoked.
+ * </p>
+ * <p>
+ * Meanwhile, the main execution is fed everything in between the chunks, in document order, on the calling thread.
+ * Whenever it gets to the place of a chunk, it waits for the chunk to be processed and takes over its method results,
+ * as if it had produced them itself. The methods of the ancestors are therefore invoked only once, with the results
+ * of all records, in document order.
+ * </p>
+ * <p>
+ * The number of chunks in progress is limited to twice the number of threads of the executor, or of processors if it
+ * can't tell, so that the scanner doesn't run too far ahead of the main execution.
+ * </p>
+ * <p>
+ * The file must be encoded in UTF-8. A byte order mark is skipped: it's not passed to the main execution.
+ * </p>
+ */
+final class ParallelExecution<T> {
+    private static final long MIN_CHUNK_SIZE = 1 << 16;
+    private static final long MAX_CHUNK_SIZE = 1 << 24;
+    private static final int MAX_PART_SIZE = 1 << 30;
+
+    private final StaxBasedXmlProcessor<T> processor;
+    private final FileMapping mapping;
+    private final Executor executor;
+    private final RecordScanner scanner;
+    private final int window;
+
+    /**
+     * @param start Offset of the first byte after the byte order mark, if any.
+     */
+    ParallelExecution(StaxBasedXmlProcessor<T> processor, FileMapping mapping, String[] steps, long start,
+                      Executor executor) {
+        this.processor = processor;
+        this.mapping = mapping;
+        this.executor = executor;
+        final int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.window = 2 * parallelism;
+        this.scanner = new RecordScanner(mapping, steps, start,
+                Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, mapping.size() / (4L * parallelism))));
+    }
+
+    T execute() throws IOException, XmlProcessorException {
+        final TokenizerInput.FeedInput input = new TokenizerInput.FeedInput();
+        final Execution<T> execution = processor.newExecution(input, null);
+        final Queue<RecordScanner.Segment> segments = new ArrayDeque<>();
+        final Queue<CompletableFuture<Execution<T>>> chunks = new ArrayDeque<>();
+        boolean done = false;
+        try {
+            RecordScanner.Segment next = scanner.next();
+            while ((next != null || !segments.isEmpty()) && !done) {
+                while (next != null && chunks.size() < window) {
+                    if (next.isChunk()) {
+                        final RecordScanner.Segment chunk = next;
+                        chunks.add(CompletableFuture.supplyAsync(() -> processChunk(chunk), executor));
+                    }
+                    segments.add(next);
+                    next = scanner.next();
+                }
+                final RecordScanner.Segment segment = segments.poll();
+                if (segment.isChunk()) {
+                    join(chunks.poll()).moveMethodResultsTo(execution);
+                } else {
+                    for (long offset = segment.getStart(); offset < segment.getEnd() && !done; offset += MAX_PART_SIZE) {
+                        input.feed(mapping.map(offset, (int) Math.min(MAX_PART_SIZE, segment.getEnd() - offset)));
+                        done = execution.run();
+                    }
+                }
+            }
+            input.complete();
+            if (!done) {
+                execution.run();
+            }
+            return execution.getResult();
+        } catch (XMLStreamException e) {
+            execution.abandon();
+            throw new XmlProcessorException(e);
+        } catch (IOException | XmlProcessorException | RuntimeException e) {
+            execution.abandon();
+            throw e;
+        }
+    }
+
+    private Execution<T> processChunk(RecordScanner.Segment chunk) {
+        final TokenizerInput.FeedInput input = new TokenizerInput.FeedInput();
+        final Execution<T> execution = processor.newChunkExecution(input);
+        try {
+            input.feed(ByteBuffer.wrap(chunk.getPrefix()));
+            execution.run();
+            final long length = chunk.getEnd() - chunk.getStart();
+            if (length > Integer.MAX_VALUE) {
+                throw unchecked(new XmlProcessorException("Record too large to process in parallel, at offset "
+                        + chunk.getStart()));
+            }
+            input.feed(mapping.map(chunk.getStart(), (int) length));
+            execution.run();
+            execution.close();
+            return execution;
+        } catch (XMLStreamException e) {
+            execution.abandon();
+            throw unchecked(new XmlProcessorException(e));
+        } catch (IOException e) {
+            execution.abandon();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            execution.abandon();
+            throw e;
+        }
+    }
+
+    private Execution<T> join(CompletableFuture<Execution<T>> chunk) throws IOException, XmlProcessorException {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedXmlProcessorException) {
+                throw ((UncheckedXmlProcessorException) cause).checked();
+            } else if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.namespace.QName;
+import java.util.*;
+
+/**
+ * Deterministic finite automaton that matches the {@link ElementPath}s of all start node event handlers of a
+ * processor at once.
+ * <p>
+ * The automaton advances one state for every start element in a document, on the name of the element. Each state
+ * knows which event handlers have a path that matches the element that led to it. Finding the event handlers for a
+ * start element therefore takes a single lookup on its name, whatever the number of handlers or the length of their
+ * paths. Keeping track of the state at each depth is up to the caller; see {@link EventDispatcher}.
+ * </p>
+ * <p>
+ * The automaton is built once per processor, from a non-deterministic one, through the subset construction. A state
+ * of the non-deterministic automaton is a position in a path: the step of that path the next element has to match.
+ * A state of the deterministic automaton is a set of such positions, together with the set of paths that matched.
+ * The alphabet is the set of symbols used in the paths; all other symbols, including {@link SymbolTable#UNKNOWN}, lead
+ * to the same state.
+ * </p>
+ * <p>
+ * From a state, only the names in the steps at its positions lead anywhere else than that "other" state. The
+ * construction therefore computes the transitions of a state in a single pass over its positions, for those names
+ * only. With {@code n} distinct names, that keeps building the automaton close to {@code O(n^2)}, in the size of the
+ * transition table, instead of trying every name of the alphabet in every state.
+ * </p>
+ * <p>
+ * With plain element names only, as is typical, the automaton has one state for each element name, plus the initial
+ * state. Descendant steps in the middle of paths may increase the number of states. In practice, with a few of them,
+ * the automaton stays small.
+ * </p>
+ * <p>
+ * Transitions are kept in a table indexed by symbol, so that advancing the automaton takes two array lookups.
+ * </p>
+ */
+final class PathAutomaton {
+    static final int INITIAL_STATE = 0;
+
+    /*
+     * Index: symbol
+     * Value: next state, indexed by the current state; shared by all symbols not used in any path
+     */
+    private final int[][] transitions;
+    /*
+     * Index: current state
+     * Value: next state for all symbols not used in any path, including unknown ones
+     */
+    private final int[] otherTransitions;
+    /*
+     * Index: state
+     * Value: the event handlers whose path matches the element that led to the state, in registration order
+     */
+    private final StartNodeEventHandler[][] acceptedHandlers;
+
+    PathAutomaton(List<StartNodeEventHandler> eventHandlers, SymbolTable symbolTable) {
+        final Builder builder = new Builder(eventHandlers);
+        builder.build();
+        this.otherTransitions = builder.createOtherTransitions();
+        this.transitions = builder.createTransitions(symbolTable, otherTransitions);
+        this.acceptedHandlers = builder.createAcceptedHandlers();
+    }
+
+    /**
+     * @param state Current state.
+     * @param symbol Symbol of the start element to advance on.
+     * @return The next state.
+     */
+    int nextState(int state, int symbol) {
+        return symbol != SymbolTable.UNKNOWN ? transitions[symbol][state] : otherTransitions[state];
+    }
+
+    /**
+     * @param state A state of this automaton.
+     * @return The event handlers whose path matches the element that led to the state, in registration order.
+     */
+    StartNodeEventHandler[] getAcceptedHandlers(int state) {
+        return acceptedHandlers[state];
+    }
+
+    /**
+     * Performs the subset construction. Positions in the paths are numbered globally: position {@code offsets[h] + s}
+     * is step {@code s} in the path of handler {@code h}.
+     */
+    private static final class Builder {
+        private final List<StartNodeEventHandler> eventHandlers;
+        private final ElementPath[] paths;
+        private final int[] offsets;
+        private final int[] positionHandlers;
+        private final int[] positionSteps;
+        private final int[] positionSymbols;
+        private final List<QName> alphabet;
+        private final Map<State, Integer> stateIds;
+        private final List<State> states;
+        // Index: state; value: the symbols that lead to a state other than the "other" state, and those states
+        private final List<Row> rows;
+
+        private Builder(List<StartNodeEventHandler> eventHandlers) {
+            this.eventHandlers = eventHandlers;
+            this.paths = new ElementPath[eventHandlers.size()];
+            this.offsets = new int[eventHandlers.size()];
+            final Set<QName> names = new LinkedHashSet<>();
+            int positionCount = 0;
+            for (int h = 0; h < paths.length; h++) {
+                paths[h] = eventHandlers.get(h).getPath();
+                offsets[h] = positionCount;
+                positionCount += paths[h].getLength();
+                for (int s = 0; s < paths[h].getLength(); s++) {
+                    names.add(paths[h].getName(s));
+                }
+            }
+            this.alphabet = new ArrayList<>(names);
+            final Map<QName, Integer> symbols = new HashMap<>();
+            for (int symbol = 0; symbol < alphabet.size(); symbol++) {
+                symbols.put(alphabet.get(symbol), symbol);
+            }
+            this.positionHandlers = new int[positionCount];
+            this.positionSteps = new int[positionCount];
+            this.positionSymbols = new int[positionCount];
+            for (int h = 0; h < paths.length; h++) {
+                for (int s = 0; s < paths[h].getLength(); s++) {
+                    positionHandlers[offsets[h] + s] = h;
+                    positionSteps[offsets[h] + s] = s;
+                    positionSymbols[offsets[h] + s] = symbols.get(paths[h].getName(s));
+                }
+            }
+            this.stateIds = new HashMap<>();
+            this.states = new ArrayList<>();
+            this.rows = new ArrayList<>();
+        }
+
+        private void build() {
+            final BitSet initialPositions = new BitSet();
+            for (int offset : offsets) {
+                initialPositions.set(offset);
+            }
+            stateId(new State(initialPositions, new BitSet()));
+            for (int i = 0; i < states.size(); i++) {
+                rows.add(advance(states.get(i)));
+            }
+        }
+
+        private int stateId(State state) {
+            Integer id = stateIds.get(state);
+            if (id == null) {
+                id = states.size();
+                stateIds.put(state, id);
+                states.add(state);
+            }
+            return id;
+        }
+
+        /**
+         * Computes all transitions from a state. Descendant steps keep their position on any element. A step that
+         * matches the name of an element moves its position to the next step, or accepts its handler if it's the last.
+         */
+        private Row advance(State state) {
+            final BitSet kept = new BitSet();
+            for (int p = state.positions.nextSetBit(0); p >= 0; p = state.positions.nextSetBit(p + 1)) {
+                if (paths[positionHandlers[p]].isDescendant(positionSteps[p])) {
+                    kept.set(p);
+                }
+            }
+            final Map<Integer, State> targets = new LinkedHashMap<>();
+            for (int p = state.positions.nextSetBit(0); p >= 0; p = state.positions.nextSetBit(p + 1)) {
+                final State target = targets.computeIfAbsent(positionSymbols[p],
+                        symbol -> new State((BitSet) kept.clone(), new BitSet()));
+                final int handler = positionHandlers[p];
+                if (positionSteps[p] == paths[handler].getLength() - 1) {
+                    target.accepted.set(handler);
+                } else {
+                    target.positions.set(p + 1);
+                }
+            }
+            final int other = stateId(new State(kept, new BitSet()));
+            final int[] symbols = new int[targets.size()];
+            final int[] nextStates = new int[targets.size()];
+            int i = 0;
+            for (Map.Entry<Integer, State> entry : targets.entrySet()) {
+                symbols[i] = entry.getKey();
+                nextStates[i] = stateId(entry.getValue());
+                i++;
+            }
+            return new Row(other, symbols, nextStates);
+        }
+
+        /**
+         * Creates the transition table from the rows of all states. A symbol starts out with the "other" transitions,
+         * and is then filled in only where it leads elsewhere.
+         */
+        private int[][] createTransitions(SymbolTable symbolTable, int[] otherTransitions) {
+            final int[][] columns = new int[alphabet.size()][];
+            for (int state = 0; state < rows.size(); state++) {
+                final Row row = rows.get(state);
+                for (int i = 0; i < row.symbols.length; i++) {
+                    final int symbol = row.symbols[i];
+                    if (columns[symbol] == null) {
+                        columns[symbol] = otherTransitions.clone();
+                    }
+                    columns[symbol][state] = row.nextStates[i];
+                }
+            }
+            final int[][] transitions = new int[symbolTable.size()][];
+            Arrays.fill(transitions, otherTransitions);
+            for (int symbol = 0; symbol < alphabet.size(); symbol++) {
+                if (columns[symbol] != null) {
+                    transitions[symbolTable.lookup(alphabet.get(symbol))] = columns[symbol];
+                }
+            }
+            return transitions;
+        }
+
+        private int[] createOtherTransitions() {
+            final int[] column = new int[rows.size()];
+            for (int state = 0; state < column.length; state++) {
+                column[state] = rows.get(state).other;
+            }
+            return column;
+        }
+
+        private StartNodeEventHandler[][] createAcceptedHandlers() {
+            final StartNodeEventHandler[][] acceptedHandlers = new StartNodeEventHandler[states.size()][];
+            for (int i = 0; i < acceptedHandlers.length; i++) {
+                final BitSet accepted = states.get(i).accepted;
+                acceptedHandlers[i] = accepted.stream()
+                        .mapToObj(eventHandlers::get)
+                        .toArray(StartNodeEventHandler[]::new);
+            }
+            return acceptedHandlers;
+        }
+    }
+
+    /**
+     * The transitions from a single state: to the "other" state, and for some symbols to other states.
+     */
+    private static final class Row {
+        private final int other;
+        private final int[] symbols;
+        private final int[] nextStates;
+
+        private Row(int other, int[] symbols, int[] nextStates) {
+            this.other = other;
+            this.symbols = symbols;
+            this.nextStates = nextStates;
+        }
+    }
+
+    private static final class State {
+        private final BitSet positions;
+        private final BitSet accepted;
+
+        private State(BitSet positions, BitSet accepted) {
+            this.positions = positions;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof State)) {
+                return false;
+            }
+            final State other = (State) o;
+            return positions.equals(other.positions) && accepted.equals(other.accepted);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * positions.hashCode() + accepted.hashCode();
+        }
+    }
+}
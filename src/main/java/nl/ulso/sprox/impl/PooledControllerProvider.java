@@ -0,0 +1,37 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Resettable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Provides controllers from a pool, creating new ones with another provider only if the pool is empty. Controllers
+ * are reset when they are released, if they implement {@link Resettable}, and then put back into the pool.
+ * <p>
+ * The pool grows to the largest number of executions that ever ran at the same time, and doesn't shrink.
+ * </p>
+ */
+final class PooledControllerProvider implements ControllerProvider {
+    private final ControllerProvider provider;
+    private final Queue<Object> pool;
+
+    PooledControllerProvider(ControllerProvider provider) {
+        this.provider = provider;
+        this.pool = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public Object getController() {
+        final Object controller = pool.poll();
+        return controller != null ? controller : provider.getController();
+    }
+
+    @Override
+    public void releaseController(Object controller) {
+        if (controller instanceof Resettable) {
+            ((Resettable) controller).reset();
+        }
+        pool.offer(controller);
+    }
+}
@@ -5,12 +5,16 @@ import nl.ulso.sprox.ElementNameResolver;
 import javax.xml.namespace.QName;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
 /**
  * Creates QNames for XML elements from controller class, method and parameter names.
  */
 class QNameResolver {
+    private static final String PATH_SEPARATOR = "/";
+    private static final String PATH_DESCENDANT = "//";
 
     private final Class<?> controllerClass;
     private final Method method;
@@ -33,6 +37,48 @@ class QNameResolver {
         return new QName(namespace, localPart);
     }
 
+    /**
+     * Creates the path to the element a controller method is triggered on. A path is written as (EBNF):
+     * {@code ["/" | "//"] reference {("/" | "//") reference}}. Each reference is resolved like a single element
+     * reference, except that only the last one may leave out the name of the element. A path that starts with a
+     * single {@code "/"} is anchored at the root element; a path that starts without one matches anywhere in the
+     * document, like a path that starts with {@code "//"}.
+     *
+     * @param annotation Value of the annotation on the method.
+     * @return The path to the element.
+     * @see ElementPath
+     */
+    ElementPath createElementPath(String annotation) {
+        String path = annotation;
+        boolean descendant = true;
+        if (path.startsWith(PATH_DESCENDANT)) {
+            path = path.substring(PATH_DESCENDANT.length());
+        } else if (path.startsWith(PATH_SEPARATOR)) {
+            path = path.substring(PATH_SEPARATOR.length());
+            descendant = false;
+        }
+        final String[] steps = path.split(PATH_SEPARATOR, -1);
+        final List<QName> names = new ArrayList<>(steps.length);
+        final List<Boolean> descendants = new ArrayList<>(steps.length);
+        for (int i = 0; i < steps.length - 1; i++) {
+            if (steps[i].isEmpty()) {
+                descendant = true;
+                continue;
+            }
+            final ElementReference reference = new ElementReference(steps[i]);
+            if (reference.element == null) {
+                throw new IllegalStateException("Invalid path '" + annotation + "' on controller method '" + method
+                        + "'. Only the last step in a path may leave out the name of the element.");
+            }
+            names.add(new QName(reference.resolveNamespace(namespaceMap.getDefaultNamespace()), reference.element));
+            descendants.add(descendant);
+            descendant = false;
+        }
+        names.add(createQName(steps[steps.length - 1]));
+        descendants.add(descendant);
+        return new ElementPath(names, descendants);
+    }
+
     QName createQName(String annotation, Parameter parameter, QName ownerName) {
         final ElementReference reference = new ElementReference(annotation);
         final String namespace = reference.resolveNamespace(ownerName.getNamespaceURI());
@@ -0,0 +1,447 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessorException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Splits a mapped file into segments at the boundaries of records: elements on a specific path from the root element,
+ * like {@code feed/entry}. The segments come in document order, and together they cover the whole file, except for a
+ * byte order mark. Each segment
+ * is either a chunk of consecutive records, of about a given size, or the bytes in between.
+ * <p>
+ * The scanner doesn't parse the file. It goes through the bytes of the file looking at the markup only, just enough to
+ * tell start tags, end tags, comments, CDATA sections, processing instructions and document type declarations apart,
+ * and to keep track of the depth. Names are compared only for the elements on the path to the records, on their local
+ * names; namespace prefixes are ignored. Whatever else the scanner doesn't understand is left for the tokenizer to report.
+ * </p>
+ * <p>
+ * Every chunk comes with the start tags of the ancestors of its records, copied from the file as they are. Put in
+ * front of the chunk, they make it a document of its own, with all namespace declarations in scope.
+ * </p>
+ */
+final class RecordScanner {
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private final FileMapping mapping;
+    private final long size;
+    private final byte[][] steps;
+    private final long chunkSize;
+    private final byte[][] ancestors;
+    private final Queue<Segment> segments;
+    private ByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+    private long position;
+    private int depth;
+    private int matched;
+    private boolean inChunk;
+    private long start;
+    private long chunkEnd;
+    private byte[] prefix;
+    private boolean finished;
+
+    /**
+     * @param steps     Local names of the elements on the path from the root element to the records.
+     * @param start     Offset of the first byte to scan, just after the byte order mark, if any.
+     * @param chunkSize Size in bytes from which a chunk is complete.
+     */
+    RecordScanner(FileMapping mapping, String[] steps, long start, long chunkSize) {
+        this.mapping = mapping;
+        this.size = mapping.size();
+        this.steps = Arrays.stream(steps).map(step -> step.getBytes(UTF_8)).toArray(byte[][]::new);
+        this.chunkSize = chunkSize;
+        this.ancestors = new byte[steps.length - 1][];
+        this.segments = new ArrayDeque<>();
+        this.windowStart = 0;
+        this.windowEnd = 0;
+        this.position = start;
+        this.depth = 0;
+        this.matched = 0;
+        this.inChunk = false;
+        this.start = start;
+        this.chunkEnd = start;
+        this.prefix = null;
+        this.finished = false;
+    }
+
+    /**
+     * Parses the path to the records: the names of the elements from the root element down, separated by slashes,
+     * like {@code feed/entry} or {@code /feed/entry}. Namespace shorthands are dropped.
+     *
+     * @throws IllegalArgumentException If the path is not a path from the root element down to its children at least.
+     */
+    static String[] parsePath(String path) {
+        final String[] steps = (path.startsWith("/") ? path.substring(1) : path).split("/", -1);
+        if (steps.length < 2) {
+            throw new IllegalArgumentException("Records must be below the root element: " + path);
+        }
+        for (int i = 0; i < steps.length; i++) {
+            final String step = steps[i].substring(steps[i].indexOf(':') + 1);
+            if (step.isEmpty()) {
+                throw new IllegalArgumentException("Invalid path to records: " + path);
+            }
+            steps[i] = step;
+        }
+        return steps;
+    }
+
+    /**
+     * @return The next segment of the file, or {@code null} if there are no more.
+     * @throws IOException           If the file could not be read.
+     * @throws XmlProcessorException If the file ends in the middle of markup.
+     */
+    Segment next() throws IOException, XmlProcessorException {
+        while (segments.isEmpty() && position < size) {
+            scanMarkup();
+        }
+        if (segments.isEmpty() && !finished) {
+            finished = true;
+            if (inChunk) {
+                endChunk();
+            }
+            if (start < size) {
+                segments.add(new Segment(start, size, null));
+            }
+        }
+        return segments.poll();
+    }
+
+    private void scanMarkup() throws IOException, XmlProcessorException {
+        final long lessThan = find((byte) '<', position);
+        if (lessThan < 0) {
+            position = size;
+            return;
+        }
+        final int next = byteAt(lessThan + 1);
+        if (next == '/') {
+            if (inChunk) {
+                endChunk();
+            }
+            position = skipTag(lessThan + 2);
+            depth--;
+            matched = Math.min(matched, depth);
+        } else if (next == '!' || next == '?') {
+            position = skipSpecial(lessThan);
+        } else {
+            startTag(lessThan);
+        }
+    }
+
+    private void startTag(long lessThan) throws IOException, XmlProcessorException {
+        final long nameEnd = scanName(lessThan + 1);
+        final long end = skipTag(nameEnd);
+        final boolean empty = byteAt(end - 2) == '/';
+        final boolean onPath = depth == matched && depth < steps.length
+                && localNameEquals(lessThan + 1, nameEnd, steps[depth]);
+        if (onPath && depth == steps.length - 1) {
+            record(lessThan, empty ? end : skipElement(end));
+            return;
+        }
+        if (inChunk) {
+            endChunk();
+        }
+        if (onPath) {
+            ancestors[depth] = copy(lessThan, end);
+            prefix = null;
+            if (!empty) {
+                matched++;
+            }
+        }
+        if (!empty) {
+            depth++;
+        }
+        position = end;
+    }
+
+    private void record(long recordStart, long recordEnd) {
+        if (!inChunk) {
+            if (recordStart > start) {
+                segments.add(new Segment(start, recordStart, null));
+            }
+            inChunk = true;
+            start = recordStart;
+        }
+        chunkEnd = recordEnd;
+        position = recordEnd;
+        if (chunkEnd - start >= chunkSize) {
+            segments.add(new Segment(start, chunkEnd, prefix()));
+            start = chunkEnd;
+        }
+    }
+
+    private void endChunk() {
+        if (chunkEnd > start) {
+            segments.add(new Segment(start, chunkEnd, prefix()));
+        }
+        inChunk = false;
+        start = chunkEnd;
+    }
+
+    private byte[] prefix() {
+        if (prefix == null) {
+            int length = 0;
+            for (byte[] ancestor : ancestors) {
+                length += ancestor.length;
+            }
+            prefix = new byte[length];
+            int offset = 0;
+            for (byte[] ancestor : ancestors) {
+                System.arraycopy(ancestor, 0, prefix, offset, ancestor.length);
+                offset += ancestor.length;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * @param from Index just after the start tag of an element.
+     * @return Index just after the matching end tag.
+     */
+    private long skipElement(long from) throws IOException, XmlProcessorException {
+        long index = from;
+        int level = 0;
+        while (true) {
+            final long lessThan = require(find((byte) '<', index));
+            final int next = byteAt(lessThan + 1);
+            if (next == '/') {
+                index = skipTag(lessThan + 2);
+                if (level-- == 0) {
+                    return index;
+                }
+            } else if (next == '!' || next == '?') {
+                index = skipSpecial(lessThan);
+            } else {
+                index = skipTag(lessThan + 1);
+                if (byteAt(index - 2) != '/') {
+                    level++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips a comment, CDATA section, processing instruction, document type declaration or other declaration.
+     *
+     * @return Index just after the markup.
+     */
+    private long skipSpecial(long lessThan) throws IOException, XmlProcessorException {
+        if (byteAt(lessThan + 1) == '?') {
+            return skipTo("?>", lessThan + 2);
+        }
+        if (startsWith("--", lessThan + 2)) {
+            return skipTo("-->", lessThan + 4);
+        }
+        if (startsWith("[CDATA[", lessThan + 2)) {
+            return skipTo("]]>", lessThan + 9);
+        }
+        if (startsWith("DOCTYPE", lessThan + 2)) {
+            return skipDocumentType(lessThan + 9);
+        }
+        return skipTag(lessThan + 2);
+    }
+
+    /**
+     * Skips a document type declaration, including its internal subset, the same way the tokenizer does. Quoted
+     * strings and comments in the internal subset can hold any markup.
+     *
+     * @return Index just after the declaration.
+     */
+    private long skipDocumentType(long from) throws IOException, XmlProcessorException {
+        long index = from;
+        boolean internalSubset = false;
+        while (true) {
+            final int b = byteAt(index);
+            if (b == -1) {
+                throw unexpectedEnd();
+            } else if (b == '"' || b == '\'') {
+                index = require(find((byte) b, index + 1));
+            } else if (b == '<' && internalSubset && startsWith("!--", index + 1)) {
+                index = skipTo("-->", index + 4) - 1;
+            } else if (b == '[') {
+                internalSubset = true;
+            } else if (b == ']') {
+                internalSubset = false;
+            } else if (b == '>' && !internalSubset) {
+                return index + 1;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @return Index just after the end of the tag, skipping over quoted attribute values.
+     */
+    private long skipTag(long from) throws IOException, XmlProcessorException {
+        long index = from;
+        while (index < size) {
+            moveWindow(index);
+            final ByteBuffer buffer = window;
+            final int limit = (int) (windowEnd - windowStart);
+            int i = (int) (index - windowStart);
+            while (i < limit) {
+                final byte b = buffer.get(i);
+                if (b == '>') {
+                    return windowStart + i + 1;
+                } else if (b == '"' || b == '\'') {
+                    break;
+                }
+                i++;
+            }
+            index = windowStart + i;
+            if (i < limit) {
+                index = require(find(buffer.get(i), index + 1)) + 1;
+            }
+        }
+        throw unexpectedEnd();
+    }
+
+    private long skipTo(String terminator, long from) throws IOException, XmlProcessorException {
+        final byte first = (byte) terminator.charAt(0);
+        long index = from;
+        while (true) {
+            index = require(find(first, index));
+            if (startsWith(terminator, index)) {
+                return index + terminator.length();
+            }
+            index++;
+        }
+    }
+
+    private long scanName(long from) throws IOException {
+        long index = from;
+        int b = byteAt(index);
+        while (b > ' ' && b != '/' && b != '>') {
+            b = byteAt(++index);
+        }
+        return index;
+    }
+
+    private boolean localNameEquals(long from, long to, byte[] name) throws IOException {
+        long localStart = from;
+        for (long i = from; i < to; i++) {
+            if (byteAt(i) == ':') {
+                localStart = i + 1;
+            }
+        }
+        if (to - localStart != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (byteAt(localStart + i) != (name[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(String string, long from) throws IOException {
+        for (int i = 0; i < string.length(); i++) {
+            if (byteAt(from + i) != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] copy(long from, long to) throws IOException {
+        final byte[] bytes = new byte[(int) (to - from)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) byteAt(from + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The index of the first occurrence of the byte from the given index, or -1 if there is none.
+     */
+    private long find(byte b, long from) throws IOException {
+        long index = from;
+        while (index < size) {
+            moveWindow(index);
+            final ByteBuffer buffer = window;
+            final int limit = (int) (windowEnd - windowStart);
+            for (int i = (int) (index - windowStart); i < limit; i++) {
+                if (buffer.get(i) == b) {
+                    return windowStart + i;
+                }
+            }
+            index = windowEnd;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The byte at the given index, or -1 if the index is at or past the end of the file.
+     */
+    private int byteAt(long index) throws IOException {
+        if (index >= size) {
+            return -1;
+        }
+        moveWindow(index);
+        return window.get((int) (index - windowStart)) & 0xFF;
+    }
+
+    private void moveWindow(long index) throws IOException {
+        if (index < windowStart || index >= windowEnd) {
+            final int length = (int) Math.min(WINDOW_SIZE, size - index);
+            window = mapping.map(index, length);
+            windowStart = index;
+            windowEnd = index + length;
+        }
+    }
+
+    private long require(long index) throws XmlProcessorException {
+        if (index < 0) {
+            throw unexpectedEnd();
+        }
+        return index;
+    }
+
+    private XmlProcessorException unexpectedEnd() {
+        return new XmlProcessorException("Unexpected end of file in markup");
+    }
+
+    /**
+     * A range of bytes in the file: either a chunk of records, or the bytes in between.
+     */
+    static final class Segment {
+        private final long start;
+        private final long end;
+        private final byte[] prefix;
+
+        private Segment(long start, long end, byte[] prefix) {
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return {@code true} if this segment is a chunk of records, {@code false} if it's the bytes in between.
+         */
+        boolean isChunk() {
+            return prefix != null;
+        }
+
+        /**
+         * @return The start tags of the ancestors of the records in this chunk.
+         */
+        byte[] getPrefix() {
+            return prefix;
+        }
+    }
+}
@@ -1,66 +1,65 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.stream.events.XMLEvent;
-
 import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
 /**
  * Event handler for recursive nodes.
+ * <p>
+ * The handler is shared by all executions of a processor. It keeps track of how deep it is in a recursion in the
+ * {@link ExecutionContext}, under the index of its {@link StartNodeEventHandler}.
+ * </p>
  */
 final class RecursiveNodeEventHandler implements EventHandler {
+    private final int index;
     private final EventHandler parentEventHandler;
     private final ControllerMethod controllerMethod;
-    private int level;
 
-    RecursiveNodeEventHandler(EventHandler parentEventHandler, ControllerMethod controllerMethod) {
+    RecursiveNodeEventHandler(int index, EventHandler parentEventHandler, ControllerMethod controllerMethod) {
+        this.index = index;
         this.parentEventHandler = parentEventHandler;
         this.controllerMethod = controllerMethod;
-        this.level = 0;
     }
 
     @Override
-    public boolean matches(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public boolean matches(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                return isRecursionStart(event) || context.isNodeFlagged(event.asStartElement().getName());
+                return isRecursionStart(cursor, context) || context.isNodeFlagged(cursor.getSymbol());
             case END_ELEMENT:
-                return controllerMethod.isMatchingEndElement(event.asEndElement());
+                return controllerMethod.isMatchingEndElement(cursor);
             default:
                 return false;
         }
     }
 
     @Override
-    public EventHandler process(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public EventHandler process(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                if (isRecursionStart(event)) {
-                    level++;
-                    controllerMethod.processStartElement(event.asStartElement(), context);
+                // If the node is not flagged, this handler matched on the start of a recursion. The attributes of the
+                // node have been extracted by then already; there's no need to check it again.
+                if (!context.isNodeFlagged(cursor.getSymbol()) || isRecursionStart(cursor, context)) {
+                    context.increaseRecursionLevel(index);
+                    controllerMethod.processStartElement(cursor, context);
                     return this;
                 } else {
-                    return new NodeContentEventHandler(
-                            this, controllerMethod.getOwnerName(), event.asStartElement().getName());
+                    return new NodeContentEventHandler(this, controllerMethod.getOwnerSymbol(), cursor.getSymbol());
                 }
             case END_ELEMENT:
                 controllerMethod.processEndElement(context);
-                if (isRecursionFinish()) {
+                if (context.getRecursionLevel(index) == 0) {
                     return parentEventHandler;
                 } else {
-                    level--;
+                    context.decreaseRecursionLevel(index);
                     return this;
                 }
             default:
-                throw new IllegalStateException("Unsupported event type: " + event.getEventType());
+                throw new IllegalStateException("Unsupported event type: " + cursor.getEventType());
         }
     }
 
-    private boolean isRecursionStart(XMLEvent event) {
-        return controllerMethod.isMatchingStartElement(event.asStartElement());
-    }
-
-    private boolean isRecursionFinish() {
-        return level == 0;
+    private boolean isRecursionStart(XmlCursor cursor, ExecutionContext context) {
+        return controllerMethod.isMatchingStartElement(cursor, context);
     }
 }
\ No newline at end of file
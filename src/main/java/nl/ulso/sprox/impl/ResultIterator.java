@@ -0,0 +1,90 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessorException;
+import nl.ulso.sprox.XmlProcessorRuntimeException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Iterates over the results of an execution, running the execution only as far as needed to produce the next result.
+ * <p>
+ * The execution publishes its results into a queue, and pauses as soon as the queue isn't empty. The iterator takes
+ * results from the queue, and resumes the execution only when the queue is empty. The document is therefore never read
+ * further than necessary: stop iterating, and the rest of the document is never read.
+ * </p>
+ * <p>
+ * Errors are thrown as an {@link XmlProcessorRuntimeException}. After an error the iteration is over.
+ * </p>
+ */
+final class ResultIterator<T> implements Iterator<T>, Closeable {
+    private final Execution<T> execution;
+    private final Queue<T> results;
+    private final Closeable input;
+    private boolean done;
+
+    /**
+     * @param input The input the execution reads from, to close along with the execution.
+     */
+    ResultIterator(StaxBasedXmlProcessor<T> processor, XmlCursor cursor, Closeable input) {
+        this.results = new ArrayDeque<>();
+        this.execution = processor.newExecution(cursor, results);
+        this.input = input;
+        this.done = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (results.isEmpty() && !done) {
+            try {
+                try {
+                    done = execution.run();
+                } catch (UncheckedXmlProcessorException e) {
+                    e.checked();
+                }
+            } catch (XMLStreamException e) {
+                throw failure(new XmlProcessorException(e));
+            } catch (XmlProcessorException e) {
+                throw failure(e);
+            }
+        }
+        return !results.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return results.poll();
+    }
+
+    private RuntimeException failure(XmlProcessorException exception) {
+        done = true;
+        execution.abandon();
+        return new XmlProcessorRuntimeException(exception);
+    }
+
+    /**
+     * Closes the execution and the input, whether the execution is done or not.
+     *
+     * @throws IOException If the input could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        done = true;
+        results.clear();
+        try {
+            execution.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+}
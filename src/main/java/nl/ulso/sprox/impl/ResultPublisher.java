@@ -0,0 +1,221 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessorException;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes the results of processing a document that is published in parts.
+ * <p>
+ * Each subscription is a {@link Publication}: a separate {@link Execution} on input that is fed in parts. The
+ * publication subscribes to the document publisher, and feeds each part it receives to the execution. The execution
+ * publishes its results into a queue, and is paused as long as that queue isn't empty. Results are taken from the
+ * queue only when the subscriber has requested them. The document publisher is asked for the next part only when the
+ * subscriber has requested more results, the queue is empty, and the execution has run out of input. In other words:
+ * the demand for results drives the processing of the document, and the processing drives the demand for parts.
+ * </p>
+ * <p>
+ * All signals, from both sides, end up in a single drain loop, that runs on one thread at a time; whichever thread
+ * signals first does the work. The execution is therefore never run concurrently.
+ * </p>
+ */
+final class ResultPublisher<T> implements Flow.Publisher<T> {
+    private final StaxBasedXmlProcessor<T> processor;
+    private final Flow.Publisher<? extends ByteBuffer> document;
+
+    ResultPublisher(StaxBasedXmlProcessor<T> processor, Flow.Publisher<? extends ByteBuffer> document) {
+        this.processor = processor;
+        this.document = document;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        final Publication<T> publication = new Publication<>(processor, requireNonNull(subscriber));
+        subscriber.onSubscribe(publication);
+        document.subscribe(publication);
+    }
+
+    /**
+     * A single run over the document, on behalf of a single subscriber.
+     */
+    private static final class Publication<T> implements Flow.Subscription, Flow.Subscriber<ByteBuffer> {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final TokenizerInput.FeedInput input;
+        private final Queue<T> results;
+        private final Execution<T> execution;
+        private final AtomicInteger workInProgress;
+        private final AtomicLong demand;
+        private final Queue<ByteBuffer> parts;
+        private volatile Flow.Subscription documentSubscription;
+        private volatile boolean documentComplete;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private volatile boolean terminated;
+        // Only accessed from within the drain loop
+        private boolean partRequested;
+        private boolean needsInput;
+        private boolean done;
+
+        private Publication(StaxBasedXmlProcessor<T> processor, Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+            this.input = new TokenizerInput.FeedInput();
+            this.results = new ArrayDeque<>();
+            this.execution = processor.newExecution(input, results);
+            this.workInProgress = new AtomicInteger();
+            this.demand = new AtomicLong();
+            this.parts = new ConcurrentLinkedQueue<>();
+            this.needsInput = true;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The number of requested results must be positive: " + n);
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (documentSubscription != null) {
+                subscription.cancel();
+                return;
+            }
+            documentSubscription = subscription;
+            if (terminated) {
+                subscription.cancel();
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(ByteBuffer part) {
+            parts.add(part);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            documentComplete = true;
+            drain();
+        }
+
+        private void drain() {
+            if (workInProgress.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    drainLoop();
+                }
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            while (true) {
+                if (cancelled) {
+                    terminate();
+                    return;
+                }
+                if (error != null) {
+                    terminate();
+                    subscriber.onError(error);
+                    return;
+                }
+                if (!results.isEmpty()) {
+                    if (demand.get() == 0) {
+                        return;
+                    }
+                    demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+                    subscriber.onNext(results.poll());
+                    continue;
+                }
+                if (done) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand.get() == 0 || needsInput && !feed()) {
+                    return;
+                }
+                run();
+            }
+        }
+
+        /**
+         * Feeds the next part to the execution, or asks the document publisher for it.
+         *
+         * @return {@code true} if the input was fed, {@code false} if the next part has to come in first.
+         */
+        private boolean feed() {
+            final ByteBuffer part = parts.poll();
+            if (part != null) {
+                partRequested = false;
+                input.feed(part);
+            } else if (documentComplete) {
+                input.complete();
+            } else {
+                final Flow.Subscription subscription = documentSubscription;
+                if (!partRequested && subscription != null) {
+                    partRequested = true;
+                    subscription.request(1);
+                }
+                return false;
+            }
+            needsInput = false;
+            return true;
+        }
+
+        private void run() {
+            try {
+                try {
+                    done = execution.run();
+                    needsInput = !done && results.isEmpty();
+                } catch (UncheckedXmlProcessorException e) {
+                    e.checked();
+                }
+            } catch (XMLStreamException e) {
+                error = new XmlProcessorException(e);
+            } catch (XmlProcessorException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+        private void terminate() {
+            terminated = true;
+            execution.abandon();
+            results.clear();
+            parts.clear();
+            final Flow.Subscription subscription = documentSubscription;
+            if (subscription != null && !documentComplete) {
+                subscription.cancel();
+            }
+        }
+    }
+}
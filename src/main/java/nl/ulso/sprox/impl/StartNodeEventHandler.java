@@ -1,44 +1,68 @@
 package nl.ulso.sprox.impl;
 
-import javax.xml.stream.events.XMLEvent;
-
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
 /**
  * Event handler for start nodes. For every controller method there's exactly one such event handler. At the start of
- * the execution of an {@link nl.ulso.sprox.impl.StaxBasedXmlProcessor} it has a list of {@code StartNodeEventHandler}s
- * only.
+ * the execution of an {@link nl.ulso.sprox.impl.StaxBasedXmlProcessor} it has a set of {@code StartNodeEventHandler}s
+ * only, compiled into a {@link PathAutomaton} on the paths of the nodes they trigger on.
+ * <p>
+ * Each handler has an index, unique within a processor. The {@link EventDispatcher} uses it to keep track of the
+ * handlers that are disabled in an execution.
+ * </p>
  */
 final class StartNodeEventHandler implements EventHandler {
+    private final int index;
     private final ControllerMethod controllerMethod;
     private final EventHandler nodeEventHandler;
 
-    StartNodeEventHandler(ControllerMethod controllerMethod, boolean recursive) {
+    StartNodeEventHandler(int index, ControllerMethod controllerMethod, boolean recursive) {
+        this.index = index;
         this.controllerMethod = controllerMethod;
         if (recursive) {
-            this.nodeEventHandler = new RecursiveNodeEventHandler(this, controllerMethod);
+            this.nodeEventHandler = new RecursiveNodeEventHandler(index, this, controllerMethod);
         } else {
             this.nodeEventHandler = new NonRecursiveNodeEventHandler(this, controllerMethod);
         }
     }
 
+    /**
+     * The {@link PathAutomaton} only hands out this event handler for start elements it triggers on. The name of the
+     * element is therefore not checked again.
+     */
     @Override
-    public boolean matches(XMLEvent event, ExecutionContext context) {
-        switch (event.getEventType()) {
+    public boolean matches(XmlCursor cursor, ExecutionContext context) {
+        switch (cursor.getEventType()) {
             case START_ELEMENT:
-                return controllerMethod.isMatchingStartElement(event.asStartElement());
+                return controllerMethod.isValidStartElement(cursor, context);
             default:
                 return false;
         }
     }
 
     @Override
-    public EventHandler process(XMLEvent event, ExecutionContext context) {
-        controllerMethod.processStartElement(event.asStartElement(), context);
-        if (nodeEventHandler.matches(event, context)) {
-            return nodeEventHandler.process(event, context);
+    public EventHandler process(XmlCursor cursor, ExecutionContext context) {
+        controllerMethod.processStartElement(cursor, context);
+        if (nodeEventHandler.matches(cursor, context)) {
+            return nodeEventHandler.process(cursor, context);
         } else {
             return nodeEventHandler;
         }
     }
+
+    int getIndex() {
+        return index;
+    }
+
+    ElementPath getPath() {
+        return controllerMethod.getOwnerPath();
+    }
+
+    int getAttributeSlotCount() {
+        return controllerMethod.getAttributeSlotCount();
+    }
+
+    boolean isInjecting(Class<?> objectClass) {
+        return controllerMethod.isInjecting(objectClass);
+    }
 }
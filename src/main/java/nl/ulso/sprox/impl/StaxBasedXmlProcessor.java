@@ -1,72 +1,277 @@
 package nl.ulso.sprox.impl;
 
+import nl.ulso.sprox.Compression;
 import nl.ulso.sprox.Parser;
+import nl.ulso.sprox.XmlBatchResult;
+import nl.ulso.sprox.XmlFeeder;
 import nl.ulso.sprox.XmlProcessor;
 import nl.ulso.sprox.XmlProcessorException;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
-import static nl.ulso.sprox.impl.UncheckedXmlProcessorException.unchecked;
+import static java.util.Objects.requireNonNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
 
 /**
  * Default implementation of the {@link nl.ulso.sprox.XmlProcessor} interface on top of the JDKs built-in StAX
  * parser.
  * <p>
- * On construction, a processor is initialized with an initial list of event handlers, all based on annotated
- * controller
- * methods. When the processor goes through a document, it implements the following algorithm:
+ * The processor goes through a document with an {@link XmlCursor}, created by the {@link XmlCursorFactory} of the
+ * {@link nl.ulso.sprox.Engine} it was built with.
+ * </p>
  * <p>
+ * All element names known to the controllers of a processor are kept in a {@link SymbolTable}. The cursor turns the
+ * name of each start element into a symbol, after which names are compared as integers only.
+ * </p>
+ * <p>
+ * On construction, a processor compiles its start node event handlers, all based on annotated controller methods, into
+ * a {@link PathAutomaton}, on the paths of the nodes they trigger on. When the processor goes through a document, it
+ * implements the following algorithm:
+ * </p>
  * <ul>
- * <li>Copy the initial list of event handlers to a new list, specifically for this execution</li>
- * <li>Go through the document, event by event</li>
- * <li>For every event, check if it matches one of the event handlers in the list, from back to front. If so:
+ * <li>Create an {@link EventDispatcher} on top of the automaton, specifically for this execution</li>
+ * <li>Go through the document with a cursor, event by event</li>
+ * <li>For every start element, advance the automaton</li>
+ * <li>For every event, find the first event handler that matches: first in the stack of active event handlers, from
+ * top to bottom, then in the handlers accepted by the automaton. If found:
  * <ul>
- * <li>Remove the event handler from the list.</li>
+ * <li>Remove the event handler from the dispatcher.</li>
  * <li>Let the event handler process the event.</li>
- * <li>Add the resulting event handler to the back of the list, giving it the highest priority.</li>
+ * <li>Push the resulting event handler to the dispatcher, giving it the highest priority.</li>
  * </ul>
  * </li>
  * </ul>
+ * <p>
+ * If the processor is built to skip unknown subtrees, then whenever it finds a start element with a name that is not in
+ * its symbol table, and the content of a node is not being collected, it ignores all events up to the matching end
+ * element, without dispatching any of them.
+ * </p>
+ * <p>
+ * All state of a single run over a document is kept in an {@link Execution}. A run over a document that is fed in
+ * parts, through an {@link XmlFeeder} or a {@link ResultPublisher}, goes through a tokenizer cursor. Whenever the
+ * cursor runs out of input, the execution is suspended, until the next part comes in.
+ * </p>
+ * <p>
+ * If the processor is built to pool execution state, executions that complete successfully go into a pool. The next
+ * document is processed by an execution from the pool, if there is one, after resetting it. That saves the allocation
+ * of a new dispatcher and context, with all of their data structures, for every document. A tokenizer cursor also
+ * takes over the names its predecessor has seen. Only documents that are processed in one go are processed this way;
+ * a pool doesn't get in the way of executions on other threads, virtual or not.
+ * </p>
+ * <p>
+ * If the processor is built to stop at the first result, it stops going through the document as soon as the result
+ * is available. The cursor is closed, and the rest of the document is never read.
+ * </p>
+ * <p>
+ * Files are mapped into memory with a {@link FileMapping}. The tokenizer engine reads files of any size through a
+ * window on the mapping. The StAX engines read files up to 2GB as a single buffer, and larger files as a stream.
+ * </p>
+ * <p>
+ * A file can also be processed in parallel, by a {@link ParallelExecution}, that splits it into chunks of records.
+ * </p>
+ * <p>
+ * Compressed documents are read through a {@link DecompressingInputStream}, that decompresses them on a separate
+ * thread. Which documents are compressed is detected from their first two bytes, unless the processor is built for
+ * a specific compression.
+ * </p>
  */
 final class StaxBasedXmlProcessor<T> implements XmlProcessor<T> {
     private final Class<T> resultClass;
-    private final Map<Class, ControllerProvider> controllerProviders;
-    private final XMLInputFactory inputFactory;
-    private final List<EventHandler> initialEventHandlers;
+    private final ControllerProvider[] controllerProviders;
+    private final XmlCursorFactory cursorFactory;
+    private final TokenizerCursor.Factory feederCursorFactory;
+    private final PathAutomaton pathAutomaton;
+    private final int startNodeEventHandlerCount;
+    private final int attributeSlotCount;
+    private final SymbolTable symbolTable;
+    private final boolean skipUnknownSubtrees;
+    private final boolean stopAtFirstResult;
+    private final Compression compression;
     private final Map<Class<?>, Parser<?>> parsers;
+    private final Map<Class<?>, Consumer<Object>> resultSinks;
+    private final boolean resultInjected;
+    private final Queue<Execution<T>> executionPool;
 
-    StaxBasedXmlProcessor(Class<T> resultClass, Map<Class, ControllerProvider> controllerProviders,
-                          List<EventHandler> eventHandlers, Map<Class<?>, Parser<?>> parsers, XMLInputFactory inputFactory) {
+    StaxBasedXmlProcessor(Class<T> resultClass, List<ControllerProvider> controllerProviders,
+                          List<StartNodeEventHandler> eventHandlers, Map<Class<?>, Parser<?>> parsers,
+                          Map<Class<?>, Consumer<Object>> resultSinks, XmlCursorFactory cursorFactory,
+                          TokenizerCursor.Factory feederCursorFactory, SymbolTable symbolTable,
+                          boolean skipUnknownSubtrees, boolean stopAtFirstResult, boolean executionStatePooling,
+                          Compression compression) {
         this.resultClass = resultClass;
-        this.controllerProviders = unmodifiableMap(new HashMap<>(controllerProviders));
-        this.initialEventHandlers = unmodifiableList(new ArrayList<>(eventHandlers));
+        this.controllerProviders = controllerProviders.toArray(new ControllerProvider[0]);
+        this.symbolTable = symbolTable;
+        this.pathAutomaton = new PathAutomaton(eventHandlers, symbolTable);
+        this.startNodeEventHandlerCount = eventHandlers.size();
+        this.attributeSlotCount = eventHandlers.stream()
+                .mapToInt(StartNodeEventHandler::getAttributeSlotCount)
+                .max().orElse(0);
         this.parsers = unmodifiableMap(new HashMap<>(parsers));
-        this.inputFactory = inputFactory;
+        this.resultSinks = unmodifiableMap(new HashMap<>(resultSinks));
+        this.resultInjected = eventHandlers.stream().anyMatch(handler -> handler.isInjecting(resultClass));
+        this.cursorFactory = cursorFactory;
+        this.feederCursorFactory = feederCursorFactory;
+        this.skipUnknownSubtrees = skipUnknownSubtrees;
+        this.stopAtFirstResult = stopAtFirstResult;
+        this.compression = compression;
+        this.executionPool = executionStatePooling ? new ConcurrentLinkedQueue<>() : null;
     }
 
     @Override
     public T execute(Reader reader) throws XmlProcessorException {
+        return process(() -> cursorFactory.createCursor(reader, symbolTable), executionPool);
+    }
+
+    @Override
+    public T execute(InputStream inputStream) throws XmlProcessorException {
+        if (compression == Compression.NONE) {
+            return process(() -> cursorFactory.createCursor(inputStream, symbolTable), executionPool);
+        }
         try {
-            return processEventReader(inputFactory.createXMLEventReader(reader));
-        } catch (XMLStreamException e) {
+            final PushbackInputStream input = new PushbackInputStream(inputStream, 2);
+            final Compression documentCompression = detectCompression(input);
+            if (documentCompression == Compression.NONE) {
+                return process(() -> cursorFactory.createCursor(input, symbolTable), executionPool);
+            }
+            return decompress(input, documentCompression, executionPool);
+        } catch (IOException e) {
             throw new XmlProcessorException(e);
-        } catch (UncheckedXmlProcessorException e) {
-            throw e.checked();
         }
     }
 
     @Override
-    public T execute(InputStream inputStream) throws XmlProcessorException {
+    public T execute(byte[] bytes, int offset, int length) throws XmlProcessorException {
+        return execute(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    @Override
+    public T execute(ByteBuffer buffer) throws XmlProcessorException {
+        final Compression documentCompression = detectCompression(buffer);
+        if (documentCompression == Compression.NONE) {
+            return process(() -> cursorFactory.createCursor(buffer, symbolTable), executionPool);
+        }
         try {
-            return processEventReader(inputFactory.createXMLEventReader(inputStream));
+            return decompress(new ByteBufferInputStream(buffer), documentCompression, executionPool);
+        } catch (IOException e) {
+            throw new XmlProcessorException(e);
+        }
+    }
+
+    @Override
+    public T execute(CharSequence characters) throws XmlProcessorException {
+        return process(() -> cursorFactory.createCursor(characters, symbolTable), executionPool);
+    }
+
+    @Override
+    public T execute(Path path) throws XmlProcessorException {
+        return execute(path, executionPool);
+    }
+
+    /**
+     * Processes a file, with executions from a specific pool.
+     *
+     * @param pool The pool of executions to use, or {@code null} to use a new execution.
+     */
+    T execute(Path path, Queue<Execution<T>> pool) throws XmlProcessorException {
+        try (FileMapping mapping = FileMapping.open(path)) {
+            final Compression documentCompression = compression == Compression.NONE ? Compression.NONE
+                    : detectCompression(mapping.map(0, (int) Math.min(2, mapping.size())));
+            if (documentCompression == Compression.NONE) {
+                return process(() -> cursorFactory.createCursor(mapping, symbolTable), pool);
+            }
+            return decompress(mapping.newInputStream(), documentCompression, pool);
+        } catch (IOException e) {
+            throw new XmlProcessorException("Could not read file " + path, e);
+        }
+    }
+
+    @Override
+    public Stream<T> stream(InputStream inputStream) throws XmlProcessorException {
+        requireNonNull(inputStream);
+        final ResultIterator<T> iterator;
+        try {
+            if (compression == Compression.NONE) {
+                iterator = newResultIterator(inputStream, inputStream);
+            } else {
+                final PushbackInputStream input = new PushbackInputStream(inputStream, 2);
+                final Compression documentCompression = detectCompression(input);
+                if (documentCompression == Compression.NONE) {
+                    iterator = newResultIterator(input, input);
+                } else {
+                    final DecompressingInputStream decompressed = new DecompressingInputStream(input,
+                            documentCompression);
+                    iterator = newResultIterator(decompressed, () -> {
+                        try (input) {
+                            decompressed.close();
+                        }
+                    });
+                }
+            }
+        } catch (IOException e) {
+            throw new XmlProcessorException(e);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, ORDERED | NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private ResultIterator<T> newResultIterator(InputStream document, Closeable input)
+            throws IOException, XmlProcessorException {
+        try {
+            return new ResultIterator<>(this, cursorFactory.createCursor(document, symbolTable), input);
+        } catch (XMLStreamException e) {
+            input.close();
+            throw new XmlProcessorException(e);
+        }
+    }
+
+    private Compression detectCompression(PushbackInputStream input) throws IOException {
+        final byte[] header = input.readNBytes(2);
+        input.unread(header);
+        return DecompressingInputStream.detect(compression,
+                header.length > 0 ? header[0] & 0xFF : -1, header.length > 1 ? header[1] & 0xFF : -1);
+    }
+
+    private Compression detectCompression(ByteBuffer buffer) {
+        final int position = buffer.position();
+        final int remaining = buffer.remaining();
+        return DecompressingInputStream.detect(compression,
+                remaining > 0 ? buffer.get(position) & 0xFF : -1, remaining > 1 ? buffer.get(position + 1) & 0xFF : -1);
+    }
+
+    private T decompress(InputStream compressed, Compression documentCompression, Queue<Execution<T>> pool)
+            throws IOException, XmlProcessorException {
+        try (DecompressingInputStream input = new DecompressingInputStream(compressed, documentCompression)) {
+            return process(() -> cursorFactory.createCursor(input, symbolTable), pool);
+        }
+    }
+
+    private T process(CursorSupplier cursorSupplier, Queue<Execution<T>> pool) throws XmlProcessorException {
+        try {
+            return processCursor(cursorSupplier.createCursor(), pool);
         } catch (XMLStreamException e) {
             throw new XmlProcessorException(e);
         } catch (UncheckedXmlProcessorException e) {
@@ -74,56 +279,191 @@ final class StaxBasedXmlProcessor<T> implements XmlProcessor<T> {
         }
     }
 
-    private T processEventReader(XMLEventReader eventReader) throws XMLStreamException {
-        final List<EventHandler> eventHandlers = new ArrayList<>(initialEventHandlers);
-        final ExecutionContext<T> context = new ExecutionContext<>(resultClass, provideControllers(), parsers);
-        while (eventReader.hasNext()) {
-            final XMLEvent event = eventReader.nextEvent();
-            if (event.isStartElement()) {
-                context.increaseDepth();
-            }
-            final EventHandler handler = popFirstMatchingEventHandler(eventHandlers, event, context);
-            if (handler != null) {
-                final EventHandler nextEventHandler = handler.process(event, context);
-                eventHandlers.add(0, nextEventHandler);
+    private T processCursor(XmlCursor cursor, Queue<Execution<T>> pool) throws XMLStreamException {
+        final Execution<T> execution = pool != null ? pool.poll() : null;
+        if (execution != null) {
+            execution.reset(cursor);
+            return processExecution(execution, pool);
+        }
+        return processExecution(newExecution(cursor, null), pool);
+    }
+
+    private T processExecution(Execution<T> execution, Queue<Execution<T>> pool) throws XMLStreamException {
+        try {
+            execution.run();
+        } catch (XMLStreamException | RuntimeException e) {
+            execution.abandon();
+            throw e;
+        }
+        final T result = execution.getResult();
+        if (pool != null) {
+            pool.offer(execution);
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<XmlBatchResult<T>> executeAll(Iterable<Path> paths) {
+        return executeAll(paths, ForkJoinPool.commonPool(), true);
+    }
+
+    @Override
+    public Stream<XmlBatchResult<T>> executeAll(Iterable<Path> paths, Executor executor, boolean ordered) {
+        final BatchIterator<T> iterator = new BatchIterator<>(this, paths.iterator(), requireNonNull(executor),
+                ordered, executionPool != null ? executionPool : new ConcurrentLinkedQueue<>());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, ORDERED | NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public T executeParallel(Path path, String recordPath) throws XmlProcessorException {
+        return executeParallel(path, recordPath, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public T executeParallel(Path path, String recordPath, Executor executor) throws XmlProcessorException {
+        final String[] steps = RecordScanner.parsePath(recordPath);
+        requireNonNull(executor);
+        try (FileMapping mapping = FileMapping.open(path)) {
+            final Compression documentCompression = compression == Compression.NONE ? Compression.NONE
+                    : detectCompression(mapping.map(0, (int) Math.min(2, mapping.size())));
+            if (documentCompression != Compression.NONE) {
+                return decompress(mapping.newInputStream(), documentCompression, executionPool);
             }
-            if (event.isEndElement()) {
-                context.decreaseDepth();
+            final int start = TokenizerInput.findUtf8Start(mapping);
+            if (start < 0 || stopAtFirstResult) {
+                return process(() -> cursorFactory.createCursor(mapping, symbolTable), executionPool);
             }
+            return new ParallelExecution<>(this, mapping, steps, start, executor).execute();
+        } catch (IOException e) {
+            throw new XmlProcessorException("Could not read file " + path, e);
+        } catch (UncheckedXmlProcessorException e) {
+            throw e.checked();
         }
-        eventReader.close();
-        return createReturnValue(context);
     }
 
-    private Map<Class, Object> provideControllers() {
-        return controllerProviders.entrySet().stream().collect(
-                HashMap::new,
-                (map, entry) -> map.put(entry.getKey(), entry.getValue().getController()),
-                Map::putAll
-        );
+    @Override
+    public XmlFeeder<T> newFeeder() {
+        final TokenizerInput.FeedInput input = new TokenizerInput.FeedInput();
+        return new Feeder(input, newExecution(input, null));
+    }
+
+    @Override
+    public Flow.Publisher<T> publish(Flow.Publisher<? extends ByteBuffer> document) {
+        return new ResultPublisher<>(this, requireNonNull(document));
+    }
+
+    /**
+     * Creates an execution on input that is fed in parts.
+     *
+     * @param input            The input to read the document from.
+     * @param publishedResults Queue to publish results to, or {@code null} to keep the last result only.
+     */
+    Execution<T> newExecution(TokenizerInput.FeedInput input, Queue<T> publishedResults) {
+        return newExecution(feederCursorFactory.createCursor(input, symbolTable), publishedResults);
+    }
+
+    /**
+     * Creates an execution on a cursor.
+     *
+     * @param cursor           The cursor to read the document with.
+     * @param publishedResults Queue to publish results to, or {@code null} to keep the last result only.
+     */
+    Execution<T> newExecution(XmlCursor cursor, Queue<T> publishedResults) {
+        final ExecutionContext<T> context = new ExecutionContext<>(resultClass, controllerProviders, parsers,
+                resultSinks, startNodeEventHandlerCount, attributeSlotCount, symbolTable.size(),
+                publishedResults != null ? publishedResults::add : null, resultInjected);
+        return new Execution<>(resultClass, cursor, new EventDispatcher(pathAutomaton, startNodeEventHandlerCount),
+                context, skipUnknownSubtrees, stopAtFirstResult, publishedResults);
     }
 
-    private EventHandler popFirstMatchingEventHandler(List<EventHandler> eventHandlers, XMLEvent event,
-                                                      ExecutionContext executionContext) {
-        final Iterator<EventHandler> iterator = eventHandlers.iterator();
-        while (iterator.hasNext()) {
-            final EventHandler handler = iterator.next();
-            if (handler.matches(event, executionContext)) {
-                iterator.remove();
-                return handler;
+    /**
+     * Creates an execution for a chunk of records, on input that is fed in parts. Result sinks are not applied; the
+     * results stay in the execution, until they are moved to the main execution.
+     *
+     * @param input The input to read the chunk from.
+     * @see ParallelExecution
+     */
+    Execution<T> newChunkExecution(TokenizerInput.FeedInput input) {
+        final ExecutionContext<T> context = new ExecutionContext<>(resultClass, controllerProviders, parsers,
+                Map.of(), startNodeEventHandlerCount, attributeSlotCount, symbolTable.size(), null, resultInjected);
+        return new Execution<>(resultClass, feederCursorFactory.createCursor(input, symbolTable),
+                new EventDispatcher(pathAutomaton, startNodeEventHandlerCount), context, skipUnknownSubtrees, false,
+                null);
+    }
+
+    @FunctionalInterface
+    private interface CursorSupplier {
+        XmlCursor createCursor() throws XMLStreamException;
+    }
+
+    /**
+     * Feeds parts of a document to an execution on top of a tokenizer. The feeder fails for good on the first error.
+     */
+    private final class Feeder implements XmlFeeder<T> {
+        private final TokenizerInput.FeedInput input;
+        private final Execution<T> execution;
+        private boolean done;
+        private boolean closed;
+
+        private Feeder(TokenizerInput.FeedInput input, Execution<T> execution) {
+            this.input = input;
+            this.execution = execution;
+            this.done = false;
+            this.closed = false;
+        }
+
+        @Override
+        public void feed(ByteBuffer buffer) throws XmlProcessorException {
+            checkNotClosed();
+            if (!done && buffer.hasRemaining()) {
+                input.feed(buffer);
+                run();
             }
+            buffer.position(buffer.limit());
         }
-        return null;
-    }
 
-    private T createReturnValue(ExecutionContext<T> context) {
-        final Optional<T> result = context.getResult();
-        if (result.isPresent()) {
-            return result.get();
+        @Override
+        public T complete() throws XmlProcessorException {
+            checkNotClosed();
+            input.complete();
+            if (!done) {
+                run();
+            }
+            closed = true;
+            try {
+                return execution.getResult();
+            } catch (UncheckedXmlProcessorException e) {
+                throw e.checked();
+            }
         }
-        if (!Void.class.equals(resultClass)) {
-            throw unchecked(new XmlProcessorException("No result collected of type " + resultClass.getName()));
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        private void run() throws XmlProcessorException {
+            try {
+                done = execution.run();
+            } catch (XMLStreamException e) {
+                fail();
+                throw new XmlProcessorException(e);
+            } catch (UncheckedXmlProcessorException e) {
+                fail();
+                throw e.checked();
+            }
+        }
+
+        private void fail() {
+            closed = true;
+            execution.abandon();
+        }
+
+        private void checkNotClosed() {
+            if (closed) {
+                throw new IllegalStateException("The feeder was completed already, or failed before.");
+            }
         }
-        return null;
     }
 }
@@ -2,6 +2,7 @@ package nl.ulso.sprox.impl;
 
 import nl.ulso.sprox.*;
 import nl.ulso.sprox.parsers.*;
+import nl.ulso.sprox.processor.ControllerDispatcher;
 import nl.ulso.sprox.resolvers.DefaultElementNameResolver;
 
 import javax.xml.namespace.QName;
@@ -11,9 +12,10 @@ import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import static java.util.Arrays.stream;
 import static java.util.Objects.requireNonNull;
@@ -24,8 +26,12 @@ import static nl.ulso.sprox.impl.ReflectionUtil.*;
  * <p>
  * Whenever a controller is added, each method in the controller is scanned to see if it is annotated with
  * {@link nl.ulso.sprox.Node}. If so, a {@link StartNodeEventHandler} is created and stored in a list. When building
- * the
- * {@link StaxBasedXmlProcessor}, it gets passed these event handlers.
+ * the {@link StaxBasedXmlProcessor}, it gets passed these event handlers, which it then indexes.
+ * <p>
+ * If a {@link ControllerDispatcher} was generated for a controller class, the controller methods are taken from the
+ * dispatcher instead, without inspecting the class at all. Dispatchers resolve element names the way the default
+ * {@link ElementNameResolver} does. They are therefore used only as long as no other resolver is set.
+ * </p>
  */
 final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
     private static final String NAMESPACE_AWARE = "javax.xml.stream.isNamespaceAware";
@@ -51,11 +57,19 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
 
     private final Class<T> resultClass;
     private final Map<Class, ControllerProvider> controllerProviders;
-    private final List<EventHandler> eventHandlers;
+    private final List<StartNodeEventHandler> eventHandlers;
+    private final SymbolTable symbolTable;
     private ElementNameResolver resolver;
     private final Map<Class<?>, Parser<?>> parsers;
+    private final Map<Class<?>, Consumer<Object>> resultSinks;
     private int controllersWithNamespaces;
     private XMLInputFactory inputFactory;
+    private Engine engine;
+    private boolean skipUnknownSubtrees;
+    private boolean stopAtFirstResult;
+    private boolean controllerPooling;
+    private boolean executionStatePooling;
+    private Compression compression;
 
     /**
      * Creates a default {@link nl.ulso.sprox.XmlProcessorBuilder} for the specified result class.
@@ -64,11 +78,19 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
      */
     StaxBasedXmlProcessorBuilder(Class<T> resultClass) {
         this.resultClass = requireNonNull(resultClass);
-        this.controllerProviders = new HashMap<>();
+        this.controllerProviders = new LinkedHashMap<>();
         this.eventHandlers = new ArrayList<>();
+        this.symbolTable = new SymbolTable();
         this.parsers = new HashMap<>(DEFAULT_PARSERS);
+        this.resultSinks = new HashMap<>();
         this.resolver = DEFAULT_RESOLVER;
         this.inputFactory = null;
+        this.engine = Engine.STREAM_READER;
+        this.skipUnknownSubtrees = false;
+        this.stopAtFirstResult = false;
+        this.controllerPooling = false;
+        this.executionStatePooling = false;
+        this.compression = Compression.DETECT;
         this.controllersWithNamespaces = 0;
     }
 
@@ -131,34 +153,84 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         return this;
     }
 
+    /**
+     * Creates the controller methods of a controller class, for the controller in the next controller slot. The slot of
+     * a controller is its index in the (ordered) map of controller providers.
+     */
     private void processControllerClass(Class<?> controllerClass) {
         if (controllerProviders.containsKey(controllerClass)) {
             throw new IllegalArgumentException("A controller of this class is already registered: " + controllerClass);
         }
+        final int controllerSlot = controllerProviders.size();
+        final ControllerDispatcher dispatcher = findControllerDispatcher(controllerClass);
+        if (dispatcher != null) {
+            if (dispatcher.hasNamespacesDeclared()) {
+                controllersWithNamespaces++;
+            }
+            final DispatcherControllerMethodRegistry registry = new DispatcherControllerMethodRegistry(controllerSlot,
+                    symbolTable);
+            dispatcher.registerControllerMethods(registry);
+            registry.addStartNodeEventHandlers(eventHandlers);
+            return;
+        }
         final NamespaceMap namespaceMap = new NamespaceMap(controllerClass);
         if (namespaceMap.hasNamespacesDeclared()) {
             controllersWithNamespaces++;
         }
         stream(controllerClass.getMethods())
                 .filter(method -> method.isAnnotationPresent(Node.class))
-                .forEach(method -> eventHandlers.add(new StartNodeEventHandler(
-                        createControllerMethod(controllerClass, method, namespaceMap),
+                .forEach(method -> eventHandlers.add(new StartNodeEventHandler(eventHandlers.size(),
+                        createControllerMethod(controllerSlot, controllerClass, method, namespaceMap),
                         method.isAnnotationPresent(Recursive.class))));
     }
 
-    private ControllerMethod createControllerMethod(Class<?> controllerClass, Method method, NamespaceMap namespaceMap) {
+    private ControllerDispatcher findControllerDispatcher(Class<?> controllerClass) {
+        if (resolver != DEFAULT_RESOLVER) {
+            return null;
+        }
+        final String dispatcherClassName = ControllerDispatcher.dispatcherClassName(controllerClass.getName());
+        final Class<?> dispatcherClass;
+        try {
+            dispatcherClass = Class.forName(dispatcherClassName, true, controllerClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!ControllerDispatcher.class.isAssignableFrom(dispatcherClass)) {
+            // A nested class of the controller that happens to have the same name
+            return null;
+        }
+        try {
+            return (ControllerDispatcher) dispatcherClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate controller dispatcher: " + dispatcherClassName, e);
+        }
+    }
+
+    private ControllerMethod createControllerMethod(int controllerSlot, Class<?> controllerClass, Method method,
+                                                    NamespaceMap namespaceMap) {
         final QNameResolver qNameResolver = new QNameResolver(controllerClass, method, namespaceMap, resolver);
-        final QName ownerName = qNameResolver.createQName(method.getAnnotation(Node.class).value());
-        final List<ControllerParameter> controllerParameters = stream(method.getParameters())
-                .map(parameter -> createControllerParameter(parameter, ownerName, qNameResolver))
-                .collect(Collectors.toList());
-        return new ControllerMethod(controllerClass, method, ownerName, controllerParameters);
+        final ElementPath ownerPath = qNameResolver.createElementPath(method.getAnnotation(Node.class).value());
+        for (int step = 0; step < ownerPath.getLength(); step++) {
+            symbolTable.add(ownerPath.getName(step));
+        }
+        final QName ownerName = ownerPath.getName();
+        final List<ControllerParameter> controllerParameters = new ArrayList<>();
+        int attributeSlots = 0;
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.isAnnotationPresent(Attribute.class)) {
+                controllerParameters.add(
+                        createAttributeControllerParameter(parameter, attributeSlots++, ownerName, qNameResolver));
+            } else {
+                controllerParameters.add(createControllerParameter(parameter, ownerName, qNameResolver));
+            }
+        }
+        return new ControllerMethod(controllerSlot, ownerPath, symbolTable.lookup(ownerName), controllerParameters,
+                method.getReturnType(),
+                new MethodInvoker(method), method.toString());
     }
 
     private ControllerParameter createControllerParameter(Parameter parameter, QName ownerName, QNameResolver resolver) {
-        if (parameter.isAnnotationPresent(Attribute.class)) {
-            return createAttributeControllerParameter(parameter, ownerName, resolver);
-        } else if (parameter.isAnnotationPresent(Node.class)) {
+        if (parameter.isAnnotationPresent(Node.class)) {
             return createNodeControllerParameter(parameter, ownerName, resolver);
         }
 
@@ -172,18 +244,20 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         return createObjectControllerParameter(parameter, ownerName, resolver);
     }
 
-    private ControllerParameter createAttributeControllerParameter(Parameter parameter, QName ownerName, QNameResolver resolver) {
+    private ControllerParameter createAttributeControllerParameter(Parameter parameter, int slot, QName ownerName,
+                                                                   QNameResolver resolver) {
         final String attribute = parameter.getAnnotation(Attribute.class).value();
         final QName name = resolver.createQName(attribute, parameter, ownerName);
         final Type type = parameter.getParameterizedType();
-        return new AttributeControllerParameter(name, resolveObjectClass(type), isOptionalType(type));
+        return new AttributeControllerParameter(name, slot, resolveObjectClass(type), isOptionalType(type));
     }
 
     private ControllerParameter createNodeControllerParameter(Parameter parameter, QName ownerName, QNameResolver resolver) {
         final String node = parameter.getAnnotation(Node.class).value();
         final QName name = resolver.createQName(node, parameter, ownerName);
         final Type type = parameter.getParameterizedType();
-        return new NodeControllerParameter(ownerName, name, resolveObjectClass(type), isOptionalType(type));
+        return new NodeControllerParameter(symbolTable.lookup(ownerName), symbolTable.add(name),
+                resolveObjectClass(type), isOptionalType(type));
     }
 
     private ControllerParameter createListControllerParameter(Parameter parameter, QName ownerName, QNameResolver resolver) {
@@ -191,8 +265,8 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         final boolean optional = isOptionalType(type);
         final Type parameterType = optional ? extractTypeFromOptional(type) : type;
         final Source source = parameter.getAnnotation(Source.class);
-        final QName name = (source == null) ? null : resolver.createQName(source.value(), parameter, ownerName);
-        return new ListControllerParameter((Class) extractTypeFromList(parameterType), name, optional);
+        return new ListControllerParameter((Class) extractTypeFromList(parameterType),
+                createSourceSymbol(source, parameter, ownerName, resolver), optional);
     }
 
     private ControllerParameter createObjectControllerParameter(Parameter parameter, QName ownerName, QNameResolver resolver) {
@@ -200,8 +274,15 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         final boolean optional = isOptionalType(type);
         final Type parameterType = optional ? extractTypeFromOptional(type) : type;
         final Source source = parameter.getAnnotation(Source.class);
-        final QName name = (source == null) ? null : resolver.createQName(source.value(), parameter, ownerName);
-        return new ObjectControllerParameter((Class) parameterType, name, optional);
+        return new ObjectControllerParameter((Class) parameterType,
+                createSourceSymbol(source, parameter, ownerName, resolver), optional);
+    }
+
+    private int createSourceSymbol(Source source, Parameter parameter, QName ownerName, QNameResolver resolver) {
+        if (source == null) {
+            return MethodResultMap.ANY_SOURCE;
+        }
+        return symbolTable.add(resolver.createQName(source.value(), parameter, ownerName));
     }
 
     @Override
@@ -231,6 +312,17 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         return this;
     }
 
+    @Override
+    public <R> XmlProcessorBuilder<T> addResultSink(Consumer<? super R> sink, Class<R> type) {
+        requireNonNull(sink);
+        requireNonNull(type);
+        // Only ever called with objects of the type the sink is registered for
+        @SuppressWarnings("unchecked")
+        final Consumer<Object> objectSink = (Consumer<Object>) sink;
+        resultSinks.put(type, objectSink);
+        return this;
+    }
+
     @Override
     public XmlProcessorBuilder<T> setXmlInputFactory(XMLInputFactory inputFactory) {
         requireNonNull(inputFactory);
@@ -238,6 +330,42 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
         return this;
     }
 
+    @Override
+    public XmlProcessorBuilder<T> setEngine(Engine engine) {
+        this.engine = requireNonNull(engine);
+        return this;
+    }
+
+    @Override
+    public XmlProcessorBuilder<T> setSkipUnknownSubtrees(boolean skipUnknownSubtrees) {
+        this.skipUnknownSubtrees = skipUnknownSubtrees;
+        return this;
+    }
+
+    @Override
+    public XmlProcessorBuilder<T> setStopAtFirstResult(boolean stopAtFirstResult) {
+        this.stopAtFirstResult = stopAtFirstResult;
+        return this;
+    }
+
+    @Override
+    public XmlProcessorBuilder<T> setControllerPooling(boolean controllerPooling) {
+        this.controllerPooling = controllerPooling;
+        return this;
+    }
+
+    @Override
+    public XmlProcessorBuilder<T> setExecutionStatePooling(boolean executionStatePooling) {
+        this.executionStatePooling = executionStatePooling;
+        return this;
+    }
+
+    @Override
+    public XmlProcessorBuilder<T> setCompression(Compression compression) {
+        this.compression = requireNonNull(compression);
+        return this;
+    }
+
     @Override
     public XmlProcessor<T> buildXmlProcessor() {
         if (eventHandlers.isEmpty()) {
@@ -248,7 +376,38 @@ final class StaxBasedXmlProcessorBuilder<T> implements XmlProcessorBuilder<T> {
             throw new IllegalStateException("Cannot build an XmlProcessor. When using namespaces, " +
                     "all controllers must use namespaces.");
         }
-        return new StaxBasedXmlProcessor<>(resultClass, controllerProviders, eventHandlers, parsers, getXmlInputFactory());
+        return new StaxBasedXmlProcessor<>(resultClass, createControllerProviders(), eventHandlers, parsers, resultSinks,
+                createXmlCursorFactory(), new TokenizerCursor.Factory(controllersWithNamespaces > 0), symbolTable.copy(),
+                skipUnknownSubtrees, stopAtFirstResult, executionStatePooling, compression);
+    }
+
+    /**
+     * @return The controller providers, in slot order; the providers of controller classes are pooled if so
+     * configured. Each call creates new pools, so that processors don't share them.
+     */
+    private List<ControllerProvider> createControllerProviders() {
+        final List<ControllerProvider> providers = new ArrayList<>(controllerProviders.size());
+        for (ControllerProvider provider : controllerProviders.values()) {
+            if (controllerPooling && provider instanceof ClassInstantiationControllerProvider) {
+                providers.add(new PooledControllerProvider(provider));
+            } else {
+                providers.add(provider);
+            }
+        }
+        return providers;
+    }
+
+    private XmlCursorFactory createXmlCursorFactory() {
+        switch (engine) {
+            case EVENT_READER:
+                return new EventReaderCursor.Factory(getXmlInputFactory());
+            case STREAM_READER:
+                return new StreamReaderCursor.Factory(getXmlInputFactory());
+            case TOKENIZER:
+                return new TokenizerCursor.Factory(controllersWithNamespaces > 0);
+            default:
+                throw new IllegalStateException("Unsupported engine: " + engine);
+        }
     }
 
     private XMLInputFactory getXmlInputFactory() {
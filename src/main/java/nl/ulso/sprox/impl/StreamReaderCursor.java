@@ -0,0 +1,119 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+
+import static javax.xml.XMLConstants.NULL_NS_URI;
+
+/**
+ * Cursor on top of the StAX cursor API, an {@link XMLStreamReader}. It delegates straight to the reader; it doesn't
+ * create any objects of its own.
+ *
+ * @see nl.ulso.sprox.Engine#STREAM_READER
+ */
+final class StreamReaderCursor implements XmlCursor {
+    private static final int UNRESOLVED = -2;
+
+    private final XMLStreamReader reader;
+    private final SymbolTable symbolTable;
+    private int symbol;
+
+    StreamReaderCursor(XMLStreamReader reader, SymbolTable symbolTable) {
+        this.reader = reader;
+        this.symbolTable = symbolTable;
+        this.symbol = UNRESOLVED;
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return reader.hasNext();
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        symbol = UNRESOLVED;
+        return reader.next();
+    }
+
+    @Override
+    public int getEventType() {
+        return reader.getEventType();
+    }
+
+    @Override
+    public String getLocalName() {
+        return reader.getLocalName();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        final String namespaceURI = reader.getNamespaceURI();
+        return namespaceURI != null ? namespaceURI : NULL_NS_URI;
+    }
+
+    @Override
+    public int getSymbol() {
+        if (symbol == UNRESOLVED) {
+            symbol = symbolTable.lookup(getNamespaceURI(), reader.getLocalName());
+        }
+        return symbol;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return reader.getAttributeCount();
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        final String namespaceURI = reader.getAttributeNamespace(index);
+        return namespaceURI != null ? namespaceURI : NULL_NS_URI;
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    @Override
+    public String getText() {
+        return reader.getText();
+    }
+
+    @Override
+    public Location getLocation() {
+        return reader.getLocation();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+
+    static final class Factory implements XmlCursorFactory {
+        private final XMLInputFactory inputFactory;
+
+        Factory(XMLInputFactory inputFactory) {
+            this.inputFactory = inputFactory;
+        }
+
+        @Override
+        public XmlCursor createCursor(Reader reader, SymbolTable symbolTable) throws XMLStreamException {
+            return new StreamReaderCursor(inputFactory.createXMLStreamReader(reader), symbolTable);
+        }
+
+        @Override
+        public XmlCursor createCursor(InputStream inputStream, SymbolTable symbolTable) throws XMLStreamException {
+            return new StreamReaderCursor(inputFactory.createXMLStreamReader(inputStream), symbolTable);
+        }
+    }
+}
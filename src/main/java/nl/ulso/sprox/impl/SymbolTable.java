@@ -0,0 +1,129 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the names of all elements known to the controllers of a processor to small integers: symbols.
+ * <p>
+ * Element names are turned into symbols when controllers are added to a builder. During processing, the name of each
+ * element in the document is looked up once, by the {@link XmlCursor}; from then on, names are compared as integers.
+ * Elements with a name that isn't known get {@link #UNKNOWN}. Symbols are numbered from 0, so they can be used as
+ * indexes in arrays.
+ * </p>
+ * <p>
+ * Names are looked up on their local name first, and on their namespace second. StAX parsers typically intern the
+ * names they report, in which case comparing the strings takes a reference comparison only.
+ * </p>
+ * <p>
+ * A symbol table only ever grows. The builder keeps one, and passes each processor it builds a copy. All symbols in
+ * a processor therefore stay valid, even if more controllers are added to the builder afterwards.
+ * </p>
+ */
+final class SymbolTable {
+    static final int UNKNOWN = -1;
+
+    /*
+     * Key: local name of an element
+     * Value: the symbols with that local name, one for each namespace
+     */
+    private final Map<String, Symbol> symbols;
+    /*
+     * Index: symbol
+     * Value: name of the element
+     */
+    private final List<QName> names;
+
+    SymbolTable() {
+        this.symbols = new HashMap<>();
+        this.names = new ArrayList<>();
+    }
+
+    private SymbolTable(SymbolTable symbolTable) {
+        this.symbols = new HashMap<>(symbolTable.symbols);
+        this.names = new ArrayList<>(symbolTable.names);
+    }
+
+    /**
+     * @return A copy of this symbol table, that is not affected by symbols added to this one later.
+     */
+    SymbolTable copy() {
+        return new SymbolTable(this);
+    }
+
+    /**
+     * Returns the symbol for an element name, adding it to the table if it isn't known yet.
+     *
+     * @param name Name of the element.
+     * @return The symbol for the name.
+     */
+    int add(QName name) {
+        final int symbol = lookup(name.getNamespaceURI(), name.getLocalPart());
+        if (symbol != UNKNOWN) {
+            return symbol;
+        }
+        final int newSymbol = names.size();
+        names.add(name);
+        symbols.put(name.getLocalPart(),
+                new Symbol(name.getNamespaceURI(), newSymbol, symbols.get(name.getLocalPart())));
+        return newSymbol;
+    }
+
+    /**
+     * @param namespaceURI Namespace URI of the element; never {@code null}.
+     * @param localName    Local name of the element.
+     * @return The symbol for the name, or {@link #UNKNOWN} if the name is not in this table.
+     */
+    int lookup(String namespaceURI, String localName) {
+        Symbol symbol = symbols.get(localName);
+        while (symbol != null) {
+            if (symbol.namespaceURI.equals(namespaceURI)) {
+                return symbol.id;
+            }
+            symbol = symbol.next;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @param name Name of the element.
+     * @return The symbol for the name, or {@link #UNKNOWN} if the name is not in this table.
+     */
+    int lookup(QName name) {
+        return lookup(name.getNamespaceURI(), name.getLocalPart());
+    }
+
+    /**
+     * @param symbol A symbol in this table.
+     * @return The name of the element.
+     */
+    QName getName(int symbol) {
+        return names.get(symbol);
+    }
+
+    /**
+     * @return The number of symbols in this table.
+     */
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * A symbol for an element name, linked to the other symbols with the same local name. Symbols are immutable, so
+     * that copies of the table can share them.
+     */
+    private static final class Symbol {
+        private final String namespaceURI;
+        private final int id;
+        private final Symbol next;
+
+        private Symbol(String namespaceURI, int id, Symbol next) {
+            this.namespaceURI = namespaceURI;
+            this.id = id;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,1058 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.xml.XMLConstants.*;
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Cursor on top of Sprox's own XML tokenizer, that reads UTF-8 encoded bytes directly from a {@link TokenizerInput}.
+ * <p>
+ * The tokenizer supports the subset of XML that Sprox processes by default, with the same settings: it is
+ * non-validating, it coalesces text and CDATA sections into a single characters event, it replaces the predefined
+ * entities and character references, and it doesn't support DTDs: a document type declaration is skipped, and
+ * external entities are never read. Namespaces are processed only if the controllers use them.
+ * </p>
+ * <p>
+ * The tokenizer doesn't create any objects while going through a document, apart from the names it hasn't seen before
+ * - see {@link NameTable} - and the strings that are actually requested. For each event it keeps the offsets of the
+ * text and attribute values in the buffer, and decodes them only when asked to. Whatever a controller doesn't bind is
+ * never turned into a string.
+ * </p>
+ * <p>
+ * Tokens are scanned from their first byte. When the tokenizer reaches the end of the buffer in the middle of a token,
+ * it asks the input to fill the buffer, keeping the token, and starts scanning the token all over again. That happens
+ * only once per buffer, and keeps all offsets within a token valid without any bookkeeping.
+ * </p>
+ * <p>
+ * The same mechanism allows the tokenizer to work on input that is fed in parts. If the input is out of bytes but not
+ * complete, the tokenizer returns {@link XmlCursor#INCOMPLETE}. The next call to {@link #next()} scans the token from
+ * its first byte again, once more bytes have been fed.
+ * </p>
+ * <p>
+ * The tokenizer checks that documents are well-formed as far as the structure is concerned: elements must nest
+ * properly, and there must be exactly one root element. It doesn't check that names consist of valid characters only,
+ * nor that attributes are unique.
+ * </p>
+ *
+ * @see nl.ulso.sprox.Engine#TOKENIZER
+ */
+final class TokenizerCursor implements XmlCursor {
+    private static final int INITIAL_DEPTH = 16;
+    private static final int INITIAL_ATTRIBUTE_COUNT = 8;
+    private static final int MAX_REUSED_NAMES = 1024;
+    private static final boolean[] NAME_END = createTable(" \t\n\r/>=<?\"'");
+    private static final boolean[] TEXT_SPECIAL = createTable("<&\r");
+    private static final boolean[] ATTRIBUTE_SPECIAL = createTable("<&\t\n\r\"'");
+    private static final Restart RESTART = new Restart();
+    private static final Restart INCOMPLETE_INPUT = new Restart();
+
+    private final TokenizerInput input;
+    private final SymbolTable symbolTable;
+    private final boolean namespaceAware;
+    private NameTable nameTable;
+
+    // The bytes; position is the start of the next token. The array is the buffer's, if it has one.
+    private ByteBuffer buffer;
+    private byte[] array;
+    private int arrayOffset;
+    private int limit;
+    private int position;
+    private NameTable.Name scannedName;
+
+    // Location of the current event, with the lines counted up to it
+    private int eventStart;
+    private long bufferOffset;
+    private long countedOffset;
+    private long lineOffset;
+    private int lineCount;
+
+    // Current event
+    private int eventType;
+    private boolean emptyElement;
+    private boolean popElement;
+    private boolean rootClosed;
+    private int textStart;
+    private int textEnd;
+    private boolean textEncoded;
+    private String text;
+
+    // Elements, indexed by depth
+    private int depth;
+    private NameTable.Name[] elementNames;
+    private String[] elementNamespaceURIs;
+    private int[] namespaceCounts;
+
+    // Namespace declarations in scope, innermost last
+    private int namespaceCount;
+    private String[] namespacePrefixes;
+    private String[] namespaceURIs;
+
+    // Attributes of the current start element
+    private int attributeCount;
+    private NameTable.Name[] attributeNames;
+    private String[] attributeNamespaceURIs;
+    private int[] valueStarts;
+    private int[] valueEnds;
+    private boolean[] valuesEncoded;
+    private String[] values;
+
+    // Decoding of encoded text
+    private char[] chars;
+    private int codePoint;
+
+    TokenizerCursor(TokenizerInput input, SymbolTable symbolTable, boolean namespaceAware) {
+        this.input = input;
+        this.symbolTable = symbolTable;
+        this.namespaceAware = namespaceAware;
+        this.nameTable = new NameTable();
+        setBuffer(input.getBuffer(), input.getLimit());
+        this.position = 0;
+        this.eventType = START_DOCUMENT;
+        this.elementNames = new NameTable.Name[INITIAL_DEPTH];
+        this.elementNamespaceURIs = new String[INITIAL_DEPTH];
+        this.namespaceCounts = new int[INITIAL_DEPTH];
+        this.namespacePrefixes = new String[INITIAL_DEPTH];
+        this.namespaceURIs = new String[INITIAL_DEPTH];
+        this.attributeNames = new NameTable.Name[INITIAL_ATTRIBUTE_COUNT];
+        this.attributeNamespaceURIs = new String[INITIAL_ATTRIBUTE_COUNT];
+        this.valueStarts = new int[INITIAL_ATTRIBUTE_COUNT];
+        this.valueEnds = new int[INITIAL_ATTRIBUTE_COUNT];
+        this.valuesEncoded = new boolean[INITIAL_ATTRIBUTE_COUNT];
+        this.values = new String[INITIAL_ATTRIBUTE_COUNT];
+        this.chars = new char[0];
+    }
+
+    @Override
+    public boolean hasNext() {
+        return eventType != END_DOCUMENT;
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (eventType == END_DOCUMENT) {
+            throw new IllegalStateException("There are no more events in the document.");
+        }
+        text = null;
+        if (emptyElement) {
+            emptyElement = false;
+            popElement = true;
+            eventType = END_ELEMENT;
+            return eventType;
+        }
+        if (popElement) {
+            popElement();
+        }
+        while (true) {
+            try {
+                eventType = nextEvent();
+                return eventType;
+            } catch (Restart restart) {
+                if (restart == INCOMPLETE_INPUT) {
+                    eventType = INCOMPLETE;
+                    return eventType;
+                }
+                // The buffer was filled; scan the event again, from its first byte.
+            }
+        }
+    }
+
+    private void popElement() {
+        namespaceCount = namespaceCounts[depth];
+        depth--;
+        rootClosed = depth == 0;
+        popElement = false;
+    }
+
+    private int nextEvent() throws XMLStreamException {
+        while (true) {
+            eventStart = position;
+            if (position == limit && !fill()) {
+                return endDocument();
+            }
+            final byte first = byteAt(position);
+            if (first != '<') {
+                if (depth > 0) {
+                    return scanText(position);
+                }
+                if (!isWhitespace(first)) {
+                    throw error(rootClosed
+                            ? "Content is not allowed after the root element."
+                            : "Content is not allowed before the root element.");
+                }
+                position++;
+                continue;
+            }
+            final byte second = byteAt(position + 1);
+            if (second == '/') {
+                return scanEndTag();
+            }
+            if (second == '?') {
+                if (scanProcessingInstruction()) {
+                    return PROCESSING_INSTRUCTION;
+                }
+                continue;
+            }
+            if (second == '!') {
+                final byte third = byteAt(position + 2);
+                if (third == '-') {
+                    return scanComment();
+                }
+                if (third == '[' && depth > 0) {
+                    return scanText(position);
+                }
+                if (third == 'D' && depth == 0 && !rootClosed) {
+                    skipDocumentTypeDeclaration();
+                    continue;
+                }
+                throw error("The markup in the document is not well-formed.");
+            }
+            return scanStartTag();
+        }
+    }
+
+    private int endDocument() throws XMLStreamException {
+        if (depth > 0) {
+            throw error("The document ended before element \"" + elementNames[depth].getQualifiedName()
+                    + "\" was closed.");
+        }
+        if (!rootClosed) {
+            throw error("The document has no root element.");
+        }
+        return END_DOCUMENT;
+    }
+
+    private int scanStartTag() throws XMLStreamException {
+        int p = scanName(position + 1);
+        final NameTable.Name name = scannedName;
+        int count = 0;
+        final boolean empty;
+        while (true) {
+            final int whitespaceStart = p;
+            p = skipWhitespace(p);
+            final byte b = byteAt(p);
+            if (b == '>') {
+                p++;
+                empty = false;
+                break;
+            }
+            if (b == '/') {
+                if (byteAt(p + 1) != '>') {
+                    throw error("Element \"" + name.getQualifiedName() + "\" must be followed by \"/>\".");
+                }
+                p += 2;
+                empty = true;
+                break;
+            }
+            if (p == whitespaceStart) {
+                throw error("Element \"" + name.getQualifiedName()
+                        + "\" must be followed by attribute specifications, \">\" or \"/>\".");
+            }
+            p = scanName(p);
+            ensureAttributeCapacity(count + 1);
+            attributeNames[count] = scannedName;
+            p = skipWhitespace(p);
+            if (byteAt(p) != '=') {
+                throw error("Attribute \"" + scannedName.getQualifiedName() + "\" must be followed by \"=\".");
+            }
+            p = skipWhitespace(p + 1);
+            final byte quote = byteAt(p);
+            if (quote != '"' && quote != '\'') {
+                throw error("The value of attribute \"" + scannedName.getQualifiedName() + "\" must be quoted.");
+            }
+            p = scanAttributeValue(p + 1, quote, count);
+            count++;
+        }
+        position = p;
+        startElement(name, count, empty);
+        return START_ELEMENT;
+    }
+
+    private int scanAttributeValue(int start, byte quote, int index) throws XMLStreamException {
+        int p = start;
+        boolean encoded = false;
+        while (true) {
+            p = skip(p, ATTRIBUTE_SPECIAL);
+            final byte b = byteAt(p);
+            if (b == quote) {
+                break;
+            }
+            if (b == '<') {
+                throw error("The value of an attribute must not contain \"<\".");
+            }
+            if (b == '&') {
+                p = scanReference(p);
+                encoded = true;
+            } else if (b == '\t' || b == '\n' || b == '\r') {
+                encoded = true;
+            }
+            p++;
+        }
+        valueStarts[index] = start;
+        valueEnds[index] = p;
+        valuesEncoded[index] = encoded;
+        return p + 1;
+    }
+
+    private void startElement(NameTable.Name name, int count, boolean empty) throws XMLStreamException {
+        if (depth == 0 && rootClosed) {
+            throw error("A document must have a single root element.");
+        }
+        depth++;
+        ensureDepthCapacity();
+        elementNames[depth] = name;
+        namespaceCounts[depth] = namespaceCount;
+        attributeCount = count;
+        if (namespaceAware) {
+            declareNamespaces();
+            elementNamespaceURIs[depth] = resolveNamespace(name.getPrefix());
+            for (int i = 0; i < attributeCount; i++) {
+                final String prefix = attributeNames[i].getPrefix();
+                attributeNamespaceURIs[i] = prefix != null ? resolveNamespace(prefix) : NULL_NS_URI;
+            }
+        } else {
+            elementNamespaceURIs[depth] = NULL_NS_URI;
+            Arrays.fill(attributeNamespaceURIs, 0, attributeCount, NULL_NS_URI);
+        }
+        Arrays.fill(values, 0, attributeCount, null);
+        emptyElement = empty;
+    }
+
+    /**
+     * Declares the namespaces in the attributes of the current start element, and removes those attributes. All
+     * strings in names are interned, so they can be compared by reference.
+     */
+    private void declareNamespaces() {
+        int kept = 0;
+        for (int i = 0; i < attributeCount; i++) {
+            final NameTable.Name name = attributeNames[i];
+            if (name.getQualifiedName() == XMLNS_ATTRIBUTE) {
+                declareNamespace(null, decodeAttributeValue(i));
+            } else if (name.getPrefix() == XMLNS_ATTRIBUTE) {
+                declareNamespace(name.getLocalName(), decodeAttributeValue(i));
+            } else {
+                attributeNames[kept] = name;
+                valueStarts[kept] = valueStarts[i];
+                valueEnds[kept] = valueEnds[i];
+                valuesEncoded[kept] = valuesEncoded[i];
+                kept++;
+            }
+        }
+        attributeCount = kept;
+    }
+
+    private void declareNamespace(String prefix, String namespaceURI) {
+        if (namespaceCount == namespacePrefixes.length) {
+            namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+            namespaceURIs = Arrays.copyOf(namespaceURIs, namespaceCount * 2);
+        }
+        namespacePrefixes[namespaceCount] = prefix;
+        namespaceURIs[namespaceCount] = namespaceURI.intern();
+        namespaceCount++;
+    }
+
+    private String resolveNamespace(String prefix) throws XMLStreamException {
+        for (int i = namespaceCount - 1; i >= 0; i--) {
+            if (namespacePrefixes[i] == prefix) {
+                return namespaceURIs[i];
+            }
+        }
+        if (prefix == null) {
+            return NULL_NS_URI;
+        }
+        if (prefix == XML_NS_PREFIX) {
+            return XML_NS_URI;
+        }
+        throw error("The prefix \"" + prefix + "\" is not bound.");
+    }
+
+    private int scanEndTag() throws XMLStreamException {
+        final int p = skipWhitespace(scanName(position + 2));
+        if (byteAt(p) != '>') {
+            throw error("End tag \"" + scannedName.getQualifiedName() + "\" must end with \">\".");
+        }
+        if (depth == 0) {
+            throw error("End tag \"" + scannedName.getQualifiedName() + "\" has no matching start tag.");
+        }
+        if (elementNames[depth] != scannedName) {
+            final String expected = elementNames[depth].getQualifiedName();
+            throw error("The element type \"" + expected + "\" must be terminated by the matching end tag \"</"
+                    + expected + ">\".");
+        }
+        position = p + 1;
+        popElement = true;
+        return END_ELEMENT;
+    }
+
+    /**
+     * Scans text up to the next markup, other than a CDATA section.
+     */
+    private int scanText(int start) throws XMLStreamException {
+        int p = start;
+        boolean encoded = false;
+        while (true) {
+            p = skip(p, TEXT_SPECIAL);
+            final byte b = byteAt(p);
+            if (b == '<') {
+                if (byteAt(p + 1) != '!' || byteAt(p + 2) != '[') {
+                    break;
+                }
+                p = skipCdataSection(p);
+                encoded = true;
+                continue;
+            }
+            if (b == '&') {
+                p = scanReference(p);
+                encoded = true;
+            } else if (b == '\r') {
+                encoded = true;
+            }
+            p++;
+        }
+        textStart = start;
+        textEnd = p;
+        textEncoded = encoded;
+        position = p;
+        return CHARACTERS;
+    }
+
+    private int skipCdataSection(int start) throws XMLStreamException {
+        expect(start, "<![CDATA[");
+        return indexOf(start + 9, "]]>") + 3;
+    }
+
+    /**
+     * Checks that the reference at {@code start} is a character reference or a reference to one of the predefined
+     * entities.
+     *
+     * @return The index of the semicolon that ends the reference.
+     */
+    private int scanReference(int start) throws XMLStreamException {
+        int p = start + 1;
+        if (byteAt(p) == '#') {
+            p++;
+            final boolean hexadecimal = byteAt(p) == 'x';
+            if (hexadecimal) {
+                p++;
+            }
+            final int digitStart = p;
+            int codePoint = 0;
+            byte b = byteAt(p);
+            while (b != ';') {
+                final int digit = Character.digit(b, hexadecimal ? 16 : 10);
+                if (digit == -1 || codePoint > Character.MAX_CODE_POINT) {
+                    throw error("Invalid character reference.");
+                }
+                codePoint = codePoint * (hexadecimal ? 16 : 10) + digit;
+                b = byteAt(++p);
+            }
+            if (p == digitStart || codePoint == 0 || codePoint > Character.MAX_CODE_POINT) {
+                throw error("Invalid character reference.");
+            }
+            return p;
+        }
+        byte b = byteAt(p);
+        while (b != ';') {
+            if (b >= 0 && NAME_END[b] || b == '&') {
+                throw error("The reference to an entity must end with the \";\" delimiter.");
+            }
+            b = byteAt(++p);
+        }
+        if (predefinedEntity(start + 1, p) == -1) {
+            throw error("The entity \"" + decode(start + 1, p) + "\" was referenced, but not declared.");
+        }
+        return p;
+    }
+
+    private int predefinedEntity(int start, int end) {
+        switch (end - start) {
+            case 2:
+                if (buffer.get(start + 1) == 't') {
+                    if (buffer.get(start) == 'l') {
+                        return '<';
+                    }
+                    if (buffer.get(start) == 'g') {
+                        return '>';
+                    }
+                }
+                return -1;
+            case 3:
+                return matches(start, "amp") ? '&' : -1;
+            case 4:
+                if (matches(start, "quot")) {
+                    return '"';
+                }
+                return matches(start, "apos") ? '\'' : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private int scanComment() throws XMLStreamException {
+        expect(position, "<!--");
+        final int end = indexOf(position + 4, "-->");
+        textStart = position + 4;
+        textEnd = end;
+        position = end + 3;
+        return COMMENT;
+    }
+
+    /**
+     * Scans a processing instruction, or skips the XML declaration.
+     *
+     * @return {@code true} if a processing instruction was scanned, {@code false} if the XML declaration was skipped.
+     */
+    private boolean scanProcessingInstruction() throws XMLStreamException {
+        final int p = scanName(position + 2);
+        final int end = indexOf(p, "?>");
+        final boolean declaration = scannedName.getQualifiedName().equals("xml");
+        textStart = skipWhitespace(p);
+        textEnd = Math.max(textStart, end);
+        position = end + 2;
+        return !declaration;
+    }
+
+    /**
+     * Skips the document type declaration, including the internal subset. The declarations in it are ignored.
+     */
+    private void skipDocumentTypeDeclaration() throws XMLStreamException {
+        expect(position, "<!DOCTYPE");
+        int p = position + 9;
+        boolean internalSubset = false;
+        while (true) {
+            final byte b = byteAt(p);
+            if (b == '"' || b == '\'') {
+                p = indexOf(p + 1, b == '"' ? "\"" : "'");
+            } else if (b == '<' && internalSubset && byteAt(p + 1) == '!' && byteAt(p + 2) == '-') {
+                p = indexOf(p + 4, "-->") + 2;
+            } else if (b == '[') {
+                internalSubset = true;
+            } else if (b == ']') {
+                internalSubset = false;
+            } else if (b == '>' && !internalSubset) {
+                break;
+            }
+            p++;
+        }
+        position = p + 1;
+    }
+
+    private int scanName(int start) throws XMLStreamException {
+        int p = start;
+        int hash = 0;
+        byte b = byteAt(p);
+        while (b < 0 || !NAME_END[b]) {
+            hash = NameTable.hash(hash, b);
+            b = byteAt(++p);
+        }
+        if (p == start) {
+            throw error("A name was expected.");
+        }
+        scannedName = nameTable.lookup(buffer, start, p, hash);
+        return p;
+    }
+
+    private int skipWhitespace(int start) throws XMLStreamException {
+        int p = start;
+        while (isWhitespace(byteAt(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private void expect(int start, String expected) throws XMLStreamException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (byteAt(start + i) != expected.charAt(i)) {
+                throw error("The markup in the document is not well-formed; expected \"" + expected + "\".");
+            }
+        }
+    }
+
+    /**
+     * @return The index of the first occurrence of {@code delimiter} from {@code start}.
+     */
+    private int indexOf(int start, String delimiter) throws XMLStreamException {
+        final byte first = (byte) delimiter.charAt(0);
+        int p = start;
+        while (true) {
+            p = find(p, first);
+            if (byteAt(p) == first) {
+                int i = 1;
+                while (i < delimiter.length() && byteAt(p + i) == delimiter.charAt(i)) {
+                    i++;
+                }
+                if (i == delimiter.length()) {
+                    return p;
+                }
+            }
+            p++;
+        }
+    }
+
+    private boolean matches(int start, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer.get(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte byteAt(int index) throws XMLStreamException {
+        if (index >= limit) {
+            if (fill()) {
+                throw RESTART;
+            }
+            throw error("The document ended unexpectedly.");
+        }
+        return array != null ? array[arrayOffset + index] : buffer.get(index);
+    }
+
+    /**
+     * @return The index of the first occurrence of {@code b} from {@code start}, or the limit.
+     */
+    private int find(int start, byte b) {
+        int p = start;
+        if (array != null) {
+            final byte[] bytes = array;
+            final int offset = arrayOffset;
+            while (p < limit && bytes[offset + p] != b) {
+                p++;
+            }
+        } else {
+            while (p < limit && buffer.get(p) != b) {
+                p++;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Skips all bytes that are not special, up to the limit. This is the innermost loop of the tokenizer.
+     *
+     * @return The index of the first special byte, or the limit.
+     */
+    private int skip(int start, boolean[] special) {
+        int p = start;
+        if (array != null) {
+            final byte[] bytes = array;
+            final int offset = arrayOffset;
+            while (p < limit) {
+                final byte b = bytes[offset + p];
+                if (b >= 0 && special[b]) {
+                    break;
+                }
+                p++;
+            }
+        } else {
+            while (p < limit) {
+                final byte b = buffer.get(p);
+                if (b >= 0 && special[b]) {
+                    break;
+                }
+                p++;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Fills the buffer, keeping all bytes from the start of the current token on.
+     *
+     * @throws Restart If the input is not complete, but has no more bytes available yet.
+     */
+    private boolean fill() throws XMLStreamException {
+        countLines(position);
+        try {
+            final boolean filled = input.fill(position);
+            setBuffer(input.getBuffer(), input.getLimit());
+            bufferOffset += position;
+            eventStart -= position;
+            position = 0;
+            if (!filled && !input.isComplete()) {
+                throw INCOMPLETE_INPUT;
+            }
+            return filled;
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void setBuffer(ByteBuffer buffer, int limit) {
+        this.buffer = buffer;
+        this.array = buffer.hasArray() ? buffer.array() : null;
+        this.arrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        this.limit = limit;
+    }
+
+    private void ensureDepthCapacity() {
+        if (depth == elementNames.length) {
+            elementNames = Arrays.copyOf(elementNames, depth * 2);
+            elementNamespaceURIs = Arrays.copyOf(elementNamespaceURIs, depth * 2);
+            namespaceCounts = Arrays.copyOf(namespaceCounts, depth * 2);
+        }
+    }
+
+    private void ensureAttributeCapacity(int count) {
+        if (count > attributeNames.length) {
+            final int capacity = attributeNames.length * 2;
+            attributeNames = Arrays.copyOf(attributeNames, capacity);
+            attributeNamespaceURIs = Arrays.copyOf(attributeNamespaceURIs, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+            valuesEncoded = Arrays.copyOf(valuesEncoded, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public String getLocalName() {
+        final NameTable.Name name = elementNames[depth];
+        return namespaceAware ? name.getLocalName() : name.getQualifiedName();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return elementNamespaceURIs[depth];
+    }
+
+    @Override
+    public int getSymbol() {
+        return elementNames[depth].getSymbol(symbolTable, elementNamespaceURIs[depth], getLocalName());
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        final NameTable.Name name = attributeNames[index];
+        return namespaceAware ? name.getLocalName() : name.getQualifiedName();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributeNamespaceURIs[index];
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        String value = values[index];
+        if (value == null) {
+            value = decodeAttributeValue(index);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private String decodeAttributeValue(int index) {
+        return valuesEncoded[index]
+                ? decodeEncoded(valueStarts[index], valueEnds[index], true)
+                : decode(valueStarts[index], valueEnds[index]);
+    }
+
+    @Override
+    public String getText() {
+        if (text == null) {
+            switch (eventType) {
+                case CHARACTERS:
+                    text = textEncoded ? decodeEncoded(textStart, textEnd, false) : decode(textStart, textEnd);
+                    break;
+                case COMMENT:
+                case PROCESSING_INSTRUCTION:
+                    text = decode(textStart, textEnd).replace("\r\n", "\n").replace('\r', '\n');
+                    break;
+                default:
+                    throw new IllegalStateException("There is no text for event type: " + eventType);
+            }
+        }
+        return text;
+    }
+
+    private String decode(int start, int end) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, UTF_8);
+        }
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(start);
+        duplicate.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Decodes text with references, CDATA sections or carriage returns in it, straight into a reusable array of
+     * characters. Line ends are normalized to a single line feed, or to a space in attribute values, together with tabs
+     * and line feeds. The decoded text never has more characters than the encoded text has bytes.
+     */
+    private String decodeEncoded(int start, int end, boolean attribute) {
+        if (chars.length < end - start) {
+            chars = new char[Math.max(end - start, chars.length * 2)];
+        }
+        int length = 0;
+        int p = start;
+        boolean cdataSection = false;
+        while (p < end) {
+            final byte b = buffer.get(p);
+            if (b < 0) {
+                p = decodeCodePoint(p, end);
+                length += Character.toChars(codePoint, chars, length);
+                continue;
+            }
+            if (cdataSection) {
+                if (b == ']' && matches(p, "]]>")) {
+                    p += 3;
+                    cdataSection = false;
+                    continue;
+                }
+            } else if (b == '<') {
+                p += 9;
+                cdataSection = true;
+                continue;
+            } else if (b == '&') {
+                p = decodeReference(p);
+                length += Character.toChars(codePoint, chars, length);
+                continue;
+            } else if (attribute && (b == '\t' || b == '\n')) {
+                chars[length++] = ' ';
+                p++;
+                continue;
+            }
+            if (b == '\r') {
+                chars[length++] = attribute ? ' ' : '\n';
+                p++;
+                if (p < end && buffer.get(p) == '\n') {
+                    p++;
+                }
+                continue;
+            }
+            chars[length++] = (char) b;
+            p++;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Decodes the multi-byte UTF-8 sequence at {@code start} into {@link #codePoint}. A malformed sequence is decoded
+     * into the replacement character, one byte at a time.
+     *
+     * @return The index of the first byte after the sequence.
+     */
+    private int decodeCodePoint(int start, int end) {
+        final int lead = buffer.get(start) & 0xFF;
+        final int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        int value = lead & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            final int b = start + i < end ? buffer.get(start + i) & 0xFF : 0;
+            if ((b & 0xC0) != 0x80) {
+                codePoint = 0xFFFD;
+                return start + 1;
+            }
+            value = (value << 6) | (b & 0x3F);
+        }
+        codePoint = length > 1 && value <= Character.MAX_CODE_POINT ? value : 0xFFFD;
+        return start + length;
+    }
+
+    /**
+     * Decodes the reference at {@code start}, already checked by {@link #scanReference(int)}, into
+     * {@link #codePoint}.
+     *
+     * @return The index of the first byte after the reference.
+     */
+    private int decodeReference(int start) {
+        int p = start + 1;
+        if (buffer.get(p) == '#') {
+            p++;
+            final int radix = buffer.get(p) == 'x' ? 16 : 10;
+            if (radix == 16) {
+                p++;
+            }
+            int value = 0;
+            while (buffer.get(p) != ';') {
+                value = value * radix + Character.digit(buffer.get(p), radix);
+                p++;
+            }
+            codePoint = value;
+            return p + 1;
+        }
+        while (buffer.get(p) != ';') {
+            p++;
+        }
+        codePoint = predefinedEntity(start + 1, p);
+        return p + 1;
+    }
+
+    @Override
+    public Location getLocation() {
+        countLines(eventStart);
+        final long offset = bufferOffset + eventStart;
+        return new TokenizerLocation(lineCount + 1, (int) (offset - lineOffset) + 1, (int) offset);
+    }
+
+    /**
+     * Counts the lines up to the index in the buffer, from where it left off the last time.
+     */
+    private void countLines(int end) {
+        final int start = (int) Math.max(0, countedOffset - bufferOffset);
+        int lastLineFeed = -1;
+        for (int p = start; p < end; p++) {
+            if ((array != null ? array[arrayOffset + p] : buffer.get(p)) == '\n') {
+                lineCount++;
+                lastLineFeed = p;
+            }
+        }
+        if (lastLineFeed != -1) {
+            lineOffset = bufferOffset + lastLineFeed + 1;
+        }
+        countedOffset = Math.max(countedOffset, bufferOffset + end);
+    }
+
+    private XMLStreamException error(String message) {
+        return new XMLStreamException(message, getLocation());
+    }
+
+    @Override
+    public void close() {
+        eventType = END_DOCUMENT;
+    }
+
+    /**
+     * Takes over the name table of a tokenizer cursor on an earlier document, so that the names in it don't need to be
+     * decoded and interned again. A name table that has grown large is left behind, so that a processor that keeps
+     * seeing new names doesn't hold on to all of them.
+     */
+    @Override
+    public void reuse(XmlCursor previous) {
+        if (previous instanceof TokenizerCursor) {
+            final TokenizerCursor cursor = (TokenizerCursor) previous;
+            if (cursor.symbolTable == symbolTable && cursor.namespaceAware == namespaceAware
+                    && cursor.nameTable.size() <= MAX_REUSED_NAMES) {
+                nameTable = cursor.nameTable;
+            }
+        }
+    }
+
+    static final class Factory implements XmlCursorFactory {
+        private final boolean namespaceAware;
+
+        Factory(boolean namespaceAware) {
+            this.namespaceAware = namespaceAware;
+        }
+
+        XmlCursor createCursor(TokenizerInput input, SymbolTable symbolTable) {
+            return new TokenizerCursor(input, symbolTable, namespaceAware);
+        }
+
+        @Override
+        public XmlCursor createCursor(Reader reader, SymbolTable symbolTable) {
+            return new TokenizerCursor(TokenizerInput.of(reader), symbolTable, namespaceAware);
+        }
+
+        @Override
+        public XmlCursor createCursor(InputStream inputStream, SymbolTable symbolTable) throws XMLStreamException {
+            try {
+                return new TokenizerCursor(TokenizerInput.of(inputStream), symbolTable, namespaceAware);
+            } catch (IOException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        @Override
+        public XmlCursor createCursor(ByteBuffer buffer, SymbolTable symbolTable) throws XMLStreamException {
+            try {
+                return new TokenizerCursor(TokenizerInput.of(buffer), symbolTable, namespaceAware);
+            } catch (IOException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        @Override
+        public XmlCursor createCursor(FileMapping mapping, SymbolTable symbolTable) throws XMLStreamException {
+            try {
+                return new TokenizerCursor(TokenizerInput.of(mapping), symbolTable, namespaceAware);
+            } catch (IOException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+    }
+
+    private static boolean[] createTable(String characters) {
+        final boolean[] table = new boolean[128];
+        for (char c : characters.toCharArray()) {
+            table[c] = true;
+        }
+        return table;
+    }
+
+    /**
+     * Signals that the buffer was filled in the middle of a token, and that the token must be scanned again.
+     */
+    private static final class Restart extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Restart() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class TokenizerLocation implements Location {
+        private final int lineNumber;
+        private final int columnNumber;
+        private final int characterOffset;
+
+        private TokenizerLocation(int lineNumber, int columnNumber, int characterOffset) {
+            this.lineNumber = lineNumber;
+            this.columnNumber = columnNumber;
+            this.characterOffset = characterOffset;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columnNumber;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return characterOffset;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "[row,col]:[" + lineNumber + "," + columnNumber + "]";
+        }
+    }
+}
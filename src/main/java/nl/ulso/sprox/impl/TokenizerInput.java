@@ -0,0 +1,559 @@
+package nl.ulso.sprox.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Source of UTF-8 encoded bytes for a {@link TokenizerCursor}.
+ * <p>
+ * An input hands out its bytes in a buffer. The tokenizer reads the buffer with absolute gets, from index 0 up to the
+ * limit. When it runs out of bytes, it asks the input to fill the buffer. All bytes from the start of the token the
+ * tokenizer is working on are kept; the bytes before it are discarded. The kept bytes are moved to the start of the
+ * buffer, which grows if they fill it completely.
+ * </p>
+ * <p>
+ * An input that reads characters encodes them to UTF-8. The same goes for an input stream that declares an encoding
+ * other than UTF-8, or that starts with a UTF-16 byte order mark.
+ * </p>
+ * <p>
+ * An input on top of a buffer that holds a complete UTF-8 encoded document reads it in place. Its buffer is never
+ * filled; discarding bytes is a matter of slicing the buffer. An input on top of a {@link FileMapping} reads the file
+ * in place as well, through a window that moves over the file. No single token can be larger than the largest
+ * window: 2GB.
+ * </p>
+ * <p>
+ * A {@link FeedInput} is fed in parts. Bytes are read from the parts in place; only the bytes of a token that is not
+ * complete at the end of a part are copied, to be kept until the next part.
+ * </p>
+ */
+abstract class TokenizerInput {
+    static final int INITIAL_CAPACITY = 8192;
+    static final int WINDOW_SIZE = 1 << 30;
+
+    private static final int MAXIMUM_DECLARATION_LENGTH = 1024;
+    private static final int BYTE_ORDER_MARK_LENGTH = 3;
+    private static final byte[] DECLARATION_START = "<?xml".getBytes(US_ASCII);
+    private static final byte[] ENCODING = "encoding".getBytes(US_ASCII);
+
+    /**
+     * @return The buffer holding the bytes, from index 0 up to the limit.
+     */
+    abstract ByteBuffer getBuffer();
+
+    /**
+     * @return The number of bytes available in the buffer.
+     */
+    abstract int getLimit();
+
+    /**
+     * Discards all bytes before {@code start}, and reads more bytes, if there are any.
+     *
+     * @param start Index of the first byte in the buffer to keep. After the fill, this byte is at index 0.
+     * @return {@code true} if more bytes were read, {@code false} if the end of the input was reached.
+     * @throws IOException If the underlying source could not be read.
+     */
+    abstract boolean fill(int start) throws IOException;
+
+    /**
+     * @return {@code true} if no more bytes will become available once the input is filled completely; {@code false}
+     * if the input is fed in parts, and more parts may follow.
+     */
+    boolean isComplete() {
+        return true;
+    }
+
+    /**
+     * Creates an input on top of a stream of bytes. The encoding is detected from the byte order mark or the XML
+     * declaration; without either, the stream must be encoded in UTF-8.
+     *
+     * @param inputStream Stream to read from; it is not closed.
+     * @return Input for the stream.
+     * @throws IOException If the stream could not be read, or if its encoding is not supported.
+     */
+    static TokenizerInput of(InputStream inputStream) throws IOException {
+        final StreamInput input = new StreamInput(inputStream);
+        while (input.limit < MAXIMUM_DECLARATION_LENGTH && !containsDeclarationEnd(input.buffer, input.limit)
+                && input.fill(0)) {
+            // Keep reading until the XML declaration is complete, if there is one.
+        }
+        if (startsWithByteOrderMark(input.buffer, input.limit)) {
+            input.limit = input.compact(BYTE_ORDER_MARK_LENGTH);
+            return input;
+        }
+        final Charset charset = detectCharset(input.buffer, input.limit);
+        if (charset == null) {
+            return input;
+        }
+        return new ReaderInput(new InputStreamReader(new SequenceInputStream(
+                new ByteArrayInputStream(input.bytes, 0, input.limit), inputStream), charset));
+    }
+
+    /**
+     * Creates an input on top of a buffer holding a complete document, from its position up to its limit. The
+     * encoding is detected in the same way as for streams. The buffer itself is not changed.
+     *
+     * @param buffer Buffer to read from.
+     * @return Input for the buffer.
+     * @throws IOException If the encoding of the document is not supported.
+     */
+    static TokenizerInput of(ByteBuffer buffer) throws IOException {
+        final ByteBuffer bytes = buffer.slice();
+        if (startsWithByteOrderMark(bytes, bytes.limit())) {
+            bytes.position(BYTE_ORDER_MARK_LENGTH);
+            return new BufferInput(bytes.slice());
+        }
+        final Charset charset = detectCharset(bytes, bytes.limit());
+        if (charset == null) {
+            return new BufferInput(bytes);
+        }
+        return new ReaderInput(new InputStreamReader(new ByteBufferInputStream(bytes), charset));
+    }
+
+    /**
+     * Creates an input on top of a mapped file. The encoding is detected in the same way as for streams.
+     *
+     * @param mapping File to read from; it is not closed.
+     * @return Input for the file.
+     * @throws IOException If the file could not be mapped, or if its encoding is not supported.
+     */
+    static TokenizerInput of(FileMapping mapping) throws IOException {
+        final MappedInput input = new MappedInput(mapping);
+        if (startsWithByteOrderMark(input.buffer, input.getLimit())) {
+            input.fill(BYTE_ORDER_MARK_LENGTH);
+            return input;
+        }
+        final Charset charset = detectCharset(input.buffer, input.getLimit());
+        if (charset == null) {
+            return input;
+        }
+        return new ReaderInput(new InputStreamReader(mapping.newInputStream(), charset));
+    }
+
+    /**
+     * Detects the encoding of a mapped file in the same way as for streams, to read its bytes without an input.
+     *
+     * @param mapping File to detect the encoding of; it is not closed.
+     * @return Offset of the first byte after the byte order mark, if any, if the file is encoded in UTF-8; -1 if it's
+     * encoded otherwise.
+     * @throws IOException If the file could not be mapped, or if its encoding is not supported.
+     */
+    static int findUtf8Start(FileMapping mapping) throws IOException {
+        final ByteBuffer buffer = mapping.map(0, (int) Math.min(MAXIMUM_DECLARATION_LENGTH, mapping.size()));
+        if (startsWithByteOrderMark(buffer, buffer.limit())) {
+            return BYTE_ORDER_MARK_LENGTH;
+        }
+        return detectCharset(buffer, buffer.limit()) == null ? 0 : -1;
+    }
+
+    /**
+     * Creates an input on top of a stream of characters. Any encoding declared in the XML declaration is ignored.
+     *
+     * @param reader Reader to read from; it is not closed.
+     * @return Input for the reader.
+     */
+    static TokenizerInput of(Reader reader) {
+        return new ReaderInput(reader);
+    }
+
+    private static boolean containsDeclarationEnd(ByteBuffer buffer, int limit) {
+        if (limit < DECLARATION_START.length) {
+            return false;
+        }
+        if (!startsWith(buffer, limit, DECLARATION_START, 0)) {
+            return true;
+        }
+        return indexOf(buffer, limit, '?', '>') != -1;
+    }
+
+    private static boolean startsWithByteOrderMark(ByteBuffer buffer, int limit) {
+        return limit >= BYTE_ORDER_MARK_LENGTH && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF;
+    }
+
+    /**
+     * @return The charset to decode the bytes with, or {@code null} if they are encoded in UTF-8.
+     */
+    private static Charset detectCharset(ByteBuffer buffer, int limit) throws IOException {
+        final int first = limit >= 1 ? buffer.get(0) & 0xFF : -1;
+        final int second = limit >= 2 ? buffer.get(1) & 0xFF : -1;
+        if (first == 0xFE && second == 0xFF || first == 0xFF && second == 0xFE) {
+            return StandardCharsets.UTF_16;
+        }
+        if (limit >= 4 && first == 0 && second == '<' && buffer.get(2) == 0 && buffer.get(3) == '?') {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (limit >= 4 && first == '<' && second == 0 && buffer.get(2) == '?' && buffer.get(3) == 0) {
+            return StandardCharsets.UTF_16LE;
+        }
+        final String encoding = findDeclaredEncoding(buffer, Math.min(limit, MAXIMUM_DECLARATION_LENGTH));
+        if (encoding == null || encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8")
+                || encoding.equalsIgnoreCase("US-ASCII") || encoding.equalsIgnoreCase("ASCII")) {
+            return null;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException("Unsupported encoding in XML declaration: " + encoding);
+        }
+    }
+
+    private static String findDeclaredEncoding(ByteBuffer buffer, int limit) {
+        if (!startsWith(buffer, limit, DECLARATION_START, 0)) {
+            return null;
+        }
+        final int end = indexOf(buffer, limit, '?', '>');
+        for (int i = DECLARATION_START.length; end != -1 && i < end; i++) {
+            if (!startsWith(buffer, limit, ENCODING, i)) {
+                continue;
+            }
+            int p = skipWhitespace(buffer, limit, i + ENCODING.length);
+            if (p >= end || buffer.get(p) != '=') {
+                return null;
+            }
+            p = skipWhitespace(buffer, limit, p + 1);
+            if (p >= end || buffer.get(p) != '"' && buffer.get(p) != '\'') {
+                return null;
+            }
+            final byte quote = buffer.get(p);
+            for (int q = p + 1; q < end; q++) {
+                if (buffer.get(q) == quote) {
+                    final byte[] name = new byte[q - p - 1];
+                    for (int j = 0; j < name.length; j++) {
+                        name[j] = buffer.get(p + 1 + j);
+                    }
+                    return new String(name, US_ASCII);
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int limit, byte[] prefix, int offset) {
+        if (offset + prefix.length > limit) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int limit, char first, char second) {
+        for (int i = 0; i < limit - 1; i++) {
+            if (buffer.get(i) == first && buffer.get(i + 1) == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int limit, int index) {
+        while (index < limit && (buffer.get(index) == ' ' || buffer.get(index) == '\t' || buffer.get(index) == '\n'
+                || buffer.get(index) == '\r')) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Input that reads bytes from an {@link InputStream} into a heap buffer.
+     */
+    private static final class StreamInput extends TokenizerInput {
+        private final InputStream inputStream;
+        private byte[] bytes;
+        private ByteBuffer buffer;
+        private int limit;
+
+        private StreamInput(InputStream inputStream) {
+            this.inputStream = inputStream;
+            this.bytes = new byte[INITIAL_CAPACITY];
+            this.buffer = ByteBuffer.wrap(bytes);
+            this.limit = 0;
+        }
+
+        @Override
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        int getLimit() {
+            return limit;
+        }
+
+        @Override
+        boolean fill(int start) throws IOException {
+            limit = compact(start);
+            final int count = inputStream.read(bytes, limit, bytes.length - limit);
+            if (count <= 0) {
+                return false;
+            }
+            limit += count;
+            return true;
+        }
+
+        private int compact(int start) {
+            final int remaining = limit - start;
+            if (start > 0) {
+                System.arraycopy(bytes, start, bytes, 0, remaining);
+            } else if (remaining == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            return remaining;
+        }
+    }
+
+    /**
+     * Input on top of a buffer that holds a complete document.
+     */
+    private static final class BufferInput extends TokenizerInput {
+        private ByteBuffer buffer;
+
+        private BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        int getLimit() {
+            return buffer.limit();
+        }
+
+        @Override
+        boolean fill(int start) {
+            buffer.position(start);
+            buffer = buffer.slice();
+            return false;
+        }
+    }
+
+    /**
+     * Input that reads a mapped file through a window. Filling the buffer moves the window to the first byte to keep.
+     * If the window is mostly filled with bytes to keep, it grows.
+     */
+    private static final class MappedInput extends TokenizerInput {
+        private final FileMapping mapping;
+        private long windowOffset;
+        private ByteBuffer buffer;
+
+        private MappedInput(FileMapping mapping) throws IOException {
+            this.mapping = mapping;
+            this.windowOffset = 0;
+            this.buffer = mapping.map(0, (int) Math.min(WINDOW_SIZE, mapping.size()));
+        }
+
+        @Override
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        int getLimit() {
+            return buffer.limit();
+        }
+
+        @Override
+        boolean fill(int start) throws IOException {
+            final long offset = windowOffset + start;
+            final int remaining = buffer.limit() - start;
+            windowOffset = offset;
+            if (offset + remaining == mapping.size()) {
+                buffer.position(start);
+                buffer = buffer.slice();
+                return false;
+            }
+            final long length = Math.min(Math.min(Math.max(WINDOW_SIZE, 2L * remaining), Integer.MAX_VALUE),
+                    mapping.size() - offset);
+            if (length <= remaining) {
+                throw new IOException("Token at offset " + offset + " is too large to map into memory");
+            }
+            buffer = mapping.map(offset, (int) length);
+            return true;
+        }
+    }
+
+    /**
+     * Input that is fed UTF-8 encoded bytes in parts, from a buffer at a time. A part is read in place, straight from the
+     * buffer it was fed in. When the tokenizer runs out of bytes in the middle of a token, the bytes of that token are
+     * copied into a buffer of the input's own, so that the part can be reused by the caller. The next part is added to
+     * those bytes.
+     * <p>
+     * Filling this input only ever adds the part that was fed last, if it hasn't been added yet. It is not complete
+     * until {@link #complete()} is called.
+     * </p>
+     */
+    static final class FeedInput extends TokenizerInput {
+        private byte[] pending;
+        private ByteBuffer buffer;
+        private ByteBuffer part;
+        private boolean complete;
+
+        FeedInput() {
+            this.pending = new byte[INITIAL_CAPACITY];
+            this.buffer = ByteBuffer.wrap(pending, 0, 0);
+            this.part = null;
+            this.complete = false;
+        }
+
+        /**
+         * Feeds the bytes in a buffer, from its position up to its limit, to this input. They must stay valid until
+         * the tokenizer runs out of bytes again.
+         */
+        void feed(ByteBuffer bytes) {
+            part = bytes.slice();
+        }
+
+        /**
+         * Marks the end of the input.
+         */
+        void complete() {
+            complete = true;
+        }
+
+        @Override
+        boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        int getLimit() {
+            return buffer.limit();
+        }
+
+        @Override
+        boolean fill(int start) {
+            final int remaining = buffer.limit() - start;
+            if (part == null) {
+                keep(start, remaining, 0);
+                return false;
+            }
+            if (remaining == 0) {
+                buffer = part;
+            } else {
+                keep(start, remaining, part.remaining());
+                part.get(pending, remaining, part.remaining());
+                buffer = ByteBuffer.wrap(pending, 0, remaining + part.limit());
+            }
+            part = null;
+            return true;
+        }
+
+        /**
+         * Copies the bytes to keep to the start of the pending bytes, making room for more.
+         */
+        private void keep(int start, int remaining, int more) {
+            if (remaining + more > pending.length) {
+                final byte[] bytes = new byte[Math.max(pending.length * 2, remaining + more)];
+                buffer.duplicate().position(start).get(bytes, 0, remaining);
+                pending = bytes;
+            } else if (start > 0 || !buffer.hasArray() || buffer.array() != pending) {
+                buffer.duplicate().position(start).get(pending, 0, remaining);
+            }
+            buffer = ByteBuffer.wrap(pending, 0, remaining);
+        }
+    }
+
+    /**
+     * Input that reads characters from a {@link Reader} and encodes them to UTF-8 into a heap buffer.
+     */
+    private static final class ReaderInput extends TokenizerInput {
+        private final Reader reader;
+        private final CharsetEncoder encoder;
+        private final CharBuffer chars;
+        private ByteBuffer buffer;
+        private int limit;
+        private boolean endOfInput;
+        private boolean flushed;
+
+        private ReaderInput(Reader reader) {
+            this.reader = reader;
+            this.encoder = UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.chars = CharBuffer.allocate(INITIAL_CAPACITY);
+            this.chars.flip();
+            this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+            this.limit = 0;
+            this.endOfInput = false;
+            this.flushed = false;
+        }
+
+        @Override
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        int getLimit() {
+            return limit;
+        }
+
+        @Override
+        boolean fill(int start) throws IOException {
+            compact(start);
+            if (flushed) {
+                return false;
+            }
+            buffer.position(limit);
+            try {
+                while (buffer.position() == limit && !flushed) {
+                    if (!endOfInput) {
+                        // Remaining characters, if any, are the first half of a surrogate pair.
+                        readChars();
+                    }
+                    final CoderResult result = encoder.encode(chars, buffer, endOfInput);
+                    if (endOfInput && result.isUnderflow()) {
+                        encoder.flush(buffer);
+                        flushed = true;
+                    }
+                }
+                final boolean filled = buffer.position() > limit;
+                limit = buffer.position();
+                return filled;
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void readChars() throws IOException {
+            chars.compact();
+            final int count = reader.read(chars.array(), chars.position(), chars.remaining());
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                chars.position(chars.position() + count);
+            }
+            chars.flip();
+        }
+
+        private void compact(int start) {
+            final int remaining = limit - start;
+            if (start > 0) {
+                final byte[] bytes = buffer.array();
+                System.arraycopy(bytes, start, bytes, 0, remaining);
+            } else if (remaining == buffer.capacity()) {
+                buffer = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() * 2));
+            }
+            limit = remaining;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Points at the current event in an XML stream. Event handlers, controller methods and controller parameters read
+ * element names, attributes and text from the cursor, and only when they need to.
+ * <p>
+ * This interface is modelled after the StAX cursor API, {@link javax.xml.stream.XMLStreamReader}. Event types are the
+ * constants from {@link javax.xml.stream.XMLStreamConstants}. Namespace URIs are never {@code null}; elements and
+ * attributes without a namespace have the empty namespace URI.
+ * </p>
+ * <p>
+ * A cursor is created for a {@link SymbolTable}. It looks up the name of each start and end element in the table at
+ * most once, the first time the symbol for it is requested.
+ * </p>
+ */
+interface XmlCursor {
+    /**
+     * Event type returned by {@link #next()} when the cursor has run out of input that is available so far, and the
+     * input is not complete yet. This is not a StAX event type. Only cursors on input that is fed in parts return it;
+     * after more input is fed, {@link #next()} continues where it left off.
+     */
+    int INCOMPLETE = 257;
+
+    /**
+     * @return {@code true} if there are more events in the stream, {@code false} otherwise.
+     * @throws XMLStreamException If the stream could not be read.
+     */
+    boolean hasNext() throws XMLStreamException;
+
+    /**
+     * Moves the cursor to the next event in the stream.
+     *
+     * @return The type of the event.
+     * @throws XMLStreamException If the stream could not be read.
+     */
+    int next() throws XMLStreamException;
+
+    /**
+     * @return The type of the current event.
+     */
+    int getEventType();
+
+    /**
+     * @return The local name of the current start or end element.
+     */
+    String getLocalName();
+
+    /**
+     * @return The namespace URI of the current start or end element.
+     */
+    String getNamespaceURI();
+
+    /**
+     * @return The name of the current start or end element.
+     */
+    default QName getName() {
+        return new QName(getNamespaceURI(), getLocalName());
+    }
+
+    /**
+     * @return The symbol for the name of the current start or end element, or {@link SymbolTable#UNKNOWN} if the
+     * symbol table doesn't know it.
+     */
+    int getSymbol();
+
+    /**
+     * @return The number of attributes on the current start element.
+     */
+    int getAttributeCount();
+
+    /**
+     * @param index Index of the attribute, from 0 up to the number of attributes on the current start element.
+     * @return The local name of the attribute.
+     */
+    String getAttributeLocalName(int index);
+
+    /**
+     * @param index Index of the attribute, from 0 up to the number of attributes on the current start element.
+     * @return The namespace URI of the attribute.
+     */
+    String getAttributeNamespace(int index);
+
+    /**
+     * @param index Index of the attribute, from 0 up to the number of attributes on the current start element.
+     * @return The value of the attribute.
+     */
+    String getAttributeValue(int index);
+
+    /**
+     * @return The text of the current characters event.
+     */
+    String getText();
+
+    /**
+     * @return The location of the current event.
+     */
+    Location getLocation();
+
+    /**
+     * Closes the cursor, but not the underlying source.
+     *
+     * @throws XMLStreamException If the cursor could not be closed.
+     */
+    void close() throws XMLStreamException;
+
+    /**
+     * Takes over from a cursor on an earlier document whatever this cursor can reuse, before this cursor reads
+     * anything. Both cursors must be on the same symbol table. The earlier cursor must be closed, and must not be used
+     * anymore. By default, nothing is taken over.
+     *
+     * @param previous The cursor on the earlier document.
+     */
+    default void reuse(XmlCursor previous) {
+    }
+}
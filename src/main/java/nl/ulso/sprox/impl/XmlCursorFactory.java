@@ -0,0 +1,39 @@
+package nl.ulso.sprox.impl;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * Creates {@link XmlCursor}s on top of XML sources. There is one implementation for every
+ * {@link nl.ulso.sprox.Engine}.
+ * <p>
+ * Factories that can't read buffers, character sequences or mapped files in place get them as a stream or a reader.
+ * </p>
+ */
+interface XmlCursorFactory {
+    XmlCursor createCursor(Reader reader, SymbolTable symbolTable) throws XMLStreamException;
+
+    XmlCursor createCursor(InputStream inputStream, SymbolTable symbolTable) throws XMLStreamException;
+
+    default XmlCursor createCursor(ByteBuffer buffer, SymbolTable symbolTable) throws XMLStreamException {
+        return createCursor(new ByteBufferInputStream(buffer), symbolTable);
+    }
+
+    default XmlCursor createCursor(CharSequence characters, SymbolTable symbolTable) throws XMLStreamException {
+        return createCursor(new CharSequenceReader(characters), symbolTable);
+    }
+
+    default XmlCursor createCursor(FileMapping mapping, SymbolTable symbolTable) throws XMLStreamException {
+        try {
+            if (mapping.size() <= Integer.MAX_VALUE) {
+                return createCursor(mapping.map(0, (int) mapping.size()), symbolTable);
+            }
+            return createCursor(mapping.newInputStream(), symbolTable);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+}
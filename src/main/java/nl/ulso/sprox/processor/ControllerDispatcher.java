@@ -0,0 +1,41 @@
+package nl.ulso.sprox.processor;
+
+/**
+ * Registers the controller methods of a single controller class, without reflection.
+ * <p>
+ * Implementations are generated by the {@link SproxProcessor}; there's no need to write one yourself. A dispatcher
+ * lives in the same package as its controller class. Its name is the binary name of the controller class, followed by
+ * {@value #CLASS_NAME_SUFFIX}, like {@code Feed$Entry$SproxDispatcher} for the nested class {@code Feed.Entry}. That
+ * keeps the names of dispatchers of different classes apart, like those of {@code Feed.Entry} and {@code Feed_Entry}.
+ * It must have a public no-argument constructor.
+ * </p>
+ *
+ * @see SproxProcessor
+ */
+public interface ControllerDispatcher {
+
+    /**
+     * Suffix of the name of a dispatcher class.
+     */
+    String CLASS_NAME_SUFFIX = "$SproxDispatcher";
+
+    /**
+     * @param controllerClassName Binary name of a controller class.
+     * @return Binary name of the dispatcher class for the controller class.
+     */
+    static String dispatcherClassName(String controllerClassName) {
+        return controllerClassName + CLASS_NAME_SUFFIX;
+    }
+
+    /**
+     * @return {@code true} if the controller class declares one or more namespaces, {@code false} otherwise.
+     */
+    boolean hasNamespacesDeclared();
+
+    /**
+     * Registers all controller methods of the controller class, in order.
+     *
+     * @param registry Registry to add the controller methods to.
+     */
+    void registerControllerMethods(ControllerMethodRegistry registry);
+}
@@ -0,0 +1,54 @@
+package nl.ulso.sprox.processor;
+
+/**
+ * Defines the parameters of a controller method added to a {@link ControllerMethodRegistry}. Each method adds the next
+ * parameter.
+ */
+public interface ControllerMethodDefinition {
+
+    /**
+     * Adds a parameter annotated with {@link nl.ulso.sprox.Attribute}.
+     *
+     * @param namespaceUri Namespace URI of the attribute.
+     * @param localName    Local name of the attribute.
+     * @param type         Type to parse the attribute value into.
+     * @param optional     Whether the parameter is an {@link java.util.Optional}.
+     * @return This definition.
+     */
+    ControllerMethodDefinition addAttribute(String namespaceUri, String localName, Class<?> type, boolean optional);
+
+    /**
+     * Adds a parameter annotated with {@link nl.ulso.sprox.Node}.
+     *
+     * @param namespaceUri Namespace URI of the node.
+     * @param localName    Local name of the node.
+     * @param type         Type to parse the node content into.
+     * @param optional     Whether the parameter is an {@link java.util.Optional}.
+     * @return This definition.
+     */
+    ControllerMethodDefinition addNode(String namespaceUri, String localName, Class<?> type, boolean optional);
+
+    /**
+     * Adds a parameter that is injected with a list of method results.
+     *
+     * @param elementClass       Type of the elements in the list.
+     * @param sourceNamespaceUri Namespace URI of the {@link nl.ulso.sprox.Source}, or {@code null} if there is none.
+     * @param sourceLocalName    Local name of the {@link nl.ulso.sprox.Source}, or {@code null} if there is none.
+     * @param optional           Whether the parameter is an {@link java.util.Optional}.
+     * @return This definition.
+     */
+    ControllerMethodDefinition addList(Class<?> elementClass, String sourceNamespaceUri, String sourceLocalName,
+                                       boolean optional);
+
+    /**
+     * Adds a parameter that is injected with a method result.
+     *
+     * @param objectClass        Type of the method result.
+     * @param sourceNamespaceUri Namespace URI of the {@link nl.ulso.sprox.Source}, or {@code null} if there is none.
+     * @param sourceLocalName    Local name of the {@link nl.ulso.sprox.Source}, or {@code null} if there is none.
+     * @param optional           Whether the parameter is an {@link java.util.Optional}.
+     * @return This definition.
+     */
+    ControllerMethodDefinition addObject(Class<?> objectClass, String sourceNamespaceUri, String sourceLocalName,
+                                         boolean optional);
+}
@@ -0,0 +1,18 @@
+package nl.ulso.sprox.processor;
+
+/**
+ * Calls a controller method on a controller.
+ */
+@FunctionalInterface
+public interface ControllerMethodInvoker {
+
+    /**
+     * Calls the controller method.
+     *
+     * @param controller The controller to call the method on.
+     * @param arguments  The arguments of the method, one for each parameter.
+     * @return The result of the method, or {@code null} if it returns {@code void}.
+     * @throws Throwable Anything the controller method throws.
+     */
+    Object invoke(Object controller, Object[] arguments) throws Throwable;
+}
@@ -0,0 +1,22 @@
+package nl.ulso.sprox.processor;
+
+/**
+ * Collects the controller methods registered by a {@link ControllerDispatcher}.
+ */
+public interface ControllerMethodRegistry {
+
+    /**
+     * Adds a controller method. The parameters of the method must be added to the returned definition, in order.
+     *
+     * @param namespaceUri Namespace URI of the node that triggers the method.
+     * @param localName    Local name of the node that triggers the method.
+     * @param recursive    Whether the method is annotated with {@link nl.ulso.sprox.Recursive}.
+     * @param returnType   The return type of the method.
+     * @param signature    Description of the method, for use in error messages.
+     * @param invoker      Invoker that calls the method on a controller.
+     * @return The definition of the method, to add the parameters to.
+     */
+    ControllerMethodDefinition addControllerMethod(String namespaceUri, String localName, boolean recursive,
+                                                   Class<?> returnType, String signature,
+                                                   ControllerMethodInvoker invoker);
+}
@@ -0,0 +1,442 @@
+package nl.ulso.sprox.processor;
+
+import nl.ulso.sprox.*;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+
+import static java.util.stream.Collectors.joining;
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.NOTE;
+import static javax.tools.Diagnostic.Kind.WARNING;
+import static javax.xml.XMLConstants.NULL_NS_URI;
+
+/**
+ * Generates a {@link ControllerDispatcher} for each controller class that has methods annotated with {@link Node}.
+ * <p>
+ * The processor does at compile time what the {@link XmlProcessorBuilder} otherwise does through reflection each time
+ * a controller is added: it finds the controller methods, resolves the names of all elements they refer to, and
+ * determines how each parameter must be injected. The generated dispatcher registers the methods with the outcome,
+ * and calls them directly.
+ * </p>
+ * <p>
+ * Element names that are not given in annotations are taken from the names of methods and parameters in the source,
+ * like the {@link nl.ulso.sprox.resolvers.DefaultElementNameResolver} does. There's no need to compile with the
+ * {@code -parameters} option. A builder uses a dispatcher only if it has the default resolver set.
+ * </p>
+ * <p>
+ * Controller methods are registered in the order in which they are declared, those of the class itself first,
+ * followed by those it inherits.
+ * </p>
+ * <p>
+ * No dispatcher is generated for controller classes that code in the same package has no access to, like private
+ * nested classes. These are processed through reflection, as usual.
+ * </p>
+ */
+@SupportedAnnotationTypes("nl.ulso.sprox.Node")
+public final class SproxProcessor extends AbstractProcessor {
+    private static final String INDENT = "    ";
+    private static final String PATH_SEPARATOR = "/";
+    private static final Map<String, String> PRIMITIVE_PARAMETER_TYPES = Map.of(
+            "java.lang.Boolean", "boolean",
+            "java.lang.Byte", "byte",
+            "java.lang.Character", "char",
+            "java.lang.Double", "double",
+            "java.lang.Float", "float",
+            "java.lang.Integer", "int",
+            "java.lang.Long", "long",
+            "java.lang.Short", "short");
+
+    private static final String DISPATCHER_SIMPLE_NAME = ControllerDispatcher.CLASS_NAME_SUFFIX.substring(1);
+
+    private final Set<String> generatedDispatchers = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        final Set<TypeElement> controllerClasses = new LinkedHashSet<>();
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(Node.class)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                controllerClasses.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+        for (TypeElement controllerClass : controllerClasses) {
+            if (isAccessible(controllerClass)) {
+                generateDispatcher(controllerClass);
+            } else {
+                processingEnv.getMessager().printMessage(NOTE, "Cannot generate a controller dispatcher for "
+                        + controllerClass + "; it is not accessible from its package.", controllerClass);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccessible(TypeElement controllerClass) {
+        Element element = controllerClass;
+        while (element instanceof TypeElement) {
+            final TypeElement type = (TypeElement) element;
+            if (type.getModifiers().contains(Modifier.PRIVATE)
+                    || type.getNestingKind() == NestingKind.LOCAL
+                    || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = type.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void generateDispatcher(TypeElement controllerClass) {
+        final Elements elements = processingEnv.getElementUtils();
+        final String dispatcherName =
+                ControllerDispatcher.dispatcherClassName(elements.getBinaryName(controllerClass).toString());
+        if (!generatedDispatchers.add(dispatcherName)) {
+            return;
+        }
+        if (ElementFilter.typesIn(controllerClass.getEnclosedElements()).stream()
+                .anyMatch(type -> type.getSimpleName().contentEquals(DISPATCHER_SIMPLE_NAME))) {
+            processingEnv.getMessager().printMessage(WARNING, "Cannot generate a controller dispatcher for "
+                    + controllerClass + "; its nested class " + DISPATCHER_SIMPLE_NAME + " has the same name.",
+                    controllerClass);
+            return;
+        }
+        final NamespaceMap namespaceMap = createNamespaceMap(controllerClass);
+        if (namespaceMap == null) {
+            return;
+        }
+        final List<ExecutableElement> controllerMethods = findControllerMethods(controllerClass);
+        if (controllerMethods.stream().anyMatch(SproxProcessor::hasPath)) {
+            processingEnv.getMessager().printMessage(NOTE, "Cannot generate a controller dispatcher for "
+                    + controllerClass + "; it triggers on element paths, which are resolved at run time.",
+                    controllerClass);
+            return;
+        }
+        final String packageName = elements.getPackageOf(controllerClass).getQualifiedName().toString();
+        final String simpleName = packageName.isEmpty()
+                ? dispatcherName
+                : dispatcherName.substring(packageName.length() + 1);
+        try (Writer writer = processingEnv.getFiler().createSourceFile(dispatcherName, controllerClass).openWriter();
+             PrintWriter out = new PrintWriter(writer)) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Dispatcher for controller {@link " + controllerClass.getQualifiedName()
+                    + "}, generated by {@link " + SproxProcessor.class.getName() + "}.");
+            out.println(" */");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("public final class " + simpleName + " implements "
+                    + ControllerDispatcher.class.getName() + " {");
+            out.println(INDENT + "@Override");
+            out.println(INDENT + "public boolean hasNamespacesDeclared() {");
+            out.println(INDENT + INDENT + "return " + namespaceMap.hasNamespacesDeclared() + ";");
+            out.println(INDENT + "}");
+            out.println();
+            out.println(INDENT + "@Override");
+            out.println(INDENT + "public void registerControllerMethods("
+                    + ControllerMethodRegistry.class.getName() + " registry) {");
+            for (ExecutableElement method : controllerMethods) {
+                writeControllerMethod(out, controllerClass, method, namespaceMap);
+            }
+            out.println(INDENT + "}");
+            out.println("}");
+        } catch (FilerException e) {
+            // The dispatcher was generated already, by an earlier run of this processor.
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(ERROR, "Cannot generate controller dispatcher "
+                    + dispatcherName + ": " + e.getMessage(), controllerClass);
+        }
+    }
+
+    private NamespaceMap createNamespaceMap(TypeElement controllerClass) {
+        final Namespaces namespacesAnnotation = controllerClass.getAnnotation(Namespaces.class);
+        final Namespace namespaceAnnotation = controllerClass.getAnnotation(Namespace.class);
+        if (namespacesAnnotation != null && namespaceAnnotation != null) {
+            processingEnv.getMessager().printMessage(ERROR, "Controller class '" + controllerClass
+                    + "' must have either no annotations, a @Namespace annotation, or a @Namespaces annotation. "
+                    + "This one has both.", controllerClass);
+            return null;
+        }
+        final Namespace[] namespaces = namespacesAnnotation != null
+                ? namespacesAnnotation.value()
+                : namespaceAnnotation != null ? new Namespace[]{namespaceAnnotation} : new Namespace[0];
+        return new NamespaceMap(namespaces);
+    }
+
+    /**
+     * Finds all public methods annotated with {@link Node}, like {@link Class#getMethods()} would. A method that is
+     * overridden is skipped, even if the overriding method is not annotated.
+     */
+    private List<ExecutableElement> findControllerMethods(TypeElement controllerClass) {
+        final Elements elements = processingEnv.getElementUtils();
+        final List<ExecutableElement> seenMethods = new ArrayList<>();
+        final List<ExecutableElement> controllerMethods = new ArrayList<>();
+        for (TypeElement type : findTypeHierarchy(controllerClass)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (!method.getModifiers().contains(Modifier.PUBLIC) || isOverridden(method, seenMethods,
+                        controllerClass, elements)) {
+                    continue;
+                }
+                seenMethods.add(method);
+                if (method.getAnnotation(Node.class) != null) {
+                    controllerMethods.add(method);
+                }
+            }
+        }
+        return controllerMethods;
+    }
+
+    private List<TypeElement> findTypeHierarchy(TypeElement controllerClass) {
+        final Types types = processingEnv.getTypeUtils();
+        final List<TypeElement> hierarchy = new ArrayList<>();
+        final Deque<TypeElement> queue = new ArrayDeque<>();
+        queue.add(controllerClass);
+        while (!queue.isEmpty()) {
+            final TypeElement type = queue.remove();
+            if (hierarchy.contains(type)) {
+                continue;
+            }
+            hierarchy.add(type);
+            if (type.getSuperclass().getKind() == TypeKind.DECLARED) {
+                queue.add((TypeElement) types.asElement(type.getSuperclass()));
+            }
+            for (TypeMirror anInterface : type.getInterfaces()) {
+                queue.add((TypeElement) types.asElement(anInterface));
+            }
+        }
+        return hierarchy;
+    }
+
+    private static boolean hasPath(ExecutableElement method) {
+        return method.getAnnotation(Node.class).value().contains(PATH_SEPARATOR);
+    }
+
+    private static boolean isOverridden(ExecutableElement method, List<ExecutableElement> seenMethods,
+                                        TypeElement controllerClass, Elements elements) {
+        for (ExecutableElement seenMethod : seenMethods) {
+            if (elements.overrides(seenMethod, method, controllerClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeControllerMethod(PrintWriter out, TypeElement controllerClass, ExecutableElement method,
+                                       NamespaceMap namespaceMap) {
+        final ElementReference ownerReference = new ElementReference(method.getAnnotation(Node.class).value());
+        final String ownerNamespace = ownerReference.resolveNamespace(namespaceMap, namespaceMap.getDefaultNamespace());
+        final String ownerLocalName = ownerReference.resolveLocalPart(method.getSimpleName().toString());
+        final boolean recursive = method.getAnnotation(Recursive.class) != null;
+        out.println(INDENT + INDENT + "registry.addControllerMethod(" + literal(ownerNamespace) + ", "
+                + literal(ownerLocalName) + ", " + recursive + ", " + classLiteral(method.getReturnType()) + ",");
+        out.println(INDENT + INDENT + INDENT + INDENT + literal(signature(method)) + ",");
+        out.println(INDENT + INDENT + INDENT + INDENT + invoker(controllerClass, method) + ")");
+        for (VariableElement parameter : method.getParameters()) {
+            out.println(INDENT + INDENT + INDENT + INDENT + "."
+                    + parameterDefinition(parameter, namespaceMap, ownerNamespace));
+        }
+        out.println(INDENT + INDENT + INDENT + INDENT + ";");
+    }
+
+    private String parameterDefinition(VariableElement parameter, NamespaceMap namespaceMap, String ownerNamespace) {
+        final String name = parameter.getSimpleName().toString();
+        final TypeMirror type = parameter.asType();
+        final boolean optional = isDeclaredType(type, "java.util.Optional");
+        final TypeMirror parameterType = optional ? typeArgument(type) : type;
+        final Attribute attribute = parameter.getAnnotation(Attribute.class);
+        if (attribute != null) {
+            final ElementReference reference = new ElementReference(attribute.value());
+            return "addAttribute(" + literal(reference.resolveNamespace(namespaceMap, ownerNamespace)) + ", "
+                    + literal(reference.resolveLocalPart(name)) + ", " + valueClassLiteral(parameterType) + ", "
+                    + optional + ")";
+        }
+        final Node node = parameter.getAnnotation(Node.class);
+        if (node != null) {
+            final ElementReference reference = new ElementReference(node.value());
+            return "addNode(" + literal(reference.resolveNamespace(namespaceMap, ownerNamespace)) + ", "
+                    + literal(reference.resolveLocalPart(name)) + ", " + valueClassLiteral(parameterType) + ", "
+                    + optional + ")";
+        }
+        final Source source = parameter.getAnnotation(Source.class);
+        final String sourceName;
+        if (source != null) {
+            final ElementReference reference = new ElementReference(source.value());
+            sourceName = literal(reference.resolveNamespace(namespaceMap, ownerNamespace)) + ", "
+                    + literal(reference.resolveLocalPart(name));
+        } else {
+            sourceName = "null, null";
+        }
+        if (isDeclaredType(parameterType, "java.util.List")) {
+            return "addList(" + classLiteral(typeArgument(parameterType)) + ", " + sourceName + ", " + optional + ")";
+        }
+        return "addObject(" + classLiteral(parameterType) + ", " + sourceName + ", " + optional + ")";
+    }
+
+    private String invoker(TypeElement controllerClass, ExecutableElement method) {
+        final List<? extends VariableElement> parameters = method.getParameters();
+        final StringBuilder call = new StringBuilder();
+        if (method.getModifiers().contains(Modifier.STATIC)) {
+            call.append(erasure(method.getEnclosingElement().asType()));
+        } else {
+            call.append("((").append(erasure(controllerClass.asType())).append(") controller)");
+        }
+        call.append('.').append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                call.append(", ");
+            }
+            call.append('(').append(erasure(parameters.get(i).asType())).append(") arguments[").append(i).append(']');
+        }
+        call.append(')');
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            return "(controller, arguments) -> {" + call + "; return null;}";
+        }
+        return "(controller, arguments) -> " + call;
+    }
+
+    /**
+     * Describes the method like {@link java.lang.reflect.Method#toString()} does.
+     */
+    private String signature(ExecutableElement method) {
+        final StringBuilder signature = new StringBuilder();
+        for (Modifier modifier : method.getModifiers()) {
+            if (modifier != Modifier.DEFAULT) {
+                signature.append(modifier).append(' ');
+            }
+        }
+        signature.append(typeName(method.getReturnType())).append(' ')
+                .append(typeName(method.getEnclosingElement().asType())).append('.')
+                .append(method.getSimpleName()).append('(')
+                .append(method.getParameters().stream().map(p -> typeName(p.asType())).collect(joining(",")))
+                .append(')');
+        if (!method.getThrownTypes().isEmpty()) {
+            signature.append(" throws ")
+                    .append(method.getThrownTypes().stream().map(this::typeName).collect(joining(",")));
+        }
+        return signature.toString();
+    }
+
+    private boolean isDeclaredType(TypeMirror type, String className) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(className);
+    }
+
+    private static TypeMirror typeArgument(TypeMirror type) {
+        return ((DeclaredType) type).getTypeArguments().get(0);
+    }
+
+    /**
+     * Values parsed from attributes and nodes use the parser for the primitive type if they are of a wrapper type.
+     */
+    private String valueClassLiteral(TypeMirror type) {
+        final String primitiveType = PRIMITIVE_PARAMETER_TYPES.get(erasure(type));
+        return primitiveType != null ? primitiveType + ".class" : classLiteral(type);
+    }
+
+    private String classLiteral(TypeMirror type) {
+        return erasure(type) + ".class";
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * @return The name of the type like {@link Class#getTypeName()} returns it.
+     */
+    private String typeName(TypeMirror type) {
+        final TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        if (erasure.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) erasure).getComponentType()) + "[]";
+        }
+        if (erasure.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils()
+                    .getBinaryName((TypeElement) ((DeclaredType) erasure).asElement()).toString();
+        }
+        return erasure.toString();
+    }
+
+    private String literal(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    /**
+     * Represents the set of namespaces on a single controller class.
+     */
+    private static final class NamespaceMap {
+        private final Map<String, String> namespaces;
+        private final String defaultNamespace;
+
+        NamespaceMap(Namespace[] namespaces) {
+            this.namespaces = new HashMap<>();
+            for (Namespace namespace : namespaces) {
+                this.namespaces.put(namespace.shorthand(), namespace.value());
+            }
+            this.defaultNamespace = namespaces.length > 0 ? namespaces[0].value() : NULL_NS_URI;
+        }
+
+        boolean hasNamespacesDeclared() {
+            return !namespaces.isEmpty();
+        }
+
+        String getDefaultNamespace() {
+            return defaultNamespace;
+        }
+
+        String resolveNamespace(String shorthand) {
+            return namespaces.getOrDefault(shorthand, NULL_NS_URI);
+        }
+    }
+
+    /**
+     * Represents a reference to an XML element, defined in an annotation value.
+     * <p>
+     * A reference is written as (EBNF): {@code [shorthand ":"] [name]}. In other words: it might be completely empty,
+     * it might contain just a shorthand, just a name, or both.
+     * </p>
+     */
+    private static final class ElementReference {
+        private static final char SEPARATOR = ':';
+
+        private final String shorthand;
+        private final String element;
+
+        ElementReference(String annotation) {
+            final int i = annotation.indexOf(SEPARATOR);
+            if (i == -1) {
+                shorthand = null;
+                element = annotation.isEmpty() ? null : annotation;
+            } else {
+                shorthand = annotation.substring(0, i);
+                element = annotation.length() > i + 1 ? annotation.substring(i + 1) : null;
+            }
+        }
+
+        String resolveNamespace(NamespaceMap namespaceMap, String defaultNamespace) {
+            return shorthand != null ? namespaceMap.resolveNamespace(shorthand) : defaultNamespace;
+        }
+
+        String resolveLocalPart(String name) {
+            return element != null ? element : name;
+        }
+    }
+}
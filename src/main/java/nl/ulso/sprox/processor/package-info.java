@@ -0,0 +1,19 @@
+/**
+ * Package {@code nl.ulso.sprox.processor} contains an optional annotation processor that analyzes controllers at
+ * compile time, and the types the code it generates is built on.
+ * <p>
+ * For each controller class the {@link nl.ulso.sprox.processor.SproxProcessor} generates a
+ * {@link nl.ulso.sprox.processor.ControllerDispatcher}: plain Java code that registers the controller methods with all
+ * element names resolved and calls them directly. When a controller is added to an
+ * {@link nl.ulso.sprox.XmlProcessorBuilder}, the builder picks up its dispatcher, if there is one, instead of
+ * inspecting the controller class through reflection.
+ * </p>
+ * <p>
+ * The processor is not registered as a service. To run it, name it explicitly when compiling your controllers:
+ * <pre><code>
+ * javac -processor nl.ulso.sprox.processor.SproxProcessor ...
+ * </code></pre>
+ *
+ * @see nl.ulso.sprox.processor.SproxProcessor
+ */
+package nl.ulso.sprox.processor;
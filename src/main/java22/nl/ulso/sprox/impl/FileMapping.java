@@ -0,0 +1,80 @@
+package nl.ulso.sprox.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A file that is mapped into memory for reading. Parts of the file are handed out as buffers of at most 2GB each;
+ * files of any size can be read that way, one window at a time.
+ * <p>
+ * This is the Java 22 implementation, from the multi-release part of the JAR. It maps the complete file as a single
+ * {@link MemorySegment}, once, and hands out slices of it. Windows therefore cost no system calls, and the file is
+ * unmapped as soon as the mapping is closed, instead of whenever the garbage collector gets to it. The mapping lives
+ * in a shared arena, so that the buffers can be read from any thread.
+ * </p>
+ */
+final class FileMapping implements Closeable {
+    private final FileChannel channel;
+    private final Arena arena;
+    private final MemorySegment segment;
+
+    private FileMapping(FileChannel channel, Arena arena) throws IOException {
+        this.channel = channel;
+        this.arena = arena;
+        this.segment = channel.map(READ_ONLY, 0, channel.size(), arena);
+    }
+
+    static FileMapping open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, READ);
+        final Arena arena = Arena.ofShared();
+        try {
+            return new FileMapping(channel, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The size of the file, in bytes.
+     */
+    long size() {
+        return segment.byteSize();
+    }
+
+    /**
+     * @param offset Offset in the file of the first byte in the window.
+     * @param length Size of the window.
+     * @return Buffer holding the window, from index 0.
+     */
+    ByteBuffer map(long offset, int length) {
+        return segment.asSlice(offset, length).asByteBuffer();
+    }
+
+    /**
+     * @return A stream that reads the file from the start, for when the file can't be processed from memory.
+     */
+    InputStream newInputStream() {
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            arena.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package nl.ulso.sprox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+public class BatchExecutionTest {
+    private static final int FILE_COUNT = 100;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Path> paths = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < FILE_COUNT; i++) {
+            final Path path = folder.getRoot().toPath().resolve("file" + i + ".xml");
+            Files.write(path, ("<root><id>" + i + "</id></root>").getBytes(UTF_8));
+            paths.add(path);
+        }
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThatOutcomesAreInOrderOfFiles() throws Exception {
+        try (Stream<XmlBatchResult<String>> results = createProcessor().executeAll(paths)) {
+            final List<XmlBatchResult<String>> list = results.collect(Collectors.toList());
+            assertEquals(FILE_COUNT, list.size());
+            for (int i = 0; i < FILE_COUNT; i++) {
+                assertEquals(paths.get(i), list.get(i).getPath());
+                assertEquals(Integer.toString(i), list.get(i).getResult());
+            }
+        }
+    }
+
+    @Test
+    public void testThatAllOutcomesAreReturnedOutOfOrder() throws Exception {
+        try (Stream<XmlBatchResult<String>> results = createProcessor().executeAll(paths, executor, false)) {
+            final Set<Path> processed = results
+                    .filter(XmlBatchResult::isSuccess)
+                    .map(XmlBatchResult::getPath)
+                    .collect(Collectors.toSet());
+            assertEquals(Set.copyOf(paths), processed);
+        }
+    }
+
+    @Test
+    public void testThatFailuresAreCollectedWithoutStoppingTheBatch() throws Exception {
+        Files.write(paths.get(10), "<root><id>10</broken></root>".getBytes(UTF_8));
+        paths.add(folder.getRoot().toPath().resolve("missing.xml"));
+        try (Stream<XmlBatchResult<String>> results = createProcessor().executeAll(paths, executor, true)) {
+            final List<XmlBatchResult<String>> list = results.collect(Collectors.toList());
+            assertEquals(FILE_COUNT + 1, list.size());
+            final List<Path> failed = list.stream()
+                    .filter(result -> !result.isSuccess())
+                    .map(XmlBatchResult::getPath)
+                    .collect(Collectors.toList());
+            assertEquals(List.of(paths.get(10), paths.get(FILE_COUNT)), failed);
+            assertNotNull(list.get(10).getException());
+            assertEquals("99", list.get(99).getResult());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testThatErrorsAreCollectedInAndOutOfOrder() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(IdProcessor.class)
+                .addResultSink((String id) -> {
+                    if (id.equals("10")) {
+                        throw new AssertionError("Sink failed");
+                    }
+                }, String.class)
+                .buildXmlProcessor();
+        for (boolean ordered : new boolean[]{false, true}) {
+            try (Stream<XmlBatchResult<String>> results = processor.executeAll(paths, executor, ordered)) {
+                final List<XmlBatchResult<String>> failed = results
+                        .filter(result -> !result.isSuccess())
+                        .collect(Collectors.toList());
+                assertEquals(1, failed.size());
+                assertEquals(paths.get(10), failed.get(0).getPath());
+                assertTrue(failed.get(0).getException().getCause() instanceof AssertionError);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testThatRejectedFilesAreCollectedInAndOutOfOrder() throws Exception {
+        for (boolean ordered : new boolean[]{false, true}) {
+            final AtomicInteger submitted = new AtomicInteger();
+            final Executor rejecting = command -> {
+                if (submitted.getAndIncrement() == 10) {
+                    throw new RejectedExecutionException("Executor is full");
+                }
+                executor.execute(command);
+            };
+            try (Stream<XmlBatchResult<String>> results = createProcessor().executeAll(paths, rejecting, ordered)) {
+                final List<XmlBatchResult<String>> list = results.collect(Collectors.toList());
+                assertEquals(FILE_COUNT, list.size());
+                final List<XmlBatchResult<String>> failed = list.stream()
+                        .filter(result -> !result.isSuccess())
+                        .collect(Collectors.toList());
+                assertEquals(1, failed.size());
+                assertEquals(paths.get(10), failed.get(0).getPath());
+                assertTrue(failed.get(0).getException().getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+
+    @Test
+    public void testThatPathsAreReadOnlyAsFarAsNeeded() throws Exception {
+        final CountingIterable counting = new CountingIterable(paths);
+        try (Stream<XmlBatchResult<String>> results = createProcessor().executeAll(counting, executor, true)) {
+            assertEquals("0", results.findFirst().orElseThrow().getResult());
+        }
+        assertTrue("Paths read: " + counting.count,
+                counting.count <= 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void testThatPooledExecutionStateIsSharedAcrossBatch() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(IdProcessor.class)
+                .setExecutionStatePooling(true)
+                .buildXmlProcessor();
+        for (int i = 0; i < 2; i++) {
+            try (Stream<XmlBatchResult<String>> results = processor.executeAll(paths, executor, true)) {
+                assertEquals(FILE_COUNT, results.filter(XmlBatchResult::isSuccess).count());
+            }
+        }
+        assertEquals("0", processor.execute(paths.get(0)));
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(IdProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    public static final class IdProcessor {
+        @Node("root")
+        public String root(@Node("id") String id) {
+            return id;
+        }
+    }
+
+    private static final class CountingIterable implements Iterable<Path> {
+        private final List<Path> paths;
+        private int count;
+
+        private CountingIterable(List<Path> paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        public Iterator<Path> iterator() {
+            final Iterator<Path> iterator = paths.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Path next() {
+                    count++;
+                    return iterator.next();
+                }
+            };
+        }
+    }
+}
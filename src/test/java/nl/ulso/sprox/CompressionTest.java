@@ -0,0 +1,154 @@
+package nl.ulso.sprox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class CompressionTest {
+    private static final int ELEMENT_COUNT = 100000;
+    private static final byte[] XML = createDocument();
+    private static final String EXPECTED = ELEMENT_COUNT + ":" + (ELEMENT_COUNT - 1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatGzipStreamIsDetected() throws Exception {
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(new ByteArrayInputStream(gzip(XML))));
+    }
+
+    @Test
+    public void testThatDeflateStreamIsDetected() throws Exception {
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(new ByteArrayInputStream(deflate(XML))));
+    }
+
+    @Test
+    public void testThatUncompressedStreamIsReadAsIs() throws Exception {
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(new ByteArrayInputStream(XML)));
+    }
+
+    @Test
+    public void testThatGzipBufferIsDetected() throws Exception {
+        final byte[] compressed = gzip(XML);
+        final byte[] bytes = Arrays.copyOf(compressed, compressed.length + 10);
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(bytes, 0, compressed.length));
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(ByteBuffer.wrap(compressed)));
+    }
+
+    @Test
+    public void testThatGzipFileIsDetected() throws Exception {
+        final Path path = folder.newFile("document.xml.gz").toPath();
+        Files.write(path, gzip(XML));
+        assertEquals(EXPECTED, createProcessor(Compression.DETECT).execute(path));
+    }
+
+    @Test
+    public void testExplicitCompression() throws Exception {
+        assertEquals(EXPECTED, createProcessor(Compression.GZIP).execute(new ByteArrayInputStream(gzip(XML))));
+        assertEquals(EXPECTED, createProcessor(Compression.DEFLATE).execute(new ByteArrayInputStream(deflate(XML))));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatCompressedStreamIsNotDetectedWithoutCompression() throws Exception {
+        createProcessor(Compression.NONE).execute(new ByteArrayInputStream(gzip(XML)));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatTruncatedStreamIsRejected() throws Exception {
+        final byte[] compressed = gzip(XML);
+        createProcessor(Compression.DETECT).execute(new ByteArrayInputStream(compressed, 0, compressed.length / 2));
+    }
+
+    @Test
+    public void testThatProcessingCanStopBeforeDecompressionEnds() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .setStopAtFirstResult(true)
+                .addControllerClass(FirstElementProcessor.class)
+                .buildXmlProcessor();
+        assertEquals("0", processor.execute(new ByteArrayInputStream(gzip(XML))));
+    }
+
+    @Test(timeout = 10000, expected = XmlProcessorException.class)
+    public void testThatUnexpectedFailureInDecompressorIsThrown() throws Exception {
+        final byte[] compressed = gzip(XML);
+        final InputStream input = new FilterInputStream(new ByteArrayInputStream(compressed, 0, compressed.length / 2)) {
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                final int count = super.read(bytes, offset, length);
+                if (count == -1) {
+                    throw new IllegalStateException("Connection lost");
+                }
+                return count;
+            }
+        };
+        createProcessor(Compression.DETECT).execute(input);
+    }
+
+    private static XmlProcessor<String> createProcessor(Compression compression) {
+        return createXmlProcessorBuilder(String.class)
+                .setCompression(compression)
+                .addControllerClass(ElementsProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    private static byte[] createDocument() {
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            builder.append("<element>").append(i).append("</element>");
+        }
+        return builder.append("</root>").toString().getBytes(UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(outputStream)) {
+            gzip.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream deflate = new DeflaterOutputStream(outputStream)) {
+            deflate.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public static final class ElementsProcessor {
+        @Node("root")
+        public String root(List<String> elements) {
+            return elements.size() + ":" + elements.get(elements.size() - 1);
+        }
+
+        @Node("element")
+        public String element(@Node("element") String content) {
+            return content;
+        }
+    }
+
+    public static final class FirstElementProcessor {
+        @Node("element")
+        public String element(@Node("element") String content) {
+            return content;
+        }
+    }
+}
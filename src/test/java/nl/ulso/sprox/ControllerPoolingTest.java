@@ -0,0 +1,97 @@
+package nl.ulso.sprox;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class ControllerPoolingTest {
+    private static final String XML = "<root><element/><element/><element/></root>";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        INSTANCES.set(0);
+    }
+
+    @Test
+    public void testThatControllersAreCreatedForEveryExecutionByDefault() throws Exception {
+        final XmlProcessor<Integer> processor = createProcessor(false);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(3), processor.execute(new StringReader(XML)));
+        }
+        assertEquals(5, INSTANCES.get());
+    }
+
+    @Test
+    public void testThatPooledControllersAreReusedAndReset() throws Exception {
+        final XmlProcessor<Integer> processor = createProcessor(true);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(3), processor.execute(new StringReader(XML)));
+        }
+        assertEquals(1, INSTANCES.get());
+    }
+
+    @Test
+    public void testThatPooledControllersAreNotSharedBetweenRunningExecutions() throws Exception {
+        final XmlProcessor<Integer> processor = createProcessor(true);
+        final XmlFeeder<Integer> first = processor.newFeeder();
+        final XmlFeeder<Integer> second = processor.newFeeder();
+        first.feed(ByteBuffer.wrap("<root><element/>".getBytes(UTF_8)));
+        second.feed(ByteBuffer.wrap(XML.getBytes(UTF_8)));
+        assertEquals(Integer.valueOf(3), second.complete());
+        first.feed(ByteBuffer.wrap("</root>".getBytes(UTF_8)));
+        assertEquals(Integer.valueOf(1), first.complete());
+        assertEquals(2, INSTANCES.get());
+        assertEquals(Integer.valueOf(3), processor.execute(new StringReader(XML)));
+        assertEquals(2, INSTANCES.get());
+    }
+
+    @Test
+    public void testThatPooledControllersAreReleasedAfterFailure() throws Exception {
+        final XmlProcessor<Integer> processor = createProcessor(true);
+        try {
+            processor.execute(new StringReader("<root><element/></broken>"));
+        } catch (XmlProcessorException expected) {
+            // The controller is returned to the pool anyway
+        }
+        assertEquals(Integer.valueOf(3), processor.execute(new StringReader(XML)));
+        assertEquals(1, INSTANCES.get());
+    }
+
+    private static XmlProcessor<Integer> createProcessor(boolean controllerPooling) {
+        return createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(ElementCounter.class)
+                .setControllerPooling(controllerPooling)
+                .buildXmlProcessor();
+    }
+
+    public static final class ElementCounter implements Resettable {
+        private int count;
+
+        public ElementCounter() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Node("root")
+        public Integer root() {
+            return count;
+        }
+
+        @Node("element")
+        public void element() {
+            count++;
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+        }
+    }
+}
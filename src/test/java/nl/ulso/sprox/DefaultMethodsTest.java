@@ -0,0 +1,156 @@
+package nl.ulso.sprox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a processor that implements only the methods of the original {@link XmlProcessor} interface supports
+ * all the others through their default implementations, or rejects them.
+ */
+public class DefaultMethodsTest {
+    private static final String XML = "<root><name>default</name></root>";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final XmlProcessor<String> processor = new MinimalXmlProcessor(createXmlProcessorBuilder(String.class)
+            .addControllerClass(NameProcessor.class)
+            .buildXmlProcessor());
+
+    @Test
+    public void testThatCharactersAreProcessed() throws Exception {
+        assertEquals("default", processor.execute(XML));
+    }
+
+    @Test
+    public void testThatBytesAreProcessed() throws Exception {
+        final byte[] bytes = ("  " + XML).getBytes(UTF_8);
+        assertEquals("default", processor.execute(bytes, 2, bytes.length - 2));
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().position(2);
+        assertEquals("default", processor.execute(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void testThatFilesAreProcessed() throws Exception {
+        final Path path = folder.newFile("document.xml").toPath();
+        final Path missing = folder.getRoot().toPath().resolve("missing.xml");
+        Files.writeString(path, XML, UTF_8);
+        assertEquals("default", processor.execute(path));
+        assertEquals("default", processor.executeParallel(path, "root/name"));
+        final List<XmlBatchResult<String>> results = processor
+                .executeAll(List.of(path, missing), ForkJoinPool.commonPool(), false)
+                .collect(Collectors.toList());
+        assertEquals("default", results.get(0).getResult());
+        assertFalse(results.get(1).isSuccess());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testThatFeederIsNotSupported() {
+        processor.newFeeder();
+    }
+
+    @Test
+    public void testThatDefaultSettingsAreAccepted() {
+        final XmlProcessorBuilder<String> builder = new XmlProcessorBuilder<>() {
+            // Implements the methods of the original interface only
+            @Override
+            public XmlProcessorBuilder<String> setElementNameResolver(ElementNameResolver resolver) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> resetElementNameResolver() {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> addControllerObject(Object controller) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> addControllerClass(Class controllerClass) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> addControllerFactory(ControllerFactory<?> controllerFactory) {
+                return this;
+            }
+
+            @Override
+            public <F> XmlProcessorBuilder<String> addControllerFactory(ControllerFactory<F> controllerFactory,
+                                                                        Class<? super F> type) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> addParser(Parser<?> parser) {
+                return this;
+            }
+
+            @Override
+            public <P> XmlProcessorBuilder<String> addParser(Parser<P> parser, Class<? super P> type) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessorBuilder<String> setXmlInputFactory(XMLInputFactory factory) {
+                return this;
+            }
+
+            @Override
+            public XmlProcessor<String> buildXmlProcessor() {
+                return processor;
+            }
+        };
+        assertSame(processor, builder.setControllerPooling(false).setStopAtFirstResult(false).buildXmlProcessor());
+        try {
+            builder.setControllerPooling(true);
+            fail("Expected an exception");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    private static final class MinimalXmlProcessor implements XmlProcessor<String> {
+        private final XmlProcessor<String> delegate;
+
+        private MinimalXmlProcessor(XmlProcessor<String> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String execute(Reader reader) throws XmlProcessorException {
+            return delegate.execute(reader);
+        }
+
+        @Override
+        public String execute(InputStream inputStream) throws XmlProcessorException {
+            return delegate.execute(inputStream);
+        }
+    }
+
+    public static final class NameProcessor {
+        @Node("root")
+        public String root(@Node("name") String name) {
+            return name;
+        }
+    }
+}
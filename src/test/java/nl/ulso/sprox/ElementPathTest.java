@@ -0,0 +1,162 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static nl.ulso.sprox.SproxTests.testControllers;
+import static nl.ulso.sprox.SproxTests.testProcessor;
+
+public class ElementPathTest {
+    private static final String FEED = "<root><feed>" +
+            "<title>F</title>" +
+            "<entry><title>E1</title></entry>" +
+            "<entry><title>E2</title><source><title>S</title></source></entry>" +
+            "</feed></root>";
+
+    @Test
+    public void testThatPlainNameMatchesEverywhere() throws Exception {
+        testControllers("F,E1,E2,S", FEED, new TitleController());
+    }
+
+    @Test
+    public void testThatChildPathMatchesChildrenOnly() throws Exception {
+        testControllers("F", FEED, new FeedTitleController());
+    }
+
+    @Test
+    public void testThatDescendantPathMatchesAllDescendants() throws Exception {
+        testControllers("E1,E2,S", FEED, new EntryDescendantTitleController());
+    }
+
+    @Test
+    public void testThatAnchoredPathMatchesFromRootOnly() throws Exception {
+        testControllers("E1,E2", FEED, new AnchoredEntryTitleController());
+        testControllers("", "<root><wrapper><feed><entry><title>E</title></entry></feed></wrapper></root>",
+                new AnchoredEntryTitleController());
+    }
+
+    @Test
+    public void testThatMethodsWithSameNameAndDifferentPathsAreTriggeredSeparately() throws Exception {
+        testControllers("feed:F,entry:E1,entry:E2,source:S", FEED, new MultiplePathsController());
+    }
+
+    @Test
+    public void testThatStepsInPathsHaveNamespaces() throws Exception {
+        testControllers("E", "<root xmlns=\"urn:a\" xmlns:b=\"urn:b\">" +
+                "<b:entry><title>E</title></b:entry>" +
+                "<entry><title>X</title></entry>" +
+                "</root>", new NamespacedPathController());
+    }
+
+    @Test
+    public void testThatSkippingUnknownSubtreesTakesPathsIntoAccount() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerObject(new EntryDescendantTitleController())
+                .setSkipUnknownSubtrees(true)
+                .buildXmlProcessor();
+        testProcessor("E", "<root><entry><title>E</title><extension><title>X</title></extension></entry></root>",
+                processor);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatOnlyLastStepMayLeaveOutName() throws Exception {
+        createXmlProcessorBuilder(String.class).addControllerObject(new InvalidPathController());
+    }
+
+    private static String join(List<String> values) {
+        return String.join(",", values);
+    }
+
+    public static final class TitleController {
+        @Node("root")
+        public String root(List<String> titles) {
+            return join(titles);
+        }
+
+        @Node("title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+
+    public static final class FeedTitleController {
+        @Node("root")
+        public String root(List<String> titles) {
+            return join(titles);
+        }
+
+        @Node("feed/title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+
+    public static final class EntryDescendantTitleController {
+        @Node("root")
+        public String root(List<String> titles) {
+            return join(titles);
+        }
+
+        @Node("entry//title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+
+    public static final class AnchoredEntryTitleController {
+        @Node("root")
+        public String root(Optional<List<String>> titles) {
+            return titles.map(ElementPathTest::join).orElse("");
+        }
+
+        @Node("/root/feed/entry/title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+
+    public static final class MultiplePathsController {
+        @Node("root")
+        public String root(List<String> titles) {
+            return join(titles);
+        }
+
+        @Node("feed/title")
+        public String feedTitle(@Node("title") String title) {
+            return "feed:" + title;
+        }
+
+        @Node("entry/title")
+        public String entryTitle(@Node("title") String title) {
+            return "entry:" + title;
+        }
+
+        @Node("source/title")
+        public String sourceTitle(@Node("title") String title) {
+            return "source:" + title;
+        }
+    }
+
+    @Namespaces({@Namespace(value = "urn:a", shorthand = "a"), @Namespace(value = "urn:b", shorthand = "b")})
+    public static final class NamespacedPathController {
+        @Node("root")
+        public String root(List<String> titles) {
+            return join(titles);
+        }
+
+        @Node("b:entry/title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+
+    public static final class InvalidPathController {
+        @Node("a:/title")
+        public String title(@Node("title") String title) {
+            return title;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Optional;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ExecutionStatePoolingTest {
+    private static final String[] DOCUMENTS = {
+            "<root a=\"1\"><title>first</title><node title=\"x\"><node title=\"y\"/></node></root>",
+            "<root a=\"2\"><title>second</title><node title=\"z\"/></root>",
+            "<root a=\"3\"><node title=\"p\"><node title=\"q\"><node title=\"r\"/></node></node></root>"
+    };
+    private static final String[] EXPECTED = {
+            "1:first:[x[y]]",
+            "2:second:[z]",
+            "3:-:[p[q[r]]]"
+    };
+
+    @Test
+    public void testThatPooledStateIsResetBetweenDocuments() throws Exception {
+        final XmlProcessor<String> processor = createProcessor();
+        for (int i = 0; i < 10; i++) {
+            final int document = i % DOCUMENTS.length;
+            assertEquals(EXPECTED[document], processor.execute(new StringReader(DOCUMENTS[document])));
+        }
+    }
+
+    @Test
+    public void testThatPooledStateIsNotReusedAfterFailure() throws Exception {
+        final XmlProcessor<String> processor = createProcessor();
+        try {
+            processor.execute(new StringReader("<root a=\"4\"><title>oops</title><node title=\"broken\"><node title=\"deeper\"></root>"));
+            fail("Expected an exception");
+        } catch (XmlProcessorException expected) {
+            // The state of the failed execution is not pooled
+        }
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            assertEquals(EXPECTED[i], processor.execute(new StringReader(DOCUMENTS[i])));
+        }
+    }
+
+    @Test
+    public void testThatNamesAreResolvedAgainInEveryDocument() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(FirstNamespaceProcessor.class)
+                .addControllerClass(SecondNamespaceProcessor.class)
+                .setExecutionStatePooling(true)
+                .buildXmlProcessor();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("first:1", processor.execute(
+                    new StringReader("<x:root xmlns:x=\"urn:first\"><x:value>1</x:value></x:root>")));
+            assertEquals("second:2", processor.execute(
+                    new StringReader("<x:root xmlns:x=\"urn:second\"><x:other>2</x:other></x:root>")));
+        }
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(TreeProcessor.class)
+                .setExecutionStatePooling(true)
+                .buildXmlProcessor();
+    }
+
+    @Namespace("urn:first")
+    public static final class FirstNamespaceProcessor {
+        @Node("root")
+        public String root(@Node("value") String value) {
+            return "first:" + value;
+        }
+    }
+
+    @Namespace("urn:second")
+    public static final class SecondNamespaceProcessor {
+        @Node("root")
+        public String root(@Node("other") String other) {
+            return "second:" + other;
+        }
+    }
+
+    public static final class TreeProcessor {
+        @Node("root")
+        public String root(@Attribute("a") String a, @Node("title") Optional<String> title, List<String> nodes) {
+            return a + ":" + title.orElse("-") + ":" + nodes;
+        }
+
+        @Recursive
+        @Node("node")
+        public String node(@Attribute("title") String title, Optional<List<String>> nodes) {
+            return title + nodes.map(List::toString).orElse("");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package nl.ulso.sprox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class InputSourceTest {
+    private static final String XML = "<root a=\"é\">€ &amp; ü</root>";
+    private static final String EXPECTED = "é|€ & ü";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testByteArrayRange() throws Exception {
+        final byte[] xml = XML.getBytes(UTF_8);
+        final byte[] bytes = new byte[xml.length + 20];
+        System.arraycopy(xml, 0, bytes, 10, xml.length);
+        assertEquals(EXPECTED, createProcessor().execute(bytes, 10, xml.length));
+    }
+
+    @Test
+    public void testHeapBufferFromPositionToLimit() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(("garbage" + XML + "garbage").getBytes(UTF_8));
+        buffer.position(7).limit(buffer.capacity() - 7);
+        assertEquals(EXPECTED, createProcessor().execute(buffer));
+        assertEquals(7, buffer.position());
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        final byte[] xml = XML.getBytes(UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(xml.length);
+        buffer.put(xml).flip();
+        assertEquals(EXPECTED, createProcessor().execute(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testBufferWithDeclaredEncoding() throws Exception {
+        final String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root a=\"é\">ü</root>";
+        assertEquals("é|ü", createProcessor().execute(ByteBuffer.wrap(xml.getBytes(ISO_8859_1))));
+    }
+
+    @Test
+    public void testCharSequence() throws Exception {
+        assertEquals(EXPECTED, createProcessor().execute(new StringBuilder(XML)));
+        assertEquals(EXPECTED, createProcessor().execute(XML));
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        final Path path = folder.newFile("document.xml").toPath();
+        Files.write(path, XML.getBytes(UTF_8));
+        assertEquals(EXPECTED, createProcessor().execute(path));
+    }
+
+    /**
+     * Creates a sparse file of 4.5GB, with elements at the start and at the end. In between are comments of 512MB
+     * each, filled with holes.
+     */
+    @Test
+    public void testFileLargerThan4GB() throws Exception {
+        final long segmentSize = 512L * 1024 * 1024;
+        final Path path = folder.newFile("large.xml").toPath();
+        try (FileChannel channel = FileChannel.open(path, WRITE)) {
+            channel.write(ByteBuffer.wrap("<root><a>1</a><!--".getBytes(UTF_8)), 0);
+            for (int i = 1; i < 9; i++) {
+                channel.write(ByteBuffer.wrap("--><!--".getBytes(UTF_8)), i * segmentSize);
+            }
+            channel.write(ByteBuffer.wrap("--><b>2</b></root>".getBytes(UTF_8)), 9 * segmentSize);
+        }
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .setEngine(Engine.TOKENIZER)
+                .addControllerClass(LargeFileProcessor.class)
+                .buildXmlProcessor();
+        assertEquals("1|2", processor.execute(path));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testMissingFile() throws Exception {
+        createProcessor().execute(folder.getRoot().toPath().resolve("missing.xml"));
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(RootProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    public static final class RootProcessor {
+        @Node("root")
+        public String root(@Attribute("a") String a, @Node("root") String content) {
+            return a + "|" + content;
+        }
+    }
+
+    public static final class LargeFileProcessor {
+        @Node("root")
+        public String root(@Node("a") String a, @Node("b") String b) {
+            return a + "|" + b;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package nl.ulso.sprox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds a processor for a controller with thousands of methods, each on an element of its own. Building the automaton
+ * over the paths of those methods used to take over a minute.
+ */
+public class LargeControllerTest {
+    private static final int METHOD_COUNT = 2000;
+    private static final long MAX_BUILD_MILLIS = 5000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatProcessorForLargeControllerIsBuiltQuickly() throws Exception {
+        final Class<?> controllerClass = compileController();
+        final long start = System.nanoTime();
+        final XmlProcessor<Integer> processor = createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(controllerClass)
+                .buildXmlProcessor();
+        final long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("Building the processor took " + millis + " ms", millis < MAX_BUILD_MILLIS);
+        assertEquals(Integer.valueOf(3), processor.execute(
+                "<root><e0 v=\"a\"/><other><e1 v=\"b\"/></other><e" + (METHOD_COUNT - 1) + " v=\"c\"/></root>"));
+    }
+
+    private Class<?> compileController() throws Exception {
+        final Path sources = folder.newFolder("src").toPath();
+        final Path classes = folder.newFolder("classes").toPath();
+        final StringBuilder builder = new StringBuilder("package test.large;\n")
+                .append("import nl.ulso.sprox.*;\n")
+                .append("import java.util.List;\n")
+                .append("public class Controller {\n")
+                .append("    @Node(\"root\")\n")
+                .append("    public Integer root(List<String> values) {\n")
+                .append("        return values.size();\n")
+                .append("    }\n");
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            builder.append("    @Node(\"e").append(i).append("\")\n")
+                    .append("    public String e").append(i).append("(@Attribute(\"v\") String v) {\n")
+                    .append("        return v;\n")
+                    .append("    }\n");
+        }
+        final Path source = sources.resolve("Controller.java");
+        Files.writeString(source, builder.append("}\n").toString(), UTF_8);
+        final Path sprox = Path.of(XmlProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int status = compiler.run(null, null, null, "-proc:none", "-classpath", sprox.toString(),
+                "-d", classes.toString(), source.toString());
+        assertEquals("Compilation of controller failed", 0, status);
+        final ClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader());
+        return loader.loadClass("test.large.Controller");
+    }
+}
@@ -0,0 +1,84 @@
+package nl.ulso.sprox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs Sprox as a named module, with controllers in a module of their own that opens its package to Sprox, as the
+ * README describes.
+ */
+public class ModulePathTest {
+    private static final String MODULE_INFO = "module test.controllers {\n"
+            + "    requires nl.ulso.sprox;\n"
+            + "    uses nl.ulso.sprox.XmlProcessorBuilderFactory;\n"
+            + "    opens test.controllers to nl.ulso.sprox;\n"
+            + "    provides java.util.concurrent.Callable with test.controllers.Runner;\n"
+            + "}\n";
+
+    private static final String RUNNER = "package test.controllers;\n"
+            + "import nl.ulso.sprox.*;\n"
+            + "import java.io.StringReader;\n"
+            + "import java.util.ServiceLoader;\n"
+            + "public class Runner implements java.util.concurrent.Callable<String> {\n"
+            + "    public String call() throws Exception {\n"
+            + "        XmlProcessorBuilderFactory factory = ServiceLoader.load(Runner.class.getModule().getLayer(),\n"
+            + "                XmlProcessorBuilderFactory.class).findFirst().orElseThrow();\n"
+            + "        XmlProcessor<String> processor = factory.createXmlProcessorBuilder(String.class)\n"
+            + "                .addControllerClass(Controller.class).buildXmlProcessor();\n"
+            + "        return processor.execute(new StringReader(\"<root><name>module</name></root>\"));\n"
+            + "    }\n"
+            + "    public static class Controller {\n"
+            + "        @Node(\"root\")\n"
+            + "        public String root(@Node(\"name\") String name) {\n"
+            + "            return \"Hello, \" + name;\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatControllerInNamedModuleIsInvoked() throws Exception {
+        final Path sprox = Path.of(XmlProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assumeTrue("Sprox is not built as a module", Files.exists(sprox.resolve("module-info.class")));
+        final Path classes = compileModule(sprox);
+        final Configuration configuration = ModuleLayer.boot().configuration()
+                .resolve(ModuleFinder.of(sprox, classes), ModuleFinder.of(), Set.of("test.controllers"));
+        final ModuleLayer layer = ModuleLayer.boot()
+                .defineModulesWithOneLoader(configuration, ClassLoader.getPlatformClassLoader());
+        getClass().getModule().addUses(Callable.class);
+        final Callable<?> runner = ServiceLoader.load(layer, Callable.class).findFirst().orElseThrow();
+        assertEquals("Hello, module", runner.call());
+    }
+
+    private Path compileModule(Path sprox) throws IOException {
+        final Path sources = folder.newFolder("src").toPath();
+        final Path classes = folder.newFolder("classes").toPath();
+        Files.writeString(sources.resolve("module-info.java"), MODULE_INFO, UTF_8);
+        Files.createDirectories(sources.resolve("test/controllers"));
+        Files.writeString(sources.resolve("test/controllers/Runner.java"), RUNNER, UTF_8);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int status = compiler.run(null, null, null, "-proc:none", "--module-path", sprox.toString(),
+                "-d", classes.toString(), sources.resolve("module-info.java").toString(),
+                sources.resolve("test/controllers/Runner.java").toString());
+        assertEquals("Compilation of test module failed", 0, status);
+        return classes;
+    }
+}
@@ -0,0 +1,22 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the Java 22 classes of the multi-release JAR are used. Runs only in the build on JDK 22 and later, in
+ * the execution of the tests against the JAR; see the {@code java22} profile.
+ */
+public class MultiReleaseTest {
+    @Test
+    public void testThatFileMappingForJava22IsUsed() throws Exception {
+        assumeTrue("Not testing the multi-release JAR", Boolean.getBoolean("sprox.multiRelease"));
+        final Class<?> fileMapping = Class.forName("nl.ulso.sprox.impl.FileMapping");
+        assertTrue("FileMapping doesn't map a MemorySegment", Arrays.stream(fileMapping.getDeclaredFields())
+                .anyMatch(field -> field.getType().getName().equals("java.lang.foreign.MemorySegment")));
+    }
+}
@@ -3,6 +3,7 @@ package nl.ulso.sprox;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Optional;
 
 import static java.lang.Double.compare;
 import static java.lang.Double.doubleToLongBits;
@@ -33,6 +34,58 @@ public class NodeAttributeTest {
                 new PrimitiveInjectionProcessor());
     }
 
+    @Test
+    public void testThatAttributesAreExtractedFromManyAttributes() throws Exception {
+        testControllers("b=2, h=8, j=10", "<root a=\"1\" b=\"2\" c=\"3\" d=\"4\" e=\"5\" f=\"6\" g=\"7\" h=\"8\" "
+                + "i=\"9\" j=\"10\"/>", new SelectedAttributesProcessor());
+    }
+
+    @Test
+    public void testThatSameAttributeCanBeInjectedTwice() throws Exception {
+        testControllers("1/1", "<root a=\"1\"/>", new DuplicateAttributeProcessor());
+    }
+
+    @Test
+    public void testThatMissingAttributeOfOtherMethodDoesNotLeak() throws Exception {
+        testControllers("[first:1, second:none]", "<root><node a=\"1\" b=\"2\"/><node b=\"3\"/></root>",
+                new AttributeListProcessor(), new RequiredAttributeProcessor(), new OptionalAttributeProcessor());
+    }
+
+    public static final class SelectedAttributesProcessor {
+        @Node("root")
+        public String root(@Attribute("j") int j, @Attribute("b") int b, @Attribute("h") String h) {
+            return "b=" + b + ", h=" + h + ", j=" + j;
+        }
+    }
+
+    public static final class DuplicateAttributeProcessor {
+        @Node("root")
+        public String root(@Attribute("a") String first, @Attribute("a") String second) {
+            return first + "/" + second;
+        }
+    }
+
+    public static final class AttributeListProcessor {
+        @Node("root")
+        public String root(List<String> values) {
+            return values.toString();
+        }
+    }
+
+    public static final class RequiredAttributeProcessor {
+        @Node("node")
+        public String first(@Attribute("a") String a, @Attribute("c") Optional<String> c) {
+            return "first:" + a + c.orElse("");
+        }
+    }
+
+    public static final class OptionalAttributeProcessor {
+        @Node("node")
+        public String second(@Attribute("c") Optional<String> c) {
+            return "second:" + c.orElse("none");
+        }
+    }
+
     public static final class NestedNodeAttributeProcessor {
         @Node("root")
         public String getNestedContent(List<Integer> numbers) {
@@ -26,6 +26,13 @@ public class ObjectInjectionTest {
         testControllers("", "<root3><node1>node1</node1><node2>node2</node2></root3>", ObjectInjector.class);
     }
 
+    @Test
+    public void testThatResultsFromDifferentDepthsAreInjectedInDocumentOrder() throws Exception {
+        testControllers("node1a,node2,node1b",
+                "<root4><node1>node1a</node1><wrapper><node2>node2</node2></wrapper><node1>node1b</node1></root4>",
+                ObjectInjector.class);
+    }
+
     public static final class ObjectInjector {
         @Node("root1")
         public String root1(String node) {
@@ -48,6 +55,11 @@ public class ObjectInjectionTest {
             return "";
         }
 
+        @Node("root4")
+        public String root4(List<String> nodes) {
+            return String.join(",", nodes);
+        }
+
         @Node("node1")
         public String node1(@Node("node1") String value) {
             return value;
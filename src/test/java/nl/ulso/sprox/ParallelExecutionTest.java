@@ -0,0 +1,210 @@
+package nl.ulso.sprox;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+public class ParallelExecutionTest {
+    private static final int ENTRY_COUNT = 20000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = folder.getRoot().toPath().resolve("feed.xml");
+        Files.write(path, createDocument(ENTRY_COUNT).getBytes(UTF_8));
+    }
+
+    @Test
+    public void testThatParallelResultIsSameAsSequentialResult() throws Exception {
+        final XmlProcessor<String> processor = createProcessor();
+        final String expected = processor.execute(path);
+        assertTrue(expected.startsWith("Feed:" + ENTRY_COUNT + ":"));
+        assertEquals(expected, processor.executeParallel(path, "feed/entry"));
+    }
+
+    @Test
+    public void testThatParallelResultIsSameOnExecutor() throws Exception {
+        final XmlProcessor<String> processor = createProcessor();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(processor.execute(path), processor.executeParallel(path, "/a:feed/a:entry", executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThatResultsArePassedToSinkInDocumentOrder() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(FeedProcessor.class)
+                .addResultSink((Entry entry) -> ids.add(entry.id), Entry.class)
+                .buildXmlProcessor();
+        assertTrue(processor.executeParallel(path, "feed/entry").startsWith("Feed:0:20:Parallel;999;1999;"));
+        assertEquals(ENTRY_COUNT, ids.size());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(Integer.toString(i), ids.get(i));
+        }
+    }
+
+    @Test
+    public void testThatFileWithoutRecordsIsProcessed() throws Exception {
+        Files.write(path, createDocument(0).getBytes(UTF_8));
+        assertEquals("Feed:0:0:Parallel", createProcessor().executeParallel(path, "feed/entry"));
+    }
+
+    @Test
+    public void testThatByteOrderMarkIsSkipped() throws Exception {
+        final XmlProcessor<String> processor = createProcessor();
+        final String expected = processor.execute(path);
+        final byte[] document = createDocument(ENTRY_COUNT).getBytes(UTF_8);
+        final byte[] bytes = new byte[document.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(document, 0, bytes, 3, document.length);
+        Files.write(path, bytes);
+        assertEquals(expected, processor.executeParallel(path, "feed/entry"));
+    }
+
+    @Test
+    public void testThatFileInOtherEncodingIsProcessed() throws Exception {
+        Files.write(path, createDocument(ENTRY_COUNT)
+                .replace("encoding=\"UTF-8\"", "encoding=\"ISO-8859-1\"")
+                .replace("<title>Parallel</title>", "<title>Parall\u00e8le</title>")
+                .getBytes(ISO_8859_1));
+        final XmlProcessor<String> processor = createProcessor();
+        final String expected = processor.execute(path);
+        assertTrue(expected.startsWith("Feed:" + ENTRY_COUNT + ":20:Parall\u00e8le,"));
+        assertEquals(expected, processor.executeParallel(path, "feed/entry"));
+    }
+
+    @Test
+    public void testThatDocumentTypeWithInternalSubsetIsSkipped() throws Exception {
+        Files.write(path, createDocument(ENTRY_COUNT).replace("?>\n", "?>\n<!DOCTYPE feed [\n"
+                + "  <!-- Don't split here: <entry id=\"doctype\"> -->\n"
+                + "  <!ENTITY arrow \"a>b\">\n"
+                + "  <!ATTLIST entry id CDATA #IMPLIED>\n"
+                + "]>\n").getBytes(UTF_8));
+        final XmlProcessor<String> processor = createProcessor();
+        final String expected = processor.execute(path);
+        assertTrue(expected.startsWith("Feed:" + ENTRY_COUNT + ":"));
+        assertEquals(expected, processor.executeParallel(path, "feed/entry"));
+    }
+
+    @Test
+    public void testThatProcessingStopsAtFirstResult() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        final XmlProcessor<Entry> processor = createXmlProcessorBuilder(Entry.class)
+                .addControllerClass(FeedProcessor.class)
+                .addResultSink((Entry entry) -> ids.add(entry.id), Entry.class)
+                .setStopAtFirstResult(true)
+                .buildXmlProcessor();
+        assertEquals("0", processor.execute(path).id);
+        assertEquals("0", processor.executeParallel(path, "feed/entry").id);
+        assertEquals(List.of("0", "0"), ids);
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatErrorInRecordIsThrown() throws Exception {
+        final String document = createDocument(ENTRY_COUNT);
+        final int index = document.indexOf("<title>" + ENTRY_COUNT / 2 + "</title>");
+        Files.write(path, (document.substring(0, index) + "<title>broken</x:extra>" + document.substring(index))
+                .getBytes(UTF_8));
+        createProcessor().executeParallel(path, "feed/entry");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatRecordsMustBeBelowRootElement() throws Exception {
+        createProcessor().executeParallel(path, "feed");
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(FeedProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    private static String createDocument(int entryCount) {
+        final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<feed xmlns=\"urn:feed\" xmlns:x=\"urn:extra\">\n")
+                .append("  <title>Parallel</title>\n");
+        for (int i = 0; i < entryCount; i++) {
+            builder.append("  <entry id=\"").append(i).append("\"><title>").append(i).append("</title>");
+            if (i % 7 == 0) {
+                builder.append("<x:extra><![CDATA[<not an element>]]></x:extra>");
+            }
+            builder.append("</entry>\n");
+            if (i % 1000 == 999) {
+                builder.append("  <!-- <entry id=\"comment\"/> -->\n  <link href=\"").append(i).append("\"/>\n");
+            }
+        }
+        return builder.append("</feed>\n").toString();
+    }
+
+    @Namespace("urn:feed")
+    @Namespace(shorthand = "x", value = "urn:extra")
+    public static final class FeedProcessor {
+        @Node("feed")
+        public String feed(@Node("title") String title, Optional<List<Entry>> entries, Optional<List<Link>> links) {
+            final List<Entry> list = entries.orElse(List.of());
+            final StringBuilder builder = new StringBuilder("Feed:").append(list.size()).append(':')
+                    .append(links.map(List::size).orElse(0)).append(':').append(title);
+            for (Entry entry : list) {
+                builder.append(',').append(entry.id).append('=').append(entry.title).append(entry.extra ? "+" : "");
+            }
+            links.ifPresent(l -> l.forEach(link -> builder.append(";").append(link.href)));
+            return builder.toString();
+        }
+
+        @Node("entry")
+        public Entry entry(@Attribute("id") String id, @Node("title") String title,
+                           @Node("x:extra") Optional<String> extra) {
+            return new Entry(id, title, extra.isPresent());
+        }
+
+        @Node("link")
+        public Link link(@Attribute("href") String href) {
+            return new Link(href);
+        }
+    }
+
+    public static final class Entry {
+        private final String id;
+        private final String title;
+        private final boolean extra;
+
+        Entry(String id, String title, boolean extra) {
+            this.id = id;
+            this.title = title;
+            this.extra = extra;
+        }
+    }
+
+    public static final class Link {
+        private final String href;
+
+        Link(String href) {
+            this.href = href;
+        }
+    }
+}
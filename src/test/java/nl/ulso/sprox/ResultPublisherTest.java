@@ -0,0 +1,198 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+public class ResultPublisherTest {
+
+    @Test
+    public void testThatAllResultsArePublishedInOrder() throws Exception {
+        final DocumentPublisher document = new DocumentPublisher(createParts(100, 7));
+        final ResultSubscriber subscriber = new ResultSubscriber(Long.MAX_VALUE);
+        createProcessor().publish(document).subscribe(subscriber);
+        assertEquals(100, subscriber.results.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.toString(i), subscriber.results.get(i));
+        }
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testThatProcessingPausesWithoutDemand() throws Exception {
+        final DocumentPublisher document = new DocumentPublisher(createParts(100, 1));
+        final ResultSubscriber subscriber = new ResultSubscriber(1);
+        createProcessor().publish(document).subscribe(subscriber);
+        assertEquals(List.of("0"), subscriber.results);
+        final int requested = document.requested;
+        assertTrue("Parts requested: " + requested, requested < 10);
+        subscriber.subscription.request(2);
+        assertEquals(List.of("0", "1", "2"), subscriber.results);
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(100, subscriber.results.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testThatCancellationCancelsDocument() throws Exception {
+        final DocumentPublisher document = new DocumentPublisher(createParts(100, 1));
+        final ResultSubscriber subscriber = new ResultSubscriber(5);
+        createProcessor().publish(document).subscribe(subscriber);
+        subscriber.subscription.cancel();
+        assertTrue(document.cancelled);
+        subscriber.subscription.request(5);
+        assertEquals(5, subscriber.results.size());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testThatInvalidDocumentIsPublishedAsError() throws Exception {
+        final DocumentPublisher document = new DocumentPublisher(List.of("<root><record>1</record>", "</broken>",
+                "<record>2</record></root>"));
+        final ResultSubscriber subscriber = new ResultSubscriber(Long.MAX_VALUE);
+        createProcessor().publish(document).subscribe(subscriber);
+        assertEquals(List.of("1"), subscriber.results);
+        assertTrue(subscriber.error instanceof XmlProcessorException);
+        assertTrue(document.cancelled);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testThatDocumentErrorIsPublished() throws Exception {
+        final IllegalStateException failure = new IllegalStateException();
+        final ResultSubscriber subscriber = new ResultSubscriber(Long.MAX_VALUE);
+        createProcessor().publish(s -> s.onError(failure)).subscribe(subscriber);
+        assertSame(failure, subscriber.error);
+    }
+
+    @Test
+    public void testThatNonPositiveRequestIsPublishedAsError() throws Exception {
+        final DocumentPublisher document = new DocumentPublisher(createParts(10, 1));
+        final ResultSubscriber subscriber = new ResultSubscriber(0);
+        createProcessor().publish(document).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(document.cancelled);
+    }
+
+    @Test
+    public void testThatEverySubscriberGetsAllResults() throws Exception {
+        final Flow.Publisher<String> publisher = createProcessor().publish(new DocumentPublisher(createParts(10, 3)));
+        for (int i = 0; i < 2; i++) {
+            final ResultSubscriber subscriber = new ResultSubscriber(Long.MAX_VALUE);
+            publisher.subscribe(subscriber);
+            assertEquals(10, subscriber.results.size());
+            assertTrue(subscriber.completed);
+        }
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(RecordProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    private static List<String> createParts(int records, int recordsPerPart) {
+        final List<String> parts = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < records; i++) {
+            builder.append("<record>").append(i).append("</record>");
+            if ((i + 1) % recordsPerPart == 0) {
+                parts.add(builder.toString());
+                builder.setLength(0);
+            }
+        }
+        parts.add(builder.append("</root>").toString());
+        return parts;
+    }
+
+    public static final class RecordProcessor {
+        @Node("record")
+        public String record(@Node("record") String content) {
+            return content;
+        }
+    }
+
+    /**
+     * Publishes a document in parts, synchronously, one part per request.
+     */
+    private static final class DocumentPublisher implements Flow.Publisher<ByteBuffer> {
+        private final List<String> parts;
+        private int requested;
+        private boolean cancelled;
+
+        private DocumentPublisher(List<String> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            requested = 0;
+            cancelled = false;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next = 0;
+
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    for (long i = 0; i < n && !cancelled && next < parts.size(); i++) {
+                        subscriber.onNext(ByteBuffer.wrap(parts.get(next++).getBytes(UTF_8)));
+                    }
+                    if (!cancelled && next == parts.size()) {
+                        next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class ResultSubscriber implements Flow.Subscriber<String> {
+        private final long initialRequest;
+        private final List<String> results = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed;
+        private Throwable error;
+
+        private ResultSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class ResultSinkTest {
+    private static final String XML = "<root><entry id=\"1\"/><group><entry id=\"2\"/></group><entry id=\"3\"/></root>";
+
+    @Test
+    public void testThatResultsArePassedToSinkInOrder() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(EntryProcessor.class)
+                .addResultSink((Entry entry) -> ids.add(entry.id), Entry.class)
+                .buildXmlProcessor();
+        processor.execute(new StringReader(XML));
+        assertEquals(List.of("1", "2", "3"), ids);
+    }
+
+    @Test
+    public void testThatResultsPassedToSinkAreNotInjected() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(EntryProcessor.class)
+                .addResultSink(entry -> {
+                }, Entry.class)
+                .buildXmlProcessor();
+        assertEquals("0 entries", processor.execute(new StringReader(XML)));
+    }
+
+    @Test
+    public void testThatResultsAreInjectedWithoutSink() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(EntryProcessor.class)
+                .buildXmlProcessor();
+        assertEquals("3 entries", processor.execute(new StringReader(XML)));
+    }
+
+    @Test
+    public void testThatLastResultPassedToSinkIsStillTheResult() throws Exception {
+        final List<Entry> entries = new ArrayList<>();
+        final XmlProcessor<Entry> processor = createXmlProcessorBuilder(Entry.class)
+                .addControllerClass(EntryProcessor.class)
+                .addResultSink(entries::add, Entry.class)
+                .buildXmlProcessor();
+        final Entry entry = processor.execute(new StringReader(XML));
+        assertEquals(3, entries.size());
+        assertEquals("3", entry.id);
+    }
+
+    @Test
+    public void testThatSinkCanBeReplaced() throws Exception {
+        final List<String> first = new ArrayList<>();
+        final List<String> second = new ArrayList<>();
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(EntryProcessor.class)
+                .addResultSink((Entry entry) -> first.add(entry.id), Entry.class)
+                .addResultSink((Entry entry) -> second.add(entry.id), Entry.class)
+                .buildXmlProcessor();
+        processor.execute(new StringReader(XML));
+        assertEquals(List.of(), first);
+        assertEquals(List.of("1", "2", "3"), second);
+    }
+
+    public static final class Entry {
+        private final String id;
+
+        Entry(String id) {
+            this.id = id;
+        }
+    }
+
+    public static final class EntryProcessor {
+        @Node("root")
+        public String root(Optional<List<Entry>> entries) {
+            return entries.map(List::size).orElse(0) + " entries";
+        }
+
+        @Node("entry")
+        public Entry entry(@Attribute("id") String id) {
+            return new Entry(id);
+        }
+    }
+}
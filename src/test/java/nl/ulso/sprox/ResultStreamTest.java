@@ -0,0 +1,208 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+public class ResultStreamTest {
+    private static final int RECORD_COUNT = 100000;
+    private static final byte[] XML = createDocument();
+
+    @Test
+    public void testThatAllResultsAreStreamedInOrder() throws Exception {
+        try (Stream<String> records = createProcessor().stream(new ByteArrayInputStream(XML))) {
+            final List<String> list = records.collect(Collectors.toList());
+            assertEquals(RECORD_COUNT, list.size());
+            assertEquals("0", list.get(0));
+            assertEquals(Integer.toString(RECORD_COUNT - 1), list.get(RECORD_COUNT - 1));
+        }
+    }
+
+    @Test
+    public void testThatDocumentIsReadOnlyAsFarAsNeeded() throws Exception {
+        final TrackingInputStream input = new TrackingInputStream(new ByteArrayInputStream(XML));
+        try (Stream<String> records = createProcessor().stream(input)) {
+            assertEquals(List.of("0", "1", "2"), records.limit(3).collect(Collectors.toList()));
+        }
+        assertTrue("Bytes read: " + input.count, input.count < XML.length / 10);
+    }
+
+    @Test
+    public void testThatClosingStreamClosesInputStream() throws Exception {
+        final TrackingInputStream input = new TrackingInputStream(new ByteArrayInputStream(XML));
+        final Stream<String> records = createProcessor().stream(input);
+        assertEquals("0", records.findFirst().orElseThrow());
+        assertFalse(input.closed);
+        records.close();
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testThatCompressedDocumentIsStreamed() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(XML);
+        }
+        final TrackingInputStream input = new TrackingInputStream(new ByteArrayInputStream(output.toByteArray()));
+        try (Stream<String> records = createProcessor().stream(input)) {
+            assertEquals(RECORD_COUNT, records.count());
+        }
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testThatErrorIsThrownAfterPrecedingResults() throws Exception {
+        final byte[] xml = "<root><record>1</record><record>2</broken></root>".getBytes(UTF_8);
+        try (Stream<String> records = createProcessor().stream(new ByteArrayInputStream(xml))) {
+            final Iterator<String> iterator = records.iterator();
+            assertEquals("1", iterator.next());
+            try {
+                iterator.next();
+                fail("Expected an exception");
+            } catch (XmlProcessorRuntimeException e) {
+                assertNotNull(e.getCause());
+            }
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testThatStreamedResultsAreNotRetained() throws Exception {
+        assertResultsAreNotRetained(createXmlProcessorBuilder(Record.class)
+                .addControllerClass(RecordObjectProcessor.class)
+                .buildXmlProcessor());
+    }
+
+    @Test
+    public void testThatStreamedResultsAreNotRetainedWhenOtherTypeIsInjected() throws Exception {
+        assertResultsAreNotRetained(createXmlProcessorBuilder(Record.class)
+                .addControllerClass(RecordObjectProcessor.class)
+                .addControllerClass(WrapperProcessor.class)
+                .buildXmlProcessor());
+    }
+
+    private static void assertResultsAreNotRetained(XmlProcessor<Record> processor) throws Exception {
+        try (Stream<Record> records = processor.stream(new ByteArrayInputStream(XML))) {
+            final Iterator<Record> iterator = records.iterator();
+            final WeakReference<Record> first = new WeakReference<>(iterator.next());
+            for (int i = 0; i < 10 && first.get() != null; i++) {
+                iterator.next();
+                System.gc();
+            }
+            assertNull(first.get());
+        }
+    }
+
+    @Test
+    public void testThatStreamedResultsAreInjected() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(RecordProcessor.class)
+                .addControllerClass(RootProcessor.class)
+                .buildXmlProcessor();
+        final byte[] xml = "<root><record>1</record><record>2</record></root>".getBytes(UTF_8);
+        try (Stream<String> records = processor.stream(new ByteArrayInputStream(xml))) {
+            assertEquals(List.of("1", "2", "1,2"), records.collect(Collectors.toList()));
+        }
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerClass(RecordProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    private static byte[] createDocument() {
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            builder.append("<record>").append(i).append("</record>");
+        }
+        return builder.append("</root>").toString().getBytes(UTF_8);
+    }
+
+    public static final class RecordProcessor {
+        @Node("record")
+        public String record(@Node("record") String content) {
+            return content;
+        }
+    }
+
+    public static final class RootProcessor {
+        @Node("root")
+        public String root(List<String> records) {
+            return String.join(",", records);
+        }
+    }
+
+    public static final class Record {
+        private final String content;
+
+        Record(String content) {
+            this.content = content;
+        }
+    }
+
+    public static final class RecordObjectProcessor {
+        @Node("record")
+        public Record record(@Node("record") String content) {
+            return new Record(content);
+        }
+    }
+
+    public static final class Wrapper {
+    }
+
+    public static final class WrapperProcessor {
+        @Node("root")
+        public Wrapper root(Optional<Wrapper> wrapper) {
+            return wrapper.orElseGet(Wrapper::new);
+        }
+    }
+
+    private static final class TrackingInputStream extends FilterInputStream {
+        private long count;
+        private boolean closed;
+
+        private TrackingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            final int n = super.read(bytes, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -11,12 +11,23 @@ import static org.junit.Assert.assertEquals;
  * Utility methods for testing Sprox
  */
 public final class SproxTests {
+    private static final String ENGINE_PROPERTY = "sprox.engine";
 
     private SproxTests() {
     }
 
+    /**
+     * Creates a builder for the engine set in the system property {@value #ENGINE_PROPERTY}, if any. This allows the
+     * complete test suite to be run for each engine.
+     */
     public static <T> XmlProcessorBuilder<T> createXmlProcessorBuilder(Class<T> resultClass) {
-        return new StaxBasedXmlProcessorBuilderFactory().createXmlProcessorBuilder(requireNonNull(resultClass));
+        final XmlProcessorBuilder<T> builder =
+                new StaxBasedXmlProcessorBuilderFactory().createXmlProcessorBuilder(requireNonNull(resultClass));
+        final String engine = System.getProperty(ENGINE_PROPERTY);
+        if (engine != null) {
+            builder.setEngine(Engine.valueOf(engine));
+        }
+        return builder;
     }
 
     public static <T> void testProcessor(T expected, String xml, XmlProcessor<T> processor) throws Exception {
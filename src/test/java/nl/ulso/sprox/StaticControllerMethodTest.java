@@ -0,0 +1,33 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import static nl.ulso.sprox.SproxTests.testControllers;
+
+public class StaticControllerMethodTest {
+    @Test
+    public void testThatStaticControllerMethodIsInvoked() throws Exception {
+        testControllers("Hello, static", "<root><name>static</name></root>", StaticController.class);
+    }
+
+    @Test
+    public void testThatStaticControllerMethodWithManyParametersIsInvoked() throws Exception {
+        testControllers("a,b,c,d,e", "<root a=\"a\" b=\"b\" c=\"c\" d=\"d\" e=\"e\"/>",
+                new StaticManyParametersController());
+    }
+
+    public static final class StaticController {
+        @Node("root")
+        public static String root(@Node("name") String name) {
+            return "Hello, " + name;
+        }
+    }
+
+    public static final class StaticManyParametersController {
+        @Node("root")
+        public static String root(@Attribute("a") String a, @Attribute("b") String b, @Attribute("c") String c,
+                                  @Attribute("d") String d, @Attribute("e") String e) {
+            return String.join(",", a, b, c, d, e);
+        }
+    }
+}
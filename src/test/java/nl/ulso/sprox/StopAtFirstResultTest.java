@@ -0,0 +1,69 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class StopAtFirstResultTest {
+    private static final String XML = "<root><item>1</item><item>2</item><item>3</item></root>";
+
+    @Test
+    public void testThatLastResultIsReturnedByDefault() throws Exception {
+        assertEquals("3", createProcessor(false).execute(new StringReader(XML)));
+    }
+
+    @Test
+    public void testThatFirstResultIsReturned() throws Exception {
+        assertEquals("1", createProcessor(true).execute(new StringReader(XML)));
+    }
+
+    @Test
+    public void testThatRestOfDocumentIsNotRead() throws Exception {
+        final String brokenXml = "<root><item>1</item><item>2</broken>";
+        assertEquals("1", createProcessor(true).execute(new StringReader(brokenXml)));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatRestOfDocumentIsReadByDefault() throws Exception {
+        final String brokenXml = "<root><item>1</item><item>2</broken>";
+        createProcessor(false).execute(new StringReader(brokenXml));
+    }
+
+    @Test
+    public void testThatControllerMethodsAfterResultAreNotInvoked() throws Exception {
+        final MarkerCounter counter = new MarkerCounter();
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerObject(new ItemFinder())
+                .addControllerObject(counter)
+                .setStopAtFirstResult(true)
+                .buildXmlProcessor();
+        processor.execute(new StringReader("<root><marker/><item>1</item><marker/><item>2</item></root>"));
+        assertEquals(1, counter.count);
+    }
+
+    private XmlProcessor<String> createProcessor(boolean stopAtFirstResult) {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerObject(new ItemFinder())
+                .setStopAtFirstResult(stopAtFirstResult)
+                .buildXmlProcessor();
+    }
+
+    public static final class ItemFinder {
+        @Node("item")
+        public String item(@Node("item") String value) {
+            return value;
+        }
+    }
+
+    public static final class MarkerCounter {
+        private int count;
+
+        @Node("marker")
+        public void marker() {
+            count++;
+        }
+    }
+}
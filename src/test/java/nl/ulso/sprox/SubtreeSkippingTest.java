@@ -0,0 +1,66 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static nl.ulso.sprox.SproxTests.testProcessor;
+
+public class SubtreeSkippingTest {
+    private static final String XML = "<root>" +
+            "<item>1</item>" +
+            "<extension><item>2</item><nested><item>3</item></nested></extension>" +
+            "<item>4</item>" +
+            "</root>";
+
+    @Test
+    public void testThatUnknownSubtreesAreProcessedByDefault() throws Exception {
+        testProcessor("1,2,3,4", XML, createProcessor(false));
+    }
+
+    @Test
+    public void testThatUnknownSubtreesAreSkipped() throws Exception {
+        testProcessor("1,4", XML, createProcessor(true));
+    }
+
+    @Test
+    public void testThatUnknownRootElementSkipsEverything() throws Exception {
+        testProcessor(null, "<unknown><root><item>1</item></root></unknown>",
+                createXmlProcessorBuilder(Void.class)
+                        .addControllerObject(new ItemCollector())
+                        .setSkipUnknownSubtrees(true)
+                        .buildXmlProcessor());
+    }
+
+    @Test
+    public void testThatContentOfCollectedNodesIsNeverSkipped() throws Exception {
+        testProcessor("1", "<root><item>1<unknown>2</unknown></item></root>", createProcessor(true));
+    }
+
+    private XmlProcessor<String> createProcessor(boolean skipUnknownSubtrees) {
+        return createXmlProcessorBuilder(String.class)
+                .addControllerObject(new ItemCollector())
+                .setSkipUnknownSubtrees(skipUnknownSubtrees)
+                .buildXmlProcessor();
+    }
+
+    public static final class ItemCollector {
+        @Node("root")
+        public String root(List<Integer> items) {
+            final StringBuilder builder = new StringBuilder();
+            for (Integer item : items) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(item);
+            }
+            return builder.toString();
+        }
+
+        @Node("item")
+        public Integer item(@Node("item") Integer value) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.*;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class TokenizerTest {
+
+    @Test
+    public void testThatReferencesAndCdataSectionsAreReplaced() throws Exception {
+        testTokenizer("x|<a & b> A é <c>", "<root a=\"x\">&lt;a &amp; b&gt; &#65; &#xE9; <![CDATA[<c>]]></root>");
+    }
+
+    @Test
+    public void testThatLineEndsAreNormalized() throws Exception {
+        testTokenizer("a b  c|1\n2\n3\n", "<root a=\"a\tb\r\n c\">1\r\n2\r3\n</root>");
+    }
+
+    @Test
+    public void testThatPrologAndEpilogAreSkipped() throws Exception {
+        testTokenizer("x|text", "<?xml version=\"1.0\"?>\n<!DOCTYPE root [\n<!ENTITY e \"]>\">\n<!-- ']' -->\n]>\n"
+                + "<?pi data?><!-- comment --><root a=\"x\">text</root>\n<!-- comment -->\n");
+    }
+
+    @Test
+    public void testThatNamesAndTextCanSpanBuffers() throws Exception {
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < 10000; i++) {
+            builder.append("<element-with-a-long-name attribute=\"").append(i).append("\">é&amp;").append(i)
+                    .append("</element-with-a-long-name>");
+        }
+        builder.append("</root>");
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .setEngine(Engine.TOKENIZER)
+                .addControllerClass(ElementsProcessor.class)
+                .buildXmlProcessor();
+        assertEquals("10000:9999=é&9999", processor.execute(new StringReader(builder.toString())));
+    }
+
+    @Test
+    public void testThatEncodingsAreDetected() throws Exception {
+        testEncoding(UTF_8, "<root a=\"é\">€</root>");
+        testEncoding(UTF_8, "\uFEFF<root a=\"é\">€</root>");
+        testEncoding(UTF_16, "<root a=\"é\">€</root>");
+        testEncoding(ISO_8859_1, "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root a=\"é\">ü</root>");
+    }
+
+    @Test
+    public void testThatPrefixedNamesAreResolved() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .setEngine(Engine.TOKENIZER)
+                .addControllerClass(NamespaceProcessor.class)
+                .buildXmlProcessor();
+        assertEquals("1:2:text", processor.execute(new StringReader(
+                "<n:root xmlns:n=\"namespace\" xmlns:o=\"other\" a=\"1\" o:b=\"2\">"
+                        + "<node xmlns=\"namespace\">text</node></n:root>")));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatMismatchedEndTagIsRejected() throws Exception {
+        testTokenizer("", "<root a=\"x\"><node></root></node>");
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatUndeclaredEntityIsRejected() throws Exception {
+        testTokenizer("", "<root a=\"x\">&undeclared;</root>");
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatUnclosedElementIsRejected() throws Exception {
+        testTokenizer("", "<root a=\"x\"><node>text</node>");
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatSecondRootElementIsRejected() throws Exception {
+        testTokenizer("", "<root a=\"x\"/><root a=\"y\"/>");
+    }
+
+    private static void testTokenizer(String expected, String xml) throws Exception {
+        assertEquals(expected, createProcessor().execute(new StringReader(xml)));
+    }
+
+    private static void testEncoding(Charset charset, String xml) throws Exception {
+        final String expected = xml.substring(xml.indexOf("a=\"") + 3, xml.indexOf("\">")) + "|"
+                + xml.substring(xml.indexOf("\">") + 2, xml.indexOf("</root>"));
+        assertEquals(expected, createProcessor().execute(new ByteArrayInputStream(xml.getBytes(charset))));
+    }
+
+    private static XmlProcessor<String> createProcessor() {
+        return createXmlProcessorBuilder(String.class)
+                .setEngine(Engine.TOKENIZER)
+                .addControllerClass(RootProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    public static final class RootProcessor {
+        @Node("root")
+        public String root(@Attribute("a") String a, @Node("root") String content) {
+            return a + "|" + content;
+        }
+    }
+
+    public static final class ElementsProcessor {
+        @Node("root")
+        public String root(List<String> elements) {
+            return elements.size() + ":" + elements.get(elements.size() - 1);
+        }
+
+        @Node("element-with-a-long-name")
+        public String element(@Attribute("attribute") String attribute,
+                              @Node("element-with-a-long-name") String content) {
+            return attribute + "=" + content;
+        }
+    }
+
+    @Namespace(value = "namespace", shorthand = "n")
+    @Namespace(value = "other", shorthand = "o")
+    public static final class NamespaceProcessor {
+        @Node("n:root")
+        public String root(@Attribute("n:a") String a, @Attribute("o:b") String b, @Node("n:node") String node) {
+            return a + ":" + b + ":" + node;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package nl.ulso.sprox;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+public class XmlFeederTest {
+    private static final String XML = "<?xml version=\"1.0\"?>\n<!-- feed -->\n<root a=\"x &amp; y\">"
+            + "<element id=\"1\">é<![CDATA[<one>]]></element><unknown><element id=\"0\">0</element></unknown>"
+            + "<element id=\"2\">€&#65;</element><empty/></root>";
+    private static final String EXPECTED = "x & y:[1=é<one>, 0=0, 2=€A]";
+
+    @Test
+    public void testThatDocumentCanBeFedInOnePart() throws Exception {
+        final XmlFeeder<String> feeder = createProcessor(false).newFeeder();
+        feeder.feed(ByteBuffer.wrap(XML.getBytes(UTF_8)));
+        assertFalse(feeder.isDone());
+        assertEquals(EXPECTED, feeder.complete());
+    }
+
+    @Test
+    public void testThatDocumentCanBeFedInPartsOfEverySize() throws Exception {
+        final byte[] bytes = XML.getBytes(UTF_8);
+        for (int size = 1; size <= bytes.length; size++) {
+            final XmlFeeder<String> feeder = createProcessor(false).newFeeder();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            for (int offset = 0; offset < bytes.length; offset += size) {
+                buffer.clear();
+                buffer.put(bytes, offset, Math.min(size, bytes.length - offset)).flip();
+                feeder.feed(buffer);
+                assertFalse(buffer.hasRemaining());
+            }
+            assertEquals("Part size " + size, EXPECTED, feeder.complete());
+        }
+    }
+
+    @Test
+    public void testThatUnknownSubtreesAreSkippedAcrossParts() throws Exception {
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .setSkipUnknownSubtrees(true)
+                .addControllerClass(ElementsProcessor.class)
+                .buildXmlProcessor();
+        final XmlFeeder<String> feeder = processor.newFeeder();
+        for (byte b : XML.getBytes(UTF_8)) {
+            feeder.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        assertEquals("x & y:[1=é<one>, 2=€A]", feeder.complete());
+    }
+
+    @Test
+    public void testThatControllersAreInvokedWhileFeeding() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        final XmlProcessor<Void> processor = createXmlProcessorBuilder(Void.class)
+                .addControllerObject(new IdCollector(ids))
+                .buildXmlProcessor();
+        final XmlFeeder<Void> feeder = processor.newFeeder();
+        feeder.feed(ByteBuffer.wrap("<root><element id=\"1\"/><element i".getBytes(UTF_8)));
+        assertEquals(List.of("1"), ids);
+        feeder.feed(ByteBuffer.wrap("d=\"2\"/></root>".getBytes(UTF_8)));
+        assertEquals(List.of("1", "2"), ids);
+        assertNull(feeder.complete());
+    }
+
+    @Test
+    public void testThatFeederIsDoneAtFirstResult() throws Exception {
+        final XmlFeeder<String> feeder = createProcessor(true).newFeeder();
+        feeder.feed(ByteBuffer.wrap("<root><element id=\"1\">one</element>".getBytes(UTF_8)));
+        assertTrue(feeder.isDone());
+        feeder.feed(ByteBuffer.wrap("<broken".getBytes(UTF_8)));
+        assertEquals("1=one", feeder.complete());
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatIncompleteDocumentIsRejected() throws Exception {
+        final XmlFeeder<String> feeder = createProcessor(false).newFeeder();
+        feeder.feed(ByteBuffer.wrap("<root><element id=\"1\">".getBytes(UTF_8)));
+        feeder.complete();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatFeederCannotBeFedAfterCompletion() throws Exception {
+        final XmlFeeder<String> feeder = createProcessor(false).newFeeder();
+        feeder.feed(ByteBuffer.wrap(XML.getBytes(UTF_8)));
+        feeder.complete();
+        feeder.feed(ByteBuffer.wrap(XML.getBytes(UTF_8)));
+    }
+
+    private static XmlProcessor<String> createProcessor(boolean stopAtFirstResult) {
+        return createXmlProcessorBuilder(String.class)
+                .setStopAtFirstResult(stopAtFirstResult)
+                .addControllerClass(stopAtFirstResult ? FirstElementProcessor.class : ElementsProcessor.class)
+                .buildXmlProcessor();
+    }
+
+    public static final class ElementsProcessor {
+        @Node("root")
+        public String root(@Attribute("a") String a, List<String> elements) {
+            return a + ":" + elements;
+        }
+
+        @Node("element")
+        public String element(@Attribute("id") String id, @Node("element") String content) {
+            return id + "=" + content;
+        }
+    }
+
+    public static final class FirstElementProcessor {
+        @Node("element")
+        public String element(@Attribute("id") String id, @Node("element") String content) {
+            return id + "=" + content;
+        }
+    }
+
+    public static final class IdCollector {
+        private final List<String> ids;
+
+        public IdCollector(List<String> ids) {
+            this.ids = ids;
+        }
+
+        @Node("element")
+        public void element(@Attribute("id") String id) {
+            ids.add(id);
+        }
+    }
+}
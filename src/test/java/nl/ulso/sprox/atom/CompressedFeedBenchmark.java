@@ -0,0 +1,62 @@
+package nl.ulso.sprox.atom;
+
+import nl.ulso.sprox.Engine;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the time it takes to read a gzipped Atom feed into memory: decompressed on the processor's own thread, by
+ * wrapping the input in a {@link GZIPInputStream}, versus decompressed on a separate thread by Sprox itself. The
+ * difference only shows on a machine with at least two cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressedFeedBenchmark {
+
+    @Param({"STREAM_READER", "TOKENIZER"})
+    public Engine engine;
+
+    private XmlProcessor<Feed> processor;
+    private byte[] document;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = createXmlProcessorBuilder(Feed.class)
+                .setEngine(engine)
+                .addControllerClass(FeedFactory.class)
+                .addParser(new DateTimeParser())
+                .addParser(new TextTypeParser())
+                .buildXmlProcessor();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = getClass().getResourceAsStream("/google-webmaster-central-2013-02-01.xml");
+             OutputStream gzip = new GZIPOutputStream(outputStream)) {
+            inputStream.transferTo(gzip);
+        }
+        document = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public Feed decompressOnSameThread() throws Exception {
+        return processor.execute(new GZIPInputStream(new ByteArrayInputStream(document), 65536));
+    }
+
+    @Benchmark
+    public Feed decompressOnSeparateThread() throws Exception {
+        return processor.execute(new ByteArrayInputStream(document));
+    }
+}
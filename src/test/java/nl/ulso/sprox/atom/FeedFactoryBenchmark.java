@@ -0,0 +1,54 @@
+package nl.ulso.sprox.atom;
+
+import nl.ulso.sprox.Engine;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the time it takes to read a complete Atom feed into memory, for each {@link Engine}, from a stream and
+ * from a byte array in place. Run with {@code -prof gc} to compare the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedFactoryBenchmark {
+
+    @Param({"EVENT_READER", "STREAM_READER", "TOKENIZER"})
+    public Engine engine;
+
+    private XmlProcessor<Feed> processor;
+    private byte[] document;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = createXmlProcessorBuilder(Feed.class)
+                .setEngine(engine)
+                .addControllerClass(FeedFactory.class)
+                .addParser(new DateTimeParser())
+                .addParser(new TextTypeParser())
+                .buildXmlProcessor();
+        try (InputStream inputStream = getClass().getResourceAsStream("/google-webmaster-central-2013-02-01.xml")) {
+            document = inputStream.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Feed readFeed() throws Exception {
+        return processor.execute(new ByteArrayInputStream(document));
+    }
+
+    @Benchmark
+    public Feed readFeedInPlace() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+}
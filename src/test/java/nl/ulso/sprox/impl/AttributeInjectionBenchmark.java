@@ -0,0 +1,63 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Attribute;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the cost of injecting attributes, on a document with many small records that consist of attributes only.
+ * Next to the three attributes that are injected, each record has a number of other attributes. Run with
+ * {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeInjectionBenchmark {
+    private static final int NODE_COUNT = 10000;
+
+    @Param({"0", "20"})
+    public int otherAttributeCount;
+
+    private XmlProcessor<Void> processor;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        processor = createXmlProcessorBuilder(Void.class)
+                .addControllerObject(new NodeCounter())
+                .buildXmlProcessor();
+        final StringBuilder builder = new StringBuilder("<osm>");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            builder.append("<node id=\"").append(i).append("\" lat=\"52.").append(i)
+                    .append("\" lon=\"4.").append(i).append('"');
+            for (int j = 0; j < otherAttributeCount; j++) {
+                builder.append(" tag").append(j).append("=\"").append(j).append('"');
+            }
+            builder.append("/>");
+        }
+        document = builder.append("</osm>").toString();
+    }
+
+    @Benchmark
+    public Void processDocument() throws Exception {
+        return processor.execute(new StringReader(document));
+    }
+
+    public static final class NodeCounter {
+        private double total;
+
+        @Node("node")
+        public void node(@Attribute("id") long id, @Attribute("lat") double lat, @Attribute("lon") double lon) {
+            total += id + lat + lon;
+        }
+    }
+}
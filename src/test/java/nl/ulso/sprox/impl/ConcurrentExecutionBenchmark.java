@@ -0,0 +1,60 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.XmlProcessor;
+import nl.ulso.sprox.opml.Outline;
+import nl.ulso.sprox.opml.OutlineFactory;
+import nl.ulso.sprox.opml.Rfc822DateTimeParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures how a single processor, with a recursive controller method, scales over threads. The throughput per
+ * thread should stay about the same as threads are added, up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentExecutionBenchmark {
+    private XmlProcessor<Outline> processor;
+    private byte[] document;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = createXmlProcessorBuilder(Outline.class)
+                .addControllerClass(OutlineFactory.class)
+                .addParser(new Rfc822DateTimeParser())
+                .buildXmlProcessor();
+        document = getClass().getResourceAsStream("/states.opml").readAllBytes();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Outline oneThread() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Outline twoThreads() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Outline fourThreads() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Outline allCores() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+}
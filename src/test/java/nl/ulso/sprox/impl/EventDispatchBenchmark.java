@@ -0,0 +1,81 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Compression;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Measures the cost of dispatching events to controller methods, depending on the number of controller methods
+ * registered in a processor.
+ * <p>
+ * The document is the same for every run: 1000 elements, spread over 10 different names. Each of these names has a
+ * controller method registered. The other controller methods never match. The time per document should be the same,
+ * whatever the number of registered methods.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+    private static final int ELEMENT_COUNT = 1000;
+    private static final int DISTINCT_ELEMENT_NAMES = 10;
+
+    @Param({"10", "100", "1000"})
+    public int registeredMethods;
+
+    private XmlProcessor<Void> processor;
+    private String document;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        final Method method = ElementCounter.class.getMethod("element");
+        final List<StartNodeEventHandler> eventHandlers = new ArrayList<>(registeredMethods);
+        final SymbolTable symbolTable = new SymbolTable();
+        for (int i = 0; i < registeredMethods; i++) {
+            final QName name = new QName("element" + i);
+            final ControllerMethod controllerMethod = new ControllerMethod(0, ElementPath.of(name),
+                    symbolTable.add(name), emptyList(), void.class, new MethodInvoker(method), method.toString());
+            eventHandlers.add(new StartNodeEventHandler(i, controllerMethod, false));
+        }
+        processor = new StaxBasedXmlProcessor<>(Void.class,
+                List.of(new SingletonControllerProvider(new ElementCounter())),
+                eventHandlers, Map.of(), Map.of(), new StreamReaderCursor.Factory(XMLInputFactory.newDefaultFactory()),
+                new TokenizerCursor.Factory(false), symbolTable, false, false, false, Compression.NONE);
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            final int name = i % DISTINCT_ELEMENT_NAMES;
+            builder.append("<element").append(name).append("><value>").append(i).append("</value></element")
+                    .append(name).append(">");
+        }
+        document = builder.append("</root>").toString();
+    }
+
+    @Benchmark
+    public Void processDocument() throws Exception {
+        return processor.execute(new StringReader(document));
+    }
+
+    public static final class ElementCounter {
+        private int count;
+
+        @Node
+        public void element() {
+            count++;
+        }
+    }
+}
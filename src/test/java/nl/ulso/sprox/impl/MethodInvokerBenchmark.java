@@ -0,0 +1,54 @@
+package nl.ulso.sprox.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of invoking a controller method: directly, through reflection, and through a
+ * {@link MethodInvoker}. The invoker should be close to a direct call, and well ahead of reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodInvokerBenchmark {
+    private Controller controller;
+    private Method method;
+    private MethodInvoker invoker;
+    private String name;
+    private Integer count;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        controller = new Controller();
+        method = Controller.class.getMethod("entry", String.class, Integer.class);
+        invoker = new MethodInvoker(method);
+        name = "entry";
+        count = 42;
+    }
+
+    @Benchmark
+    public Object direct() {
+        return controller.entry(name, count);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        return method.invoke(controller, name, count);
+    }
+
+    @Benchmark
+    public Object methodInvoker() throws Throwable {
+        return invoker.invoke(controller, new Object[]{name, count});
+    }
+
+    public static final class Controller {
+        public String entry(String name, Integer count) {
+            return name;
+        }
+    }
+}
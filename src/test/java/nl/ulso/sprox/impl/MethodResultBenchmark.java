@@ -0,0 +1,68 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Attribute;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the cost of collecting method results in wide documents: a feed with many entries, all collected into a
+ * single list. The time per entry should be the same, whatever the number of entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodResultBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entryCount;
+
+    private XmlProcessor<Integer> processor;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        processor = createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(FeedCounter.class)
+                .buildXmlProcessor();
+        final StringBuilder builder = new StringBuilder("<feed><title>Feed</title>");
+        for (int i = 0; i < entryCount; i++) {
+            builder.append("<entry id=\"").append(i).append("\"/>");
+        }
+        document = builder.append("</feed>").toString();
+    }
+
+    @Benchmark
+    public Integer processDocument() throws Exception {
+        return processor.execute(new StringReader(document));
+    }
+
+    public static final class FeedCounter {
+        @Node("feed")
+        public Integer feed(@Node("title") String title, List<Entry> entries) {
+            return entries.size();
+        }
+
+        @Node("entry")
+        public Entry entry(@Attribute("id") String id) {
+            return new Entry(id);
+        }
+    }
+
+    public static final class Entry {
+        private final String id;
+
+        Entry(String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.Recursive;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the cost of collecting node contents in deeply nested documents.
+ * <p>
+ * Each record in the document has a title, nested in wrappers up to the requested depth. The record collects the
+ * title, so the title is that far away from its owner. Next to that each record has nested levels up to the requested
+ * depth, each with an element that is of no interest. Every level is handled by a recursive controller method that
+ * collects the content of a label, so the number of active owners of node contents grows with the depth as well.
+ * The total number of elements in the document is the same for every depth. The time per document should therefore be
+ * the same, whatever the depth.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeContentBenchmark {
+    private static final int ELEMENT_COUNT = 100000;
+
+    @Param({"5", "50", "200"})
+    public int depth;
+
+    private XmlProcessor<Void> processor;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        processor = createXmlProcessorBuilder(Void.class)
+                .addControllerObject(new RecordCounter())
+                .buildXmlProcessor();
+        final int recordCount = ELEMENT_COUNT / (3 * depth + 3);
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < recordCount; i++) {
+            builder.append("<record>");
+            for (int j = 0; j < depth; j++) {
+                builder.append("<wrapper>");
+            }
+            builder.append("<title>Record ").append(i).append("</title>");
+            for (int j = 0; j < depth; j++) {
+                builder.append("</wrapper>");
+            }
+            for (int j = 0; j < depth; j++) {
+                builder.append("<level><meta/>");
+            }
+            builder.append("<label>Label ").append(i).append("</label>");
+            for (int j = 0; j < depth; j++) {
+                builder.append("</level>");
+            }
+            builder.append("</record>");
+        }
+        document = builder.append("</root>").toString();
+    }
+
+    @Benchmark
+    public Void processDocument() throws Exception {
+        return processor.execute(new StringReader(document));
+    }
+
+    public static final class RecordCounter {
+        private int records;
+        private int labels;
+
+        @Node("record")
+        public void record(@Node("title") String title) {
+            records++;
+        }
+
+        @Recursive
+        @Node("level")
+        public void level(@Node("label") Optional<String> label) {
+            if (label.isPresent()) {
+                labels++;
+            }
+        }
+    }
+}
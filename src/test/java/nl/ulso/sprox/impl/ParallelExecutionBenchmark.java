@@ -0,0 +1,77 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Attribute;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Compares processing a large file of records in one go with processing it in parallel, split into chunks of records.
+ * The parallel run should get faster with the number of cores, up to the point where scanning the file for records
+ * becomes the bottleneck.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelExecutionBenchmark {
+    private static final int ENTRY_COUNT = 500000;
+
+    private XmlProcessor<Integer> processor;
+    private Path path;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(FeedProcessor.class)
+                .buildXmlProcessor();
+        path = Files.createTempFile("sprox", ".xml");
+        try (Writer writer = Files.newBufferedWriter(path, UTF_8)) {
+            writer.write("<feed xmlns=\"http://www.w3.org/2005/Atom\">\n");
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                writer.write("  <entry id=\"" + i + "\"><title>Entry " + i
+                        + "</title><summary>Summary of entry " + i + "</summary></entry>\n");
+            }
+            writer.write("</feed>\n");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public Integer sequential() throws Exception {
+        return processor.execute(path);
+    }
+
+    @Benchmark
+    public Integer parallel() throws Exception {
+        return processor.executeParallel(path, "feed/entry");
+    }
+
+    public static final class FeedProcessor {
+        @Node("feed")
+        public Integer feed(List<String> titles) {
+            return titles.size();
+        }
+
+        @Node("entry")
+        public String entry(@Attribute("id") String id, @Node("title") String title) {
+            return id + title;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Attribute;
+import nl.ulso.sprox.Engine;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.Resettable;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the throughput of a processor on a small, message-sized document, with and without pooling, on both a StAX
+ * engine and the tokenizer. For documents like these, setting up the execution state and the controllers is a
+ * noticeable part of the work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallDocumentBenchmark {
+    @Param({"STREAM_READER", "TOKENIZER"})
+    private Engine engine;
+
+    @Param({"false", "true"})
+    private boolean executionStatePooling;
+
+    @Param({"false", "true"})
+    private boolean controllerPooling;
+
+    private XmlProcessor<Integer> processor;
+    private byte[] document;
+
+    @Setup
+    public void setUp() {
+        processor = createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(OrderProcessor.class)
+                .setEngine(engine)
+                .setExecutionStatePooling(executionStatePooling)
+                .setControllerPooling(controllerPooling)
+                .buildXmlProcessor();
+        document = createDocument();
+    }
+
+    @Benchmark
+    public Integer execute() throws Exception {
+        return processor.execute(document, 0, document.length);
+    }
+
+    private static byte[] createDocument() {
+        final StringBuilder builder = new StringBuilder(
+                "<Envelope><Header><MessageId>4f1c7d2e-0001</MessageId></Header><Body><Order id=\"1\">");
+        for (int i = 0; i < 20; i++) {
+            builder.append("<Line product=\"P").append(i).append("\" quantity=\"").append(i + 1)
+                    .append("\"><Description>Product number ").append(i).append("</Description></Line>");
+        }
+        return builder.append("</Order></Body></Envelope>").toString().getBytes(UTF_8);
+    }
+
+    public static final class OrderProcessor implements Resettable {
+        private int total;
+
+        @Node("Order")
+        public Integer order() {
+            return total;
+        }
+
+        @Node("Line")
+        public void line(@Attribute("quantity") Integer quantity) {
+            total += quantity;
+        }
+
+        @Override
+        public void reset() {
+            total = 0;
+        }
+    }
+}
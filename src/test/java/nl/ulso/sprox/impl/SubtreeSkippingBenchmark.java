@@ -0,0 +1,64 @@
+package nl.ulso.sprox.impl;
+
+import nl.ulso.sprox.Attribute;
+import nl.ulso.sprox.Node;
+import nl.ulso.sprox.XmlProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+
+/**
+ * Measures the effect of skipping unknown subtrees, on a document with records that carry a large extension the
+ * controller has no interest in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubtreeSkippingBenchmark {
+    private static final int RECORD_COUNT = 1000;
+    private static final int EXTENSION_SIZE = 20;
+
+    @Param({"false", "true"})
+    public boolean skipUnknownSubtrees;
+
+    private XmlProcessor<Void> processor;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        processor = createXmlProcessorBuilder(Void.class)
+                .addControllerObject(new RecordCounter())
+                .setSkipUnknownSubtrees(skipUnknownSubtrees)
+                .buildXmlProcessor();
+        final StringBuilder builder = new StringBuilder("<records>");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            builder.append("<record id=\"").append(i).append("\"><extension>");
+            for (int j = 0; j < EXTENSION_SIZE; j++) {
+                builder.append("<property name=\"p").append(j).append("\"><value>").append(j)
+                        .append("</value></property>");
+            }
+            builder.append("</extension></record>");
+        }
+        document = builder.append("</records>").toString();
+    }
+
+    @Benchmark
+    public Void processDocument() throws Exception {
+        return processor.execute(new StringReader(document));
+    }
+
+    public static final class RecordCounter {
+        private long total;
+
+        @Node("record")
+        public void record(@Attribute("id") long id) {
+            total += id;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package nl.ulso.sprox.inputfactory;
 
+import nl.ulso.sprox.Engine;
 import nl.ulso.sprox.XmlProcessor;
 import nl.ulso.sprox.impl.StaxBasedXmlProcessorBuilderFactory;
 import nl.ulso.sprox.opml.Outline;
@@ -29,12 +30,29 @@ public class CustomXmlInputFactoryTest {
                 .addControllerClass(OutlineFactory.class)
                 .addParser(new Rfc822DateTimeParser())
                 .setXmlInputFactory(factory)
+                .setEngine(Engine.EVENT_READER)
                 .buildXmlProcessor();
         final Outline outline = processor.execute(getClass().getResourceAsStream("/states.opml"));
         assertNotNull(outline);
         assertThat(builder.toString(), equalTo("Creating custom XML Event Reader"));
     }
 
+    @Test
+    public void testCustomXmlInputFactoryWithStreamReader() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        final XMLInputFactory factory = createXmlInputFactory(builder);
+        final XmlProcessor<Outline> processor = new StaxBasedXmlProcessorBuilderFactory()
+                .createXmlProcessorBuilder(Outline.class)
+                .addControllerClass(OutlineFactory.class)
+                .addParser(new Rfc822DateTimeParser())
+                .setXmlInputFactory(factory)
+                .setEngine(Engine.STREAM_READER)
+                .buildXmlProcessor();
+        final Outline outline = processor.execute(getClass().getResourceAsStream("/states.opml"));
+        assertNotNull(outline);
+        assertThat(builder.toString(), equalTo("Creating custom XML Stream Reader"));
+    }
+
     private XMLInputFactory createXmlInputFactory(final StringBuilder builder) {
         return new XMLInputFactory() {
 
@@ -51,7 +69,8 @@ public class CustomXmlInputFactoryTest {
 
             @Override
             public XMLStreamReader createXMLStreamReader(InputStream stream) throws XMLStreamException {
-                return null;
+                builder.append("Creating custom XML Stream Reader");
+                return wrappedFactory.createXMLStreamReader(stream);
             }
 
             @Override
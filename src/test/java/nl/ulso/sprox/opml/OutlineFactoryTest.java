@@ -6,6 +6,13 @@ import nl.ulso.sprox.impl.StaxBasedXmlProcessorBuilderFactory;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static nl.ulso.sprox.opml.OutlineFactoryTest.ElementCounter.countElements;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertNotNull;
@@ -13,6 +20,9 @@ import static org.junit.Assert.assertThat;
 
 public class OutlineFactoryTest {
 
+    private static final int THREAD_COUNT = 8;
+    private static final int EXECUTIONS_PER_THREAD = 250;
+
     private XmlProcessorBuilderFactory factory;
 
     public void setFactory(XmlProcessorBuilderFactory factory) {
@@ -26,11 +36,44 @@ public class OutlineFactoryTest {
 
     @Test
     public void testOutlineFactory() throws Exception {
-        final XmlProcessor<Outline> processor = factory.createXmlProcessorBuilder(Outline.class)
+        final Outline outline = createProcessor().execute(getClass().getResourceAsStream("/states.opml"));
+        assertOutline(outline);
+    }
+
+    @Test
+    public void testOutlineFactoryOnManyThreadsConcurrently() throws Exception {
+        final XmlProcessor<Outline> processor = createProcessor();
+        final byte[] document = getClass().getResourceAsStream("/states.opml").readAllBytes();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            final List<Future<List<Outline>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> {
+                    final List<Outline> outlines = new ArrayList<>();
+                    for (int j = 0; j < EXECUTIONS_PER_THREAD; j++) {
+                        outlines.add(processor.execute(new ByteArrayInputStream(document)));
+                    }
+                    return outlines;
+                }));
+            }
+            for (Future<List<Outline>> future : futures) {
+                for (Outline outline : future.get()) {
+                    assertOutline(outline);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private XmlProcessor<Outline> createProcessor() {
+        return factory.createXmlProcessorBuilder(Outline.class)
                 .addControllerClass(OutlineFactory.class)
                 .addParser(new Rfc822DateTimeParser())
                 .buildXmlProcessor();
-        final Outline outline = processor.execute(getClass().getResourceAsStream("/states.opml"));
+    }
+
+    private static void assertOutline(Outline outline) {
         assertNotNull(outline);
         assertThat(outline.getTitle(), is("states.opml"));
         assertThat(countElements(outline), is(63));
@@ -0,0 +1,281 @@
+package nl.ulso.sprox.processor;
+
+import nl.ulso.sprox.XmlProcessor;
+import nl.ulso.sprox.XmlProcessorException;
+import nl.ulso.sprox.resolvers.CamelCaseToHyphensElementNameResolver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.ulso.sprox.SproxTests.createXmlProcessorBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Compiles controllers with the {@link SproxProcessor} and checks that the generated dispatchers are used.
+ * <p>
+ * The controllers are compiled without the {@code -parameters} option. Element names that are taken from parameter
+ * names can therefore only be resolved if the dispatcher is used.
+ * </p>
+ */
+public class SproxProcessorTest {
+    private static final String LIBRARY_CONTROLLER = "package library;\n" +
+            "import nl.ulso.sprox.*;\n" +
+            "import java.util.List;\n" +
+            "import java.util.Optional;\n" +
+            "@Namespace(\"urn:library\")\n" +
+            "public class LibraryController {\n" +
+            "    @Node\n" +
+            "    public String library(@Attribute String name, List<String> books) {\n" +
+            "        return name + \": \" + String.join(\", \", books);\n" +
+            "    }\n" +
+            "    @Node\n" +
+            "    public String book(@Attribute int id, @Attribute Optional<Integer> year, @Node String title,\n" +
+            "                       @Node Optional<String> author) {\n" +
+            "        return id + \" \" + title + author.map(a -> \" by \" + a).orElse(\"\")\n" +
+            "                + year.map(y -> \" (\" + y + \")\").orElse(\"\");\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String LIBRARY = "<library xmlns=\"urn:library\" name=\"City\">" +
+            "<book id=\"1\" year=\"1999\"><title>A</title></book>" +
+            "<book id=\"2\"><title>B</title><author>X</author></book>" +
+            "</library>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatDispatcherIsGenerated() throws Exception {
+        final ClassLoader classLoader = compile("library/LibraryController.java", LIBRARY_CONTROLLER);
+        final Class<?> dispatcherClass = classLoader.loadClass("library.LibraryController$SproxDispatcher");
+        final ControllerDispatcher dispatcher = (ControllerDispatcher) dispatcherClass.getConstructor().newInstance();
+        assertTrue(dispatcher.hasNamespacesDeclared());
+    }
+
+    @Test
+    public void testThatBuilderUsesDispatcher() throws Exception {
+        final ClassLoader classLoader = compile("library/LibraryController.java", LIBRARY_CONTROLLER);
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(classLoader.loadClass("library.LibraryController"))
+                .buildXmlProcessor();
+        assertEquals("City: 1 A (1999), 2 B by X", processor.execute(new StringReader(LIBRARY)));
+    }
+
+    @Test(expected = XmlProcessorException.class)
+    public void testThatBuilderIgnoresDispatcherForCustomResolver() throws Exception {
+        final ClassLoader classLoader = compile("library/LibraryController.java", LIBRARY_CONTROLLER);
+        createXmlProcessorBuilder(String.class)
+                .setElementNameResolver(new CamelCaseToHyphensElementNameResolver())
+                .addControllerClass(classLoader.loadClass("library.LibraryController"))
+                .buildXmlProcessor()
+                .execute(new StringReader(LIBRARY));
+    }
+
+    @Test
+    public void testRecursiveSourceAndNestedController() throws Exception {
+        final ClassLoader classLoader = compile("tree/Trees.java", "package tree;\n" +
+                "import nl.ulso.sprox.*;\n" +
+                "import java.util.List;\n" +
+                "import java.util.Optional;\n" +
+                "public class Trees {\n" +
+                "    public static class Controller {\n" +
+                "        @Node\n" +
+                "        public Integer root(@Source(\"node\") Integer nodes) {\n" +
+                "            return nodes;\n" +
+                "        }\n" +
+                "        @Recursive @Node\n" +
+                "        public Integer node(@Attribute(\"weight\") int w, Optional<List<Integer>> children) {\n" +
+                "            return w + children.map(c -> c.stream().mapToInt(i -> i).sum()).orElse(0);\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+        final Class<?> controllerClass = classLoader.loadClass("tree.Trees$Controller");
+        classLoader.loadClass("tree.Trees$Controller$SproxDispatcher");
+        final XmlProcessor<Integer> processor = createXmlProcessorBuilder(Integer.class)
+                .addControllerClass(controllerClass)
+                .buildXmlProcessor();
+        assertEquals(Integer.valueOf(10), processor.execute(new StringReader("<root>" +
+                "<node weight=\"1\"><node weight=\"2\"/><node weight=\"3\"><node weight=\"4\"/></node></node>" +
+                "</root>")));
+    }
+
+    @Test
+    public void testThatDispatcherNamesDoNotCollide() throws Exception {
+        final ClassLoader classLoader = compile(Map.of(
+                "names/Foo.java", "package names;\n" +
+                        "import nl.ulso.sprox.*;\n" +
+                        "public class Foo {\n" +
+                        "    public static class Bar {\n" +
+                        "        @Node\n" +
+                        "        public String root() {\n" +
+                        "            return \"Foo.Bar\";\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "}\n",
+                "names/Foo_Bar.java", "package names;\n" +
+                        "import nl.ulso.sprox.*;\n" +
+                        "public class Foo_Bar {\n" +
+                        "    @Node\n" +
+                        "    public String root() {\n" +
+                        "        return \"Foo_Bar\";\n" +
+                        "    }\n" +
+                        "}\n"));
+        for (String controllerName : List.of("names.Foo$Bar", "names.Foo_Bar")) {
+            final Class<?> controllerClass = classLoader.loadClass(controllerName);
+            classLoader.loadClass(controllerName + "$SproxDispatcher");
+            final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                    .addControllerClass(controllerClass)
+                    .buildXmlProcessor();
+            assertEquals(controllerClass.getCanonicalName().substring("names.".length()),
+                    processor.execute(new StringReader("<root/>")));
+        }
+    }
+
+    @Test
+    public void testThatNestedClassWithDispatcherNameIsLeftAlone() throws Exception {
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithDiagnostics(Map.of(
+                "clash/ClashController.java", "package clash;\n" +
+                        "import nl.ulso.sprox.*;\n" +
+                        "public class ClashController {\n" +
+                        "    @Node\n" +
+                        "    public String root() {\n" +
+                        "        return \"root\";\n" +
+                        "    }\n" +
+                        "    public static class SproxDispatcher {\n" +
+                        "    }\n" +
+                        "}\n"));
+        assertTrue(diagnostics.stream().anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING
+                && diagnostic.getMessage(null).contains("has the same name")));
+        final ClassLoader classLoader = new URLClassLoader(
+                new URL[]{folder.getRoot().toPath().resolve("classes").toUri().toURL()}, getClass().getClassLoader());
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(classLoader.loadClass("clash.ClashController"))
+                .buildXmlProcessor();
+        assertEquals("root", processor.execute(new StringReader("<root/>")));
+    }
+
+    @Test
+    public void testThatCheckedExceptionIsWrapped() throws Exception {
+        final ClassLoader classLoader = compile("broken/BrokenController.java", "package broken;\n" +
+                "import nl.ulso.sprox.*;\n" +
+                "public class BrokenController {\n" +
+                "    @Node\n" +
+                "    public String root() throws Exception {\n" +
+                "        throw new Exception(\"broken\");\n" +
+                "    }\n" +
+                "}\n");
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(classLoader.loadClass("broken.BrokenController"))
+                .buildXmlProcessor();
+        try {
+            processor.execute(new StringReader("<root/>"));
+            fail("Expected an XmlProcessorException");
+        } catch (XmlProcessorException e) {
+            assertEquals("Invocation of controller method 'public java.lang.String broken.BrokenController.root() " +
+                    "throws java.lang.Exception' resulted in an exception.", e.getMessage());
+            assertEquals("broken", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testThatNoDispatcherIsGeneratedForPaths() throws Exception {
+        final ClassLoader classLoader = compile("paths/PathController.java", "package paths;\n" +
+                "import nl.ulso.sprox.*;\n" +
+                "public class PathController {\n" +
+                "    @Node(\"root/title\")\n" +
+                "    public String title(@Node(\"title\") String title) {\n" +
+                "        return title;\n" +
+                "    }\n" +
+                "}\n");
+        try {
+            classLoader.loadClass("paths.PathController$SproxDispatcher");
+            fail("Expected no dispatcher to be generated");
+        } catch (ClassNotFoundException e) {
+            // Expected
+        }
+        final XmlProcessor<String> processor = createXmlProcessorBuilder(String.class)
+                .addControllerClass(classLoader.loadClass("paths.PathController"))
+                .buildXmlProcessor();
+        assertEquals("A", processor.execute(new StringReader("<root><title>A</title><x><title>B</title></x></root>")));
+    }
+
+    @Test
+    public void testThatBothNamespaceAndNamespacesAnnotationIsAnError() throws Exception {
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithDiagnostics(
+                "invalid/InvalidController.java", "package invalid;\n" +
+                        "import nl.ulso.sprox.*;\n" +
+                        "@Namespace(\"urn:a\")\n" +
+                        "@Namespaces({@Namespace(\"urn:b\")})\n" +
+                        "public class InvalidController {\n" +
+                        "    @Node\n" +
+                        "    public void root() {\n" +
+                        "    }\n" +
+                        "}\n");
+        assertTrue(diagnostics.stream().anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR
+                && diagnostic.getMessage(null).contains("This one has both.")));
+    }
+
+    private ClassLoader compile(String fileName, String source) throws IOException {
+        return compile(Map.of(fileName, source));
+    }
+
+    private ClassLoader compile(Map<String, String> sources) throws IOException {
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithDiagnostics(sources);
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            assertNotEquals(diagnostic.toString(), Diagnostic.Kind.ERROR, diagnostic.getKind());
+        }
+        return new URLClassLoader(new URL[]{folder.getRoot().toPath().resolve("classes").toUri().toURL()},
+                getClass().getClassLoader());
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compileWithDiagnostics(String fileName, String source)
+            throws IOException {
+        return compileWithDiagnostics(Map.of(fileName, source));
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compileWithDiagnostics(Map<String, String> sources)
+            throws IOException {
+        final Path classes = folder.getRoot().toPath().resolve("classes");
+        Files.createDirectories(classes);
+        final List<File> sourceFiles = new ArrayList<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            final Path sourceFile = folder.getRoot().toPath().resolve("sources").resolve(source.getKey());
+            Files.createDirectories(sourceFile.getParent());
+            Files.writeString(sourceFile, source.getValue(), UTF_8);
+            sourceFiles.add(sourceFile.toFile());
+        }
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8)) {
+            final List<String> options = new ArrayList<>(List.of(
+                    "-classpath", classPath(),
+                    "-processor", SproxProcessor.class.getName(),
+                    "-d", classes.toString()));
+            compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sourceFiles)).call();
+        }
+        return diagnostics.getDiagnostics();
+    }
+
+    /**
+     * When the tests run as a module, Sprox itself is on the module path. The compiler needs it on the class path.
+     */
+    private static String classPath() {
+        final String modulePath = System.getProperty("jdk.module.path");
+        final String classPath = System.getProperty("java.class.path");
+        return modulePath != null ? modulePath + File.pathSeparator + classPath : classPath;
+    }
+}